@@ -4,9 +4,29 @@ import cn.tmkit.core.convert.ConvertUtil;
 import cn.tmkit.core.lang.Collections;
 import cn.tmkit.core.lang.Maps;
 import cn.tmkit.core.lang.Strings;
+import cn.tmkit.mq.rocketmq5.boot.compression.MessageCompressors;
+import cn.tmkit.mq.rocketmq5.boot.compression.ZstdDictionaryRegistry;
+import cn.tmkit.mq.rocketmq5.boot.core.CircuitBreakerRegistry;
+import cn.tmkit.mq.rocketmq5.boot.core.HedgedSender;
+import cn.tmkit.mq.rocketmq5.boot.core.InFlightLimiter;
+import cn.tmkit.mq.rocketmq5.boot.core.MessageCompactor;
+import cn.tmkit.mq.rocketmq5.boot.core.MessagePacker;
+import cn.tmkit.mq.rocketmq5.boot.core.ProducerPool;
+import cn.tmkit.mq.rocketmq5.boot.core.ProducerSelectStrategy;
+import cn.tmkit.mq.rocketmq5.boot.core.RateLimiterRegistry;
+import cn.tmkit.mq.rocketmq5.boot.core.RetryPolicy;
 import cn.tmkit.mq.rocketmq5.boot.core.RocketMQTemplate;
+import cn.tmkit.mq.rocketmq5.boot.core.SendInterceptor;
+import cn.tmkit.mq.rocketmq5.boot.core.SendMetrics;
+import cn.tmkit.mq.rocketmq5.boot.core.SpoolReplayer;
+import cn.tmkit.mq.rocketmq5.boot.payload.FileSystemPayloadStore;
+import cn.tmkit.mq.rocketmq5.boot.payload.PayloadStore;
 import cn.tmkit.mq.rocketmq5.boot.serializer.RocketMQMessageSerializer;
+import cn.tmkit.mq.rocketmq5.boot.spool.MessageSpool;
+import cn.tmkit.mq.rocketmq5.boot.transaction.BatchingTransactionChecker;
+import cn.tmkit.mq.rocketmq5.boot.transaction.TransactionStateResolver;
 import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
+import cn.tmkit.mq.rocketmq5.boot.util.VirtualThreads;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.apis.ClientException;
@@ -14,10 +34,12 @@ import org.apache.rocketmq.client.apis.ClientServiceProvider;
 import org.apache.rocketmq.client.apis.consumer.PushConsumer;
 import org.apache.rocketmq.client.apis.producer.Producer;
 import org.apache.rocketmq.client.apis.producer.ProducerBuilder;
+import org.apache.rocketmq.client.apis.producer.TransactionChecker;
 import org.apache.rocketmq.client.java.impl.ClientImpl;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.condition.*;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -29,18 +51,30 @@ import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
 
 /**
  * 自动装配RocketMQ
@@ -136,46 +170,318 @@ public class RocketMQAutoConfiguration implements InitializingBean, ApplicationC
     @ConditionalOnExpression
     @ConditionalOnRocketMQProducerProperties
     @ConditionalOnProperty(prefix = RocketMQProperties.PREFIX, value = {"endpoints"})
-    public Producer defaultRocketMQProducer(RocketMQProperties rocketMQProperties) throws ClientException {
+    public Producer defaultRocketMQProducer(RocketMQProperties rocketMQProperties,
+                                            ObjectProvider<TransactionChecker> transactionChecker) throws ClientException {
+        return buildProducer(rocketMQProperties, transactionChecker.getIfAvailable());
+    }
+
+    /**
+     * 根据配置创建生产者
+     *
+     * @param rocketMQProperties 配置
+     * @param transactionChecker 事务消息的回查器，为空时生产者不能发送事务消息
+     * @return {@linkplain Producer}
+     * @throws ClientException 客户端异常
+     */
+    private Producer buildProducer(RocketMQProperties rocketMQProperties,
+                                   TransactionChecker transactionChecker) throws ClientException {
+        return buildProducer(rocketMQProperties, rocketMQProperties.getEndpoints(), transactionChecker);
+    }
+
+    /**
+     * 根据配置创建连接指定接入点的生产者
+     *
+     * @param rocketMQProperties 配置
+     * @param endpoints          接入点
+     * @param transactionChecker 事务消息的回查器，为空时生产者不能发送事务消息
+     * @return {@linkplain Producer}
+     * @throws ClientException 客户端异常
+     */
+    private Producer buildProducer(RocketMQProperties rocketMQProperties, String endpoints,
+                                   TransactionChecker transactionChecker) throws ClientException {
+        RocketMQProperties.Producer producerConfig = rocketMQProperties.getProducer();
+        return buildProducer(rocketMQProperties, endpoints, producerConfig.getAccessKey(), producerConfig.getSecretKey(),
+                transactionChecker);
+    }
+
+    /**
+     * 根据配置创建连接指定接入点和账户的生产者
+     *
+     * @param rocketMQProperties 配置
+     * @param endpoints          接入点
+     * @param accessKey          账户名
+     * @param secretKey          账户密钥
+     * @param transactionChecker 事务消息的回查器，为空时生产者不能发送事务消息
+     * @return {@linkplain Producer}
+     * @throws ClientException 客户端异常
+     */
+    private Producer buildProducer(RocketMQProperties rocketMQProperties, String endpoints, String accessKey,
+                                   String secretKey, TransactionChecker transactionChecker) throws ClientException {
         RocketMQProperties.Producer producerConfig = rocketMQProperties.getProducer();
-        String endpoints = rocketMQProperties.getEndpoints();
         Assert.hasText(endpoints, RocketMQProperties.PREFIX + "[.endpoints] must not be null");
 
         ClientServiceProvider clientServiceProvider = RocketMQUtils.getClientServiceProvider();
         ProducerBuilder producerBuilder = clientServiceProvider.newProducerBuilder();
-        // 预绑定主题列表
-        List<String> extBindTopics = Collections.newArrayList(producerConfig.getExtBindTopics());
-        Collections.addAll(extBindTopics, producerConfig.getDefaultNormalTopic(), producerConfig.getDefaultDelayTopic());
+        // 预绑定主题列表，启动时即获取路由信息并建立连接
+        List<String> bindTopics = bindTopics(producerConfig);
+        if (transactionChecker != null) {
+            producerBuilder.setTransactionChecker(transactionChecker);
+        }
         Producer producer = producerBuilder.setMaxAttempts(producerConfig.getMaxAttempts())
+                .setTopics(bindTopics.toArray(new String[0]))
                 // 客户端配置
-                .setClientConfiguration(RocketMQUtils.createClientConfiguration(rocketMQProperties.getEndpoints(),
-                        rocketMQProperties.isEnableSsl(), producerConfig.getAccessKey(), producerConfig.getSecretKey(),
+                .setClientConfiguration(RocketMQUtils.createClientConfiguration(endpoints,
+                        rocketMQProperties.isEnableSsl(), accessKey, secretKey,
                         Duration.ofMillis(producerConfig.getRequestTimeout())))
                 .build();
-        log.info("{} started successful on endpoints {}", PRODUCER_BEAN_NAME, endpoints);
+        log.info("{} started successful on endpoints {} with topics {}", PRODUCER_BEAN_NAME, endpoints, bindTopics);
         return producer;
     }
 
+    /**
+     * 根据配置创建生产者池
+     * <ul>
+     *     <li>{@code LATENCY_AWARE}策略并且配置了多个接入点时，为每个接入点创建一个生产者</li>
+     *     <li>否则{@code pool-size}大于1时，创建{@code pool-size}个连接所有接入点的生产者，包含默认的生产者</li>
+     * </ul>
+     *
+     * @param rocketMQProperties 配置
+     * @param producer           默认的生产者
+     * @param transactionChecker 事务消息的回查器
+     * @return 生产者池，不需要时返回{@code null}
+     * @throws ClientException 客户端异常
+     */
+    private ProducerPool buildProducerPool(RocketMQProperties rocketMQProperties, Producer producer,
+                                           TransactionChecker transactionChecker) throws ClientException {
+        RocketMQProperties.Producer producerConfig = rocketMQProperties.getProducer();
+        if (producerConfig.getPoolStrategy() == ProducerSelectStrategy.LATENCY_AWARE) {
+            List<String> endpoints = splitEndpoints(rocketMQProperties.getEndpoints());
+            if (endpoints.size() > 1) {
+                List<Producer> producers = new ArrayList<>(endpoints.size());
+                for (String endpoint : endpoints) {
+                    producers.add(buildProducer(rocketMQProperties, endpoint, transactionChecker));
+                }
+                ProducerPool producerPool = new ProducerPool(producers, endpoints, ProducerSelectStrategy.LATENCY_AWARE);
+                RocketMQProperties.LatencyAware latencyAware = producerConfig.getLatencyAware();
+                if (latencyAware != null) {
+                    producerPool.setLatencyAwareSettings(latencyAware.getEwmaAlpha(),
+                            latencyAware.getEjectConsecutiveErrors(), latencyAware.getEjectLatencyFactor(),
+                            latencyAware.getEjectDurationMs());
+                }
+                return producerPool;
+            }
+        }
+        int poolSize = producerConfig.getPoolSize();
+        if (poolSize <= 1) {
+            return null;
+        }
+        List<Producer> producers = new ArrayList<>(poolSize);
+        producers.add(producer);
+        for (int i = 1; i < poolSize; i++) {
+            producers.add(buildProducer(rocketMQProperties, transactionChecker));
+        }
+        return new ProducerPool(producers, producerConfig.getPoolStrategy());
+    }
+
+    /**
+     * 根据配置创建对冲发送，连接备集群的生产者预绑定对冲的主题
+     *
+     * @param rocketMQProperties 配置
+     * @return 对冲发送，未开启时返回{@code null}
+     * @throws ClientException 客户端异常
+     */
+    private HedgedSender buildHedgedSender(RocketMQProperties rocketMQProperties) throws ClientException {
+        RocketMQProperties.Producer producerConfig = rocketMQProperties.getProducer();
+        RocketMQProperties.Hedge hedge = producerConfig.getHedge();
+        if (hedge == null || !hedge.isEnabled()) {
+            return null;
+        }
+        Assert.hasText(hedge.getEndpoints(), RocketMQProperties.PREFIX + "[.producer.hedge.endpoints] must not be null");
+        Assert.notEmpty(hedge.getTopics(), RocketMQProperties.PREFIX + "[.producer.hedge.topics] must not be empty");
+        String accessKey = Strings.isEmpty(hedge.getAccessKey()) ? producerConfig.getAccessKey() : hedge.getAccessKey();
+        String secretKey = Strings.isEmpty(hedge.getSecretKey()) ? producerConfig.getSecretKey() : hedge.getSecretKey();
+        // 备集群只用于对冲发送，不发送事务消息
+        Producer secondary = buildProducer(rocketMQProperties, hedge.getEndpoints(), accessKey, secretKey, null);
+        return new HedgedSender(secondary, hedge.getTopics(), hedge.getPercentile(), hedge.getMinDelayMs(),
+                hedge.getMaxDelayMs(), hedge.getSampleSize());
+    }
+
+    /**
+     * 根据配置创建发送限流
+     *
+     * @param rateLimit 限流的配置
+     * @return {@linkplain RateLimiterRegistry}
+     */
+    private static RateLimiterRegistry buildRateLimiterRegistry(RocketMQProperties.RateLimit rateLimit) {
+        RateLimiterRegistry registry = new RateLimiterRegistry(rateLimit.getPolicy(), rateLimit.getTimeoutMs());
+        for (RocketMQProperties.RateLimitRule rule : rateLimit.getRules()) {
+            Assert.hasText(rule.getTopic(), RocketMQProperties.PREFIX + "[.producer.rate-limit.rules.topic] must not be null");
+            int burst = rule.getBurst() == null ? (int) Math.ceil(rule.getPermitsPerSecond()) : rule.getBurst();
+            registry.register(rule.getTopic(), rule.getTag(), rule.getPermitsPerSecond(), burst);
+        }
+        return registry;
+    }
+
+    /**
+     * 拆分分号分隔的接入点
+     *
+     * @param endpoints 接入点，格式如：{@code host:port;host:port}
+     * @return 去重后的接入点
+     */
+    static List<String> splitEndpoints(String endpoints) {
+        Set<String> result = new LinkedHashSet<>();
+        if (endpoints != null) {
+            for (String endpoint : endpoints.split(";")) {
+                if (!Strings.isEmpty(endpoint.trim())) {
+                    result.add(endpoint.trim());
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * 本地预写日志的目录，没有配置时使用用户目录下按应用名区分的目录
+     *
+     * @param spool 本地预写日志的配置
+     * @return 日志的目录
+     */
+    private Path spoolDirectory(RocketMQProperties.Spool spool) {
+        if (!Strings.isEmpty(spool.getDirectory())) {
+            return Paths.get(spool.getDirectory());
+        }
+        String applicationName = applicationContext.getEnvironment().getProperty("spring.application.name");
+        if (Strings.isEmpty(applicationName)) {
+            throw new IllegalStateException(RocketMQProperties.PREFIX
+                    + ".producer.spool.directory or spring.application.name is required when spool is enabled");
+        }
+        return Paths.get(System.getProperty("user.home"), ".rocketmq5", "spool", applicationName);
+    }
+
+    /**
+     * 生产者预绑定的主题列表：额外的预绑定主题 + 默认的普通主题 + 默认的延时主题
+     *
+     * @param producerConfig 生产者的配置
+     * @return 去重后的主题列表
+     */
+    static List<String> bindTopics(RocketMQProperties.Producer producerConfig) {
+        Set<String> topics = new LinkedHashSet<>();
+        if (Collections.isNotEmpty(producerConfig.getExtBindTopics())) {
+            topics.addAll(producerConfig.getExtBindTopics());
+        }
+        topics.add(producerConfig.getDefaultNormalTopic());
+        topics.add(producerConfig.getDefaultDelayTopic());
+        topics.removeIf(Strings::isEmpty);
+        return new ArrayList<>(topics);
+    }
+
     /**
      * 消息模板
      *
      * @param rocketMQMessageSerializer 序列化器
+     * @param sendInterceptors          发送拦截器
+     * @param sendMetrics               发送指标的记录器
      * @return {@linkplain RocketMQTemplate}
      */
     @Bean(destroyMethod = "destroy")
     @Conditional(ProducerOrConsumerPropertyCondition.class)
     @ConditionalOnMissingBean(name = ROCKETMQ_TEMPLATE_DEFAULT_GLOBAL_NAME)
     public RocketMQTemplate rocketMQTemplate(RocketMQMessageSerializer<Object> rocketMQMessageSerializer,
+                                             MessageCompressors messageCompressors,
+                                             ObjectProvider<ZstdDictionaryRegistry> zstdDictionaryRegistry,
+                                             ObjectProvider<PayloadStore> payloadStore,
+                                             ObjectProvider<TransactionChecker> transactionChecker,
+                                             ObjectProvider<SendInterceptor> sendInterceptors,
+                                             ObjectProvider<SendMetrics> sendMetrics,
                                              RocketMQProperties rocketMQProperties,
-                                             ThreadPoolTaskExecutor asyncSendThreadPoolTaskExecutor) {
+                                             ThreadPoolTaskExecutor asyncSendThreadPoolTaskExecutor) throws ClientException {
         RocketMQTemplate rocketMQTemplate = new RocketMQTemplate();
         if (applicationContext.containsBean(PRODUCER_BEAN_NAME)) {
-            rocketMQTemplate.setProducer(applicationContext.getBean(PRODUCER_BEAN_NAME, Producer.class));
+            Producer producer = applicationContext.getBean(PRODUCER_BEAN_NAME, Producer.class);
+            rocketMQTemplate.setProducer(producer);
+            rocketMQTemplate.setProducerPool(buildProducerPool(rocketMQProperties, producer,
+                    transactionChecker.getIfAvailable()));
+            rocketMQTemplate.setHedgedSender(buildHedgedSender(rocketMQProperties));
         }
         rocketMQTemplate.setRocketMQMessageSerializer(rocketMQMessageSerializer);
+        rocketMQTemplate.setSendInterceptors(sendInterceptors.orderedStream().collect(Collectors.toList()));
+        RocketMQProperties.Compression compression = rocketMQProperties.getProducer().getCompression();
+        if (compression != null) {
+            rocketMQTemplate.setMessageCompressor(messageCompressors.get(compression.getType()));
+            rocketMQTemplate.setCompressionThreshold(compression.getThreshold());
+            rocketMQTemplate.setDictionaryCompressionThreshold(compression.getDictionaryThreshold());
+        }
+        rocketMQTemplate.setZstdDictionaryRegistry(zstdDictionaryRegistry.getIfAvailable());
+        rocketMQTemplate.setPayloadStore(payloadStore.getIfAvailable());
+        if (rocketMQProperties.getClaimCheck() != null) {
+            rocketMQTemplate.setClaimCheckThreshold(rocketMQProperties.getClaimCheck().getThreshold());
+        }
         rocketMQTemplate.setDefaultNormalTopic(rocketMQProperties.getProducer().getDefaultNormalTopic());
         rocketMQTemplate.setDefaultDelayTopic(rocketMQProperties.getProducer().getDefaultDelayTopic());
         rocketMQTemplate.setAsyncSendThreadPoolTaskExecutor(asyncSendThreadPoolTaskExecutor);
+        RocketMQProperties.AsyncExecutor asyncExecutor = rocketMQProperties.getProducer().getAsyncExecutor();
+        if (asyncExecutor != null && asyncExecutor.isVirtualThreads()) {
+            if (VirtualThreads.isSupported()) {
+                rocketMQTemplate.setCallbackExecutor(VirtualThreads.newThreadPerTaskExecutor("rocketmq-async-send-"));
+            } else {
+                log.warn("Virtual threads require Java 21 or later, fall back to asyncSendThreadPoolTaskExecutor");
+            }
+        }
+        rocketMQTemplate.setAsyncCompletionMode(rocketMQProperties.getProducer().getAsyncCompletionMode());
+        RocketMQProperties.Packing packing = rocketMQProperties.getProducer().getPacking();
+        if (packing != null && packing.isEnabled()) {
+            rocketMQTemplate.setMessagePacker(new MessagePacker(rocketMQTemplate, packing.getLingerMs(),
+                    packing.getMaxFrames(), packing.getMaxBytes()));
+        }
+        RocketMQProperties.Compaction compaction = rocketMQProperties.getProducer().getCompaction();
+        if (compaction != null && compaction.isEnabled()) {
+            rocketMQTemplate.setMessageCompactor(new MessageCompactor(rocketMQTemplate, compaction.getWindowMs(),
+                    compaction.getMaxKeys()));
+        }
+        RocketMQProperties.Chunk chunk = rocketMQProperties.getProducer().getChunk();
+        if (chunk != null && chunk.isEnabled()) {
+            rocketMQTemplate.setMaxBodySize(chunk.getMaxBodySize());
+            rocketMQTemplate.setChunkUseMessageGroup(chunk.isUseMessageGroup());
+        }
+        RocketMQProperties.CircuitBreaker circuitBreaker = rocketMQProperties.getProducer().getCircuitBreaker();
+        if (circuitBreaker != null && circuitBreaker.isEnabled()) {
+            rocketMQTemplate.setCircuitBreakerRegistry(new CircuitBreakerRegistry(circuitBreaker.getWindowSize(),
+                    circuitBreaker.getMinimumCalls(), circuitBreaker.getFailureRateThreshold(),
+                    circuitBreaker.getSlowCallRateThreshold(), circuitBreaker.getSlowCallDurationMs(),
+                    circuitBreaker.getWaitDurationInOpenMs(), circuitBreaker.getPermittedCallsInHalfOpen()));
+        }
+        RocketMQProperties.Retry retry = rocketMQProperties.getProducer().getRetry();
+        if (retry != null && retry.isEnabled()) {
+            rocketMQTemplate.setRetryPolicy(new RetryPolicy(retry.getMaxRetries(), retry.getBaseBackoffMs(),
+                    retry.getMaxBackoffMs(), retry.getBudgetRatio(), retry.getMinRetriesPerSecond()));
+        }
+        RocketMQProperties.Spool spool = rocketMQProperties.getProducer().getSpool();
+        if (spool != null && spool.isEnabled()) {
+            MessageSpool messageSpool = new MessageSpool(spoolDirectory(spool), spool.getSegmentSize(),
+                    spool.isSyncWrite());
+            rocketMQTemplate.setMessageSpool(messageSpool);
+            rocketMQTemplate.setSpoolReplayer(new SpoolReplayer(rocketMQTemplate, messageSpool, spool.getReplayBatchSize(),
+                    spool.getReplayIntervalMs(), spool.getMaxBackoffMs(), spool.getBatchTimeoutMs()));
+        }
+        RocketMQProperties.RateLimit rateLimit = rocketMQProperties.getProducer().getRateLimit();
+        if (rateLimit != null && Collections.isNotEmpty(rateLimit.getRules())) {
+            rocketMQTemplate.setRateLimiterRegistry(buildRateLimiterRegistry(rateLimit));
+        }
+        RocketMQProperties.InFlight inFlight = rocketMQProperties.getProducer().getInFlight();
+        if (inFlight != null && (inFlight.getMaxMessages() > 0 || inFlight.getMaxBytes() > 0)) {
+            rocketMQTemplate.setInFlightLimiter(new InFlightLimiter(inFlight.getMaxMessages(), inFlight.getMaxBytes(),
+                    inFlight.getPolicy(), inFlight.getTimeoutMs()));
+        }
+        RocketMQProperties.WarmUp warmUp = rocketMQProperties.getProducer().getWarmUp();
+        if (warmUp != null && warmUp.isEnabled() && rocketMQTemplate.getProducer() != null) {
+            rocketMQTemplate.warmUp(bindTopics(rocketMQProperties.getProducer()), warmUp.getIterations());
+        }
+        // 预热的消息不计入指标，指标在模板配置完成后绑定
+        SendMetrics metrics = sendMetrics.getIfAvailable();
+        if (metrics != null) {
+            rocketMQTemplate.setSendMetrics(metrics);
+            metrics.bindTo(rocketMQTemplate);
+        }
         return rocketMQTemplate;
     }
 
@@ -187,8 +493,80 @@ public class RocketMQAutoConfiguration implements InitializingBean, ApplicationC
 
     @Bean
     @ConditionalOnMissingBean
-    public ThreadPoolTaskExecutor asyncSendThreadPoolTaskExecutor() {
-        return new ThreadPoolTaskExecutor();
+    public MessageCompressors messageCompressors() {
+        return MessageCompressors.defaults();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ThreadPoolTaskExecutor asyncSendThreadPoolTaskExecutor(RocketMQProperties rocketMQProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        RocketMQProperties.Producer producerConfig = rocketMQProperties.getProducer();
+        RocketMQProperties.AsyncExecutor asyncExecutor = producerConfig == null || producerConfig.getAsyncExecutor() == null
+                ? new RocketMQProperties.AsyncExecutor() : producerConfig.getAsyncExecutor();
+        executor.setCorePoolSize(asyncExecutor.getCorePoolSize());
+        executor.setMaxPoolSize(Math.max(asyncExecutor.getCorePoolSize(), asyncExecutor.getMaxPoolSize()));
+        executor.setQueueCapacity(asyncExecutor.getQueueCapacity());
+        executor.setThreadNamePrefix("rocketmq-async-send-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * 批量回查的事务消息回查器，存在{@linkplain TransactionStateResolver}并且没有自定义的{@linkplain TransactionChecker}时生效
+     *
+     * @param transactionStateResolver 批量回查本地事务的状态
+     * @param rocketMQProperties       配置
+     * @return {@linkplain BatchingTransactionChecker}
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnBean(TransactionStateResolver.class)
+    @ConditionalOnMissingBean(TransactionChecker.class)
+    public BatchingTransactionChecker batchingTransactionChecker(TransactionStateResolver transactionStateResolver,
+                                                                 RocketMQProperties rocketMQProperties) {
+        RocketMQProperties.Producer producerConfig = rocketMQProperties.getProducer();
+        RocketMQProperties.Transaction transaction = producerConfig == null || producerConfig.getTransaction() == null
+                ? new RocketMQProperties.Transaction() : producerConfig.getTransaction();
+        return new BatchingTransactionChecker(transactionStateResolver, transaction.getCheckBatchSize(),
+                transaction.getCheckLingerMs(), transaction.getResolutionExpireMs());
+    }
+
+    /**
+     * Claim-Check模式默认的外部存储，开启{@code spring.rocketmq.claim-check.enabled}时生效
+     *
+     * @param rocketMQProperties 配置
+     * @return {@linkplain PayloadStore}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = RocketMQProperties.PREFIX + ".claim-check", name = "enabled", havingValue = "true")
+    public PayloadStore payloadStore(RocketMQProperties rocketMQProperties) {
+        return new FileSystemPayloadStore(Paths.get(rocketMQProperties.getClaimCheck().getDirectory()));
+    }
+
+    /**
+     * Zstd字典的注册表，引入了zstd-jni时生效，加载{@code spring.rocketmq.zstd-dictionaries}配置的字典
+     */
+    @Configuration
+    @ConditionalOnClass(name = "com.github.luben.zstd.Zstd")
+    static class ZstdDictionaryConfiguration {
+
+        @Bean(destroyMethod = "close")
+        @ConditionalOnMissingBean
+        public ZstdDictionaryRegistry zstdDictionaryRegistry(RocketMQProperties rocketMQProperties,
+                                                             ResourceLoader resourceLoader) throws IOException {
+            ZstdDictionaryRegistry registry = new ZstdDictionaryRegistry();
+            if (rocketMQProperties.getZstdDictionaries() != null) {
+                for (Map.Entry<String, String> entry : rocketMQProperties.getZstdDictionaries().entrySet()) {
+                    Resource resource = resourceLoader.getResource(entry.getValue());
+                    try (InputStream in = resource.getInputStream()) {
+                        registry.register(entry.getKey(), StreamUtils.copyToByteArray(in));
+                    }
+                }
+            }
+            return registry;
+        }
+
     }
 
     static class ProducerOrConsumerPropertyCondition extends AnyNestedCondition {
@@ -0,0 +1,37 @@
+package cn.tmkit.mq.rocketmq5.boot.autoconfigure;
+
+import cn.tmkit.mq.rocketmq5.boot.core.SendMetrics;
+import cn.tmkit.mq.rocketmq5.boot.metrics.MicrometerSendMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 自动装配发送指标，引入了Micrometer并且容器中存在{@linkplain MeterRegistry}时生效，
+ * 可以通过{@code spring.rocketmq.metrics.enabled=false}关闭
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-30
+ */
+@Configuration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnProperty(prefix = RocketMQProperties.PREFIX + ".metrics", name = "enabled", matchIfMissing = true)
+@AutoConfigureAfter(name = {
+        "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration"})
+public class RocketMQMetricsAutoConfiguration {
+
+    @Bean
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnMissingBean(SendMetrics.class)
+    public MicrometerSendMetrics rocketMQSendMetrics(MeterRegistry meterRegistry) {
+        return new MicrometerSendMetrics(meterRegistry);
+    }
+
+}
@@ -1,5 +1,10 @@
 package cn.tmkit.mq.rocketmq5.boot.autoconfigure;
 
+import cn.tmkit.mq.rocketmq5.boot.compression.CompressionType;
+import cn.tmkit.mq.rocketmq5.boot.core.AsyncCompletionMode;
+import cn.tmkit.mq.rocketmq5.boot.core.InFlightPolicy;
+import cn.tmkit.mq.rocketmq5.boot.core.ProducerSelectStrategy;
+import cn.tmkit.mq.rocketmq5.boot.core.RateLimitPolicy;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -59,6 +64,18 @@ public class RocketMQProperties {
     @NestedConfigurationProperty
     private Producer producer;
 
+    /**
+     * 按主题配置的Zstd字典，key为主题，value为字典文件的位置，如：{@code classpath:dict/order.zdict}；
+     * 生产者使用字典压缩对应主题的消息，消费者使用字典解压，需要引入{@code com.github.luben:zstd-jni}
+     */
+    private Map<String, String> zstdDictionaries;
+
+    /**
+     * Claim-Check模式的配置，生产者和消费者共用
+     */
+    @NestedConfigurationProperty
+    private ClaimCheck claimCheck = new ClaimCheck();
+
     /**
      * 消费者的配置，该配置仅用于提示的，系统未作处理
      */
@@ -110,6 +127,728 @@ public class RocketMQProperties {
          */
         private int maxAttempts = 3;
 
+        /**
+         * 生产者池的大小，大于1时创建多个生产者实例分担发送请求，默认为1
+         */
+        private int poolSize = 1;
+
+        /**
+         * 生产者池选择生产者的策略，默认轮询
+         */
+        private ProducerSelectStrategy poolStrategy = ProducerSelectStrategy.ROUND_ROBIN;
+
+        /**
+         * {@code LATENCY_AWARE}策略的配置，该策略为{@code endpoints}中的每个接入点创建一个生产者
+         */
+        @NestedConfigurationProperty
+        private LatencyAware latencyAware = new LatencyAware();
+
+        /**
+         * {@code RocketMQTemplate#sendAsync}等返回{@linkplain java.util.concurrent.CompletableFuture}的方法的完成方式，
+         * 默认在客户端的回调线程上直接完成
+         */
+        private AsyncCompletionMode asyncCompletionMode = AsyncCompletionMode.DIRECT;
+
+        /**
+         * 异步发送在途请求的限制
+         */
+        @NestedConfigurationProperty
+        private InFlight inFlight = new InFlight();
+
+        /**
+         * 异步发送线程池的配置
+         */
+        @NestedConfigurationProperty
+        private AsyncExecutor asyncExecutor = new AsyncExecutor();
+
+        /**
+         * 启动预热的配置
+         */
+        @NestedConfigurationProperty
+        private WarmUp warmUp = new WarmUp();
+
+        /**
+         * 消息体压缩的配置
+         */
+        @NestedConfigurationProperty
+        private Compression compression = new Compression();
+
+        /**
+         * 打包发送的配置
+         */
+        @NestedConfigurationProperty
+        private Packing packing = new Packing();
+
+        /**
+         * 大消息分片的配置
+         */
+        @NestedConfigurationProperty
+        private Chunk chunk = new Chunk();
+
+        /**
+         * 事务消息的配置
+         */
+        @NestedConfigurationProperty
+        private Transaction transaction = new Transaction();
+
+        /**
+         * 本地预写日志的配置
+         */
+        @NestedConfigurationProperty
+        private Spool spool = new Spool();
+
+        /**
+         * 按主题熔断的配置
+         */
+        @NestedConfigurationProperty
+        private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        /**
+         * 发送失败重试的配置
+         */
+        @NestedConfigurationProperty
+        private Retry retry = new Retry();
+
+        /**
+         * 对冲发送的配置
+         */
+        @NestedConfigurationProperty
+        private Hedge hedge = new Hedge();
+
+        /**
+         * 发送限流的配置
+         */
+        @NestedConfigurationProperty
+        private RateLimit rateLimit = new RateLimit();
+
+        /**
+         * 压缩发送的配置
+         */
+        @NestedConfigurationProperty
+        private Compaction compaction = new Compaction();
+
+        /**
+         * 响应式发送的配置
+         */
+        @NestedConfigurationProperty
+        private Reactive reactive = new Reactive();
+
+        /**
+         * 入站请求截止时间的配置
+         */
+        @NestedConfigurationProperty
+        private Deadline deadline = new Deadline();
+
+    }
+
+    /**
+     * 入站请求截止时间的配置，配置请求头后Servlet应用中处理请求时的同步发送不超过请求剩余的时间
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Deadline {
+
+        /**
+         * 携带请求剩余超时时间的请求头，单位毫秒，为空时不读取
+         */
+        private String header;
+
+        /**
+         * 请求头缺失时的默认超时时间，单位毫秒，默认0不设置截止时间
+         */
+        private long defaultTimeoutMs;
+
+    }
+
+    /**
+     * 响应式发送的配置，引入Reactor时生效
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Reactive {
+
+        /**
+         * {@code ReactiveRocketMQTemplate#sendMany}同时在途的最大发送数，默认256
+         */
+        private int concurrency = 256;
+
+    }
+
+    /**
+     * 压缩发送的配置，开启后{@code RocketMQTemplate#compactingSend}在窗口内按消息标识只发送最新的一条消息
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Compaction {
+
+        /**
+         * 是否开启，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 压缩的时间窗口，单位毫秒，默认50毫秒
+         */
+        private long windowMs = 50;
+
+        /**
+         * 窗口内最多保留的标识数，超过后新的标识直接发送，默认10000
+         */
+        private int maxKeys = 10000;
+
+    }
+
+    /**
+     * 发送限流的配置：按主题或主题加标签限制每秒发送的消息数，保护共用的Proxy和Broker不被个别任务压垮
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class RateLimit {
+
+        /**
+         * 达到上限时的处理策略，默认阻塞等待至超时
+         */
+        private RateLimitPolicy policy = RateLimitPolicy.BLOCK;
+
+        /**
+         * 阻塞等待的超时时间，单位毫秒，默认1秒
+         */
+        private long timeoutMs = 1000;
+
+        /**
+         * 限流的规则
+         */
+        private List<RateLimitRule> rules;
+
+    }
+
+    /**
+     * 单条限流规则
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class RateLimitRule {
+
+        /**
+         * 主题
+         */
+        private String topic;
+
+        /**
+         * 标签，为空时限制整个主题
+         */
+        private String tag;
+
+        /**
+         * 每秒允许发送的消息数
+         */
+        private double permitsPerSecond;
+
+        /**
+         * 突发容量，默认等于每秒允许发送的消息数
+         */
+        private Integer burst;
+
+    }
+
+    /**
+     * 对冲发送的配置：指定主题的消息先发往主集群，超过对冲延迟仍未收到回执时再发往备集群，以先完成的结果为准。
+     * 两份消息携带相同的去重键，消费者需要同时订阅两个集群，由监听容器按去重键跳过重复的消息
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Hedge {
+
+        /**
+         * 是否开启，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 对冲发送的主题
+         */
+        private List<String> topics;
+
+        /**
+         * 备集群的接入点，格式同{@code spring.rocketmq.endpoints}
+         */
+        private String endpoints;
+
+        /**
+         * 备集群的账户名，为空时使用生产者的账户名
+         */
+        private String accessKey;
+
+        /**
+         * 备集群的账户密钥，为空时使用生产者的账户密钥
+         */
+        private String secretKey;
+
+        /**
+         * 对冲延迟取主集群发送耗时的分位数，默认0.95
+         */
+        private double percentile = 0.95;
+
+        /**
+         * 最短的对冲延迟，单位毫秒，默认5毫秒
+         */
+        private long minDelayMs = 5;
+
+        /**
+         * 最长的对冲延迟，单位毫秒，样本不足时也使用该值，默认500毫秒
+         */
+        private long maxDelayMs = 500;
+
+        /**
+         * 每个主题保留的耗时样本数，默认1024
+         */
+        private int sampleSize = 1024;
+
+    }
+
+    /**
+     * 按主题熔断的配置：失败率或慢调用率达到阈值时直接拒绝发送，避免调用方在服务端故障期间等待超时
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class CircuitBreaker {
+
+        /**
+         * 是否开启，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 统计的调用次数，默认100
+         */
+        private int windowSize = 100;
+
+        /**
+         * 计算失败率的最少调用次数，默认20
+         */
+        private int minimumCalls = 20;
+
+        /**
+         * 失败率的阈值，百分比，默认50
+         */
+        private float failureRateThreshold = 50;
+
+        /**
+         * 慢调用率的阈值，百分比，默认100即不按慢调用熔断
+         */
+        private float slowCallRateThreshold = 100;
+
+        /**
+         * 慢调用的耗时，单位毫秒，默认3秒
+         */
+        private long slowCallDurationMs = 3000;
+
+        /**
+         * 打开状态的持续时间，单位毫秒，默认10秒
+         */
+        private long waitDurationInOpenMs = 10000;
+
+        /**
+         * 半开状态放行的探测次数，默认5
+         */
+        private int permittedCallsInHalfOpen = 5;
+
+    }
+
+    /**
+     * 发送失败重试的配置：服务端不可用时按预算重试，退避时间带随机抖动
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Retry {
+
+        /**
+         * 是否开启，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 单条消息最大的重试次数，默认2
+         */
+        private int maxRetries = 2;
+
+        /**
+         * 退避的基准时间，单位毫秒，默认50毫秒
+         */
+        private long baseBackoffMs = 50;
+
+        /**
+         * 最长的退避时间，单位毫秒，默认2秒
+         */
+        private long maxBackoffMs = 2000;
+
+        /**
+         * 重试预算占请求量的比例，默认0.1
+         */
+        private double budgetRatio = 0.1;
+
+        /**
+         * 每秒固定允许的重试次数，默认10
+         */
+        private int minRetriesPerSecond = 10;
+
+    }
+
+    /**
+     * 本地预写日志的配置：开启后服务端不可用时消息写入本地日志并立即返回，恢复后按顺序重放
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Spool {
+
+        /**
+         * 是否开启，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 日志的目录，同一目录只能被一个进程使用。为空时使用{@code ${user.home}/.rocketmq5/spool/${spring.application.name}}，
+         * 此时必须配置{@code spring.application.name}；不要放在重启时会被清空的临时目录下
+         */
+        private String directory;
+
+        /**
+         * 段文件的大小，单位字节，默认64M
+         */
+        private int segmentSize = 67108864;
+
+        /**
+         * 是否每次写入后刷盘，默认关闭，进程崩溃不会丢失消息，操作系统崩溃可能丢失
+         */
+        private boolean syncWrite;
+
+        /**
+         * 重放时每批发送的最大消息数，默认256
+         */
+        private int replayBatchSize = 256;
+
+        /**
+         * 检查日志的间隔，单位毫秒，默认1秒
+         */
+        private long replayIntervalMs = 1000;
+
+        /**
+         * 重放失败后最长的退避时间，单位毫秒，默认30秒
+         */
+        private long maxBackoffMs = 30000;
+
+        /**
+         * 每批等待发送结果的超时时间，单位毫秒，默认10秒
+         */
+        private long batchTimeoutMs = 10000;
+
+    }
+
+    /**
+     * 事务消息的配置，定义了{@code TransactionStateResolver}时使用批量回查
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Transaction {
+
+        /**
+         * 每批回查的最大消息数，默认100
+         */
+        private int checkBatchSize = 100;
+
+        /**
+         * 批量回查的攒批时间，也是回查线程等待批次结果的时间，单位毫秒，默认100毫秒
+         */
+        private long checkLingerMs = 100;
+
+        /**
+         * 回查结果的缓存时间，单位毫秒，应大于服务端的回查间隔；默认10分钟
+         */
+        private long resolutionExpireMs = 600000;
+
+    }
+
+    /**
+     * Claim-Check模式的配置：开启后大消息体写入外部存储，消息中只携带引用，消费者按引用读取。
+     * 默认的存储为本地文件系统，多个应用共享时目录应挂载到同一个网络文件系统上
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class ClaimCheck {
+
+        /**
+         * 是否开启，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 写入外部存储的阈值，压缩后的消息体不小于该字节数时写入，默认1M
+         */
+        private int threshold = 1048576;
+
+        /**
+         * 默认存储的根目录
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/rocketmq5-payloads";
+
+    }
+
+    /**
+     * 大消息分片的配置，开启后压缩后仍超过上限的消息体会拆分为多条分片消息，消费者重组后交给监听器。
+     * 消费者须开启{@code RocketMQMessageConsumer#chunked()}，并且消费者组只有一个实例
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Chunk {
+
+        /**
+         * 是否开启分片，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 单条消息体的最大字节数，默认4M，与Broker默认的消息大小上限一致
+         */
+        private int maxBodySize = 4194304;
+
+        /**
+         * 没有消息组的消息是否使用分片ID作为消息组，默认关闭。只能在FIFO主题上开启，
+         * 普通主题会拒绝带消息组的消息；消费者按分片序号重组，不依赖分片的投递顺序
+         */
+        private boolean useMessageGroup;
+
+    }
+
+    /**
+     * 按延迟选择接入点的配置
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class LatencyAware {
+
+        /**
+         * 延迟EWMA的平滑系数，默认0.2
+         */
+        private double ewmaAlpha = 0.2;
+
+        /**
+         * 连续失败多少次后剔除接入点，默认5
+         */
+        private int ejectConsecutiveErrors = 5;
+
+        /**
+         * 延迟超过最快接入点的多少倍后剔除，默认3
+         */
+        private double ejectLatencyFactor = 3;
+
+        /**
+         * 剔除的时长，单位毫秒，默认30秒
+         */
+        private long ejectDurationMs = 30000;
+
+    }
+
+    /**
+     * 打包发送的配置，开启后{@code RocketMQTemplate#packedSend}会把多条小消息打包成一条物理消息发送
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Packing {
+
+        /**
+         * 是否开启打包，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 消息最长的缓存时间，单位毫秒，默认10毫秒
+         */
+        private long lingerMs = 10;
+
+        /**
+         * 每个信封最大的逻辑消息数，默认256
+         */
+        private int maxFrames = 256;
+
+        /**
+         * 每个信封最大的消息体大小，单位字节，默认256K
+         */
+        private long maxBytes = 262144;
+
+    }
+
+    /**
+     * 消息体压缩的配置，压缩的算法记录在消息属性中，消费者自动解压
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class Compression {
+
+        /**
+         * 压缩类型，默认不压缩；LZ4和Zstd需要引入对应的库
+         */
+        private CompressionType type = CompressionType.NONE;
+
+        /**
+         * 压缩的阈值，序列化后的消息体不小于该字节数时才压缩，默认4K
+         */
+        private int threshold = 4096;
+
+        /**
+         * 字典压缩的阈值，主题配置了字典并且序列化后的消息体不小于该字节数时使用字典压缩，默认64
+         */
+        private int dictionaryThreshold = 64;
+
+    }
+
+    /**
+     * 启动预热的配置，预热在容器启动完成前执行，避免首批请求承担初始化的耗时
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class WarmUp {
+
+        /**
+         * 是否开启预热，默认关闭
+         */
+        private boolean enabled;
+
+        /**
+         * 每个主题构建消息的次数，用于预热序列化和消息构建的代码路径，默认1000
+         */
+        private int iterations = 1000;
+
+    }
+
+    /**
+     * 异步发送在途请求的限制，消息数和字节数均未配置时不限制
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class InFlight {
+
+        /**
+         * 最大的在途消息数，小于等于0表示不限制
+         */
+        private int maxMessages;
+
+        /**
+         * 最大的在途消息体字节数，小于等于0表示不限制
+         */
+        private long maxBytes;
+
+        /**
+         * 达到上限时的处理策略，默认阻塞等待至超时
+         */
+        private InFlightPolicy policy = InFlightPolicy.TIMEOUT;
+
+        /**
+         * 等待的超时时间，单位毫秒，默认3秒
+         */
+        private long timeoutMs = 3000;
+
+    }
+
+    /**
+     * 异步发送线程池的配置
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    @SuperBuilder
+    public static class AsyncExecutor {
+
+        /**
+         * 核心线程数，默认为CPU核数
+         */
+        private int corePoolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 最大线程数，默认为CPU核数
+         */
+        private int maxPoolSize = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 队列容量，默认10000；队列满时{@code SendCallback}改在公共的ForkJoinPool上执行，{@code EXECUTOR}方式的结果在客户端的回调线程上完成。
+         * 需要限制排队的回调数时配合{@code in-flight}限制在途的发送数
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * 是否使用虚拟线程执行回调，默认关闭；需要在Java 21及以上运行，开启后线程池的配置不再用于回调
+         */
+        private boolean virtualThreads;
+
     }
 
     /**
@@ -0,0 +1,37 @@
+package cn.tmkit.mq.rocketmq5.boot.autoconfigure;
+
+import cn.tmkit.mq.rocketmq5.boot.core.ReactiveRocketMQTemplate;
+import cn.tmkit.mq.rocketmq5.boot.core.RocketMQTemplate;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Mono;
+
+/**
+ * 自动装配{@linkplain ReactiveRocketMQTemplate}，引入了Reactor并且容器中存在{@linkplain RocketMQTemplate}时生效
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-03
+ */
+@Configuration
+@ConditionalOnClass(Mono.class)
+@EnableConfigurationProperties(RocketMQProperties.class)
+@AutoConfigureAfter(RocketMQAutoConfiguration.class)
+public class RocketMQReactiveAutoConfiguration {
+
+    @Bean
+    @ConditionalOnBean(RocketMQTemplate.class)
+    @ConditionalOnMissingBean(ReactiveRocketMQTemplate.class)
+    public ReactiveRocketMQTemplate reactiveRocketMQTemplate(RocketMQTemplate rocketMQTemplate,
+                                                             RocketMQProperties rocketMQProperties) {
+        RocketMQProperties.Reactive reactive = rocketMQProperties.getProducer().getReactive();
+        return new ReactiveRocketMQTemplate(rocketMQTemplate, reactive == null
+                ? new RocketMQProperties.Reactive().getConcurrency() : reactive.getConcurrency());
+    }
+
+}
@@ -0,0 +1,41 @@
+package cn.tmkit.mq.rocketmq5.boot.autoconfigure;
+
+import cn.tmkit.mq.rocketmq5.boot.web.SendDeadlineFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.servlet.Filter;
+
+/**
+ * 自动装配{@linkplain SendDeadlineFilter}，Servlet应用配置了{@code spring.rocketmq.producer.deadline.header}时生效
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+@Configuration
+@ConditionalOnClass(Filter.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = RocketMQProperties.PREFIX + ".producer.deadline", name = "header")
+@EnableConfigurationProperties(RocketMQProperties.class)
+public class RocketMQWebAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(SendDeadlineFilter.class)
+    public FilterRegistrationBean<SendDeadlineFilter> sendDeadlineFilter(RocketMQProperties rocketMQProperties) {
+        RocketMQProperties.Deadline deadline = rocketMQProperties.getProducer().getDeadline();
+        FilterRegistrationBean<SendDeadlineFilter> registration = new FilterRegistrationBean<>(
+                new SendDeadlineFilter(deadline.getHeader(), deadline.getDefaultTimeoutMs()));
+        // 尽早设置截止时间，后续过滤器中的发送同样受限
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+}
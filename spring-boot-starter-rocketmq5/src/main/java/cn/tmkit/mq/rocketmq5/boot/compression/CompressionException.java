@@ -0,0 +1,33 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import cn.tmkit.core.exception.GenericRuntimeException;
+
+/**
+ * 压缩、解压异常
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+public class CompressionException extends GenericRuntimeException {
+
+    /**
+     * Constructs a new {@link CompressionException} instance.
+     *
+     * @param msg 错误的详细信息
+     */
+    public CompressionException(String msg) {
+        super(msg);
+    }
+
+    /**
+     * Constructs a new {@link CompressionException} instance.
+     *
+     * @param msg   错误的详细信息
+     * @param cause 内部异常
+     */
+    public CompressionException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+}
@@ -0,0 +1,42 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 消息体的压缩类型
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+@Getter
+@AllArgsConstructor
+public enum CompressionType {
+
+    /**
+     * 不压缩
+     */
+    NONE(null),
+
+    /**
+     * GZIP，JDK自带
+     */
+    GZIP(GzipMessageCompressor.NAME),
+
+    /**
+     * LZ4，压缩和解压速度快，需要引入{@code org.lz4:lz4-java}
+     */
+    LZ4(Lz4MessageCompressor.NAME),
+
+    /**
+     * Zstd，压缩率高，需要引入{@code com.github.luben:zstd-jni}
+     */
+    ZSTD(ZstdMessageCompressor.NAME);
+
+    /**
+     * 压缩器的名称
+     */
+    private final String compressorName;
+
+}
@@ -0,0 +1,55 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 基于JDK GZIP的压缩器
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+public class GzipMessageCompressor implements MessageCompressor {
+
+    public static final String NAME = "gzip";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    @Override
+    public @NotNull String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new CompressionException("Could not compress with gzip: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data), BUFFER_SIZE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = gzip.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new CompressionException("Could not decompress with gzip: " + e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+}
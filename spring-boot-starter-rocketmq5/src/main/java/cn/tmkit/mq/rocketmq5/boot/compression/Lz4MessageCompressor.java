@@ -0,0 +1,84 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 基于lz4-java的压缩器，压缩后的内容以4字节（大端）的原始长度开头
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+public class Lz4MessageCompressor implements MessageCompressor {
+
+    public static final String NAME = "lz4";
+
+    /**
+     * LZ4最大的压缩比，用于校验原始长度，避免损坏的长度导致超大的内存分配
+     */
+    private static final int MAX_COMPRESSION_RATIO = 255;
+
+    private final LZ4Compressor compressor;
+
+    private final LZ4SafeDecompressor decompressor;
+
+    public Lz4MessageCompressor() {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public @NotNull String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        byte[] out = new byte[4 + compressor.maxCompressedLength(data.length)];
+        writeInt(out, data.length);
+        int length = compressor.compress(data, 0, data.length, out, 4, out.length - 4);
+        byte[] result = new byte[4 + length];
+        System.arraycopy(out, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) {
+        if (data.length < 4) {
+            throw new CompressionException("Could not decompress with lz4: data too short");
+        }
+        int originalLength = readInt(data);
+        if (originalLength < 0 || originalLength > (long) (data.length - 4) * MAX_COMPRESSION_RATIO) {
+            throw new CompressionException("Could not decompress with lz4: invalid original length " + originalLength);
+        }
+        byte[] out = new byte[originalLength];
+        int length;
+        try {
+            length = decompressor.decompress(data, 4, data.length - 4, out, 0, originalLength);
+        } catch (LZ4Exception e) {
+            throw new CompressionException("Could not decompress with lz4: " + e.getMessage(), e);
+        }
+        if (length != originalLength) {
+            throw new CompressionException("Could not decompress with lz4: expected " + originalLength
+                    + " bytes but got " + length);
+        }
+        return out;
+    }
+
+    private static void writeInt(byte[] buffer, int value) {
+        buffer[0] = (byte) (value >>> 24);
+        buffer[1] = (byte) (value >>> 16);
+        buffer[2] = (byte) (value >>> 8);
+        buffer[3] = (byte) value;
+    }
+
+    private static int readInt(byte[] buffer) {
+        return ((buffer[0] & 0xFF) << 24) | ((buffer[1] & 0xFF) << 16) | ((buffer[2] & 0xFF) << 8) | (buffer[3] & 0xFF);
+    }
+
+}
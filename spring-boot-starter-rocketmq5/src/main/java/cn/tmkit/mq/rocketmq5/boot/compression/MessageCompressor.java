@@ -0,0 +1,64 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 消息体压缩接口：定义了如何压缩和解压消息体
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+public interface MessageCompressor {
+
+    /**
+     * 压缩算法的名称，发送时记录在消息属性中，消费时据此选择解压的算法
+     *
+     * @return 算法名称
+     */
+    @NotNull String name();
+
+    /**
+     * 压缩二进制内容
+     *
+     * @param data 原始内容
+     * @return 压缩后的内容
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * 解压二进制内容
+     *
+     * @param data 压缩后的内容
+     * @return 原始内容
+     */
+    byte[] decompress(byte[] data);
+
+    /**
+     * 基于JDK GZIP的压缩器
+     *
+     * @return GZIP压缩器
+     */
+    static MessageCompressor gzip() {
+        return new GzipMessageCompressor();
+    }
+
+    /**
+     * 基于lz4-java的压缩器，需要引入{@code org.lz4:lz4-java}
+     *
+     * @return LZ4压缩器
+     */
+    static MessageCompressor lz4() {
+        return new Lz4MessageCompressor();
+    }
+
+    /**
+     * 基于zstd-jni的压缩器，需要引入{@code com.github.luben:zstd-jni}
+     *
+     * @return Zstd压缩器
+     */
+    static MessageCompressor zstd() {
+        return new ZstdMessageCompressor();
+    }
+
+}
@@ -0,0 +1,92 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 压缩器的注册表，按名称查找压缩器。生产者按配置的压缩类型选择压缩器，消费者按消息属性中记录的名称选择解压的压缩器
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+public class MessageCompressors {
+
+    private final Map<String, MessageCompressor> compressors = new ConcurrentHashMap<>();
+
+    /**
+     * 创建默认的注册表：总是包含GZIP，类路径中存在对应的库时包含LZ4和Zstd
+     *
+     * @return {@linkplain MessageCompressors}
+     */
+    public static MessageCompressors defaults() {
+        MessageCompressors messageCompressors = new MessageCompressors();
+        ClassLoader classLoader = MessageCompressors.class.getClassLoader();
+        messageCompressors.register(MessageCompressor.gzip());
+        if (ClassUtils.isPresent("net.jpountz.lz4.LZ4Factory", classLoader)) {
+            messageCompressors.register(MessageCompressor.lz4());
+        }
+        if (ClassUtils.isPresent("com.github.luben.zstd.Zstd", classLoader)) {
+            messageCompressors.register(MessageCompressor.zstd());
+        }
+        return messageCompressors;
+    }
+
+    /**
+     * 注册压缩器，同名的压缩器会被覆盖
+     *
+     * @param compressor 压缩器
+     */
+    public void register(@NotNull MessageCompressor compressor) {
+        compressors.put(compressor.name(), compressor);
+    }
+
+    /**
+     * 按名称查找压缩器
+     *
+     * @param name 压缩器的名称
+     * @return 压缩器，不存在时返回{@code null}
+     */
+    public @Nullable MessageCompressor get(String name) {
+        return name == null ? null : compressors.get(name);
+    }
+
+    /**
+     * 按压缩类型查找压缩器
+     *
+     * @param type 压缩类型
+     * @return 压缩器，{@linkplain CompressionType#NONE}返回{@code null}
+     * @throws CompressionException 压缩器不存在，一般是类路径中缺少对应的库
+     */
+    public @Nullable MessageCompressor get(@NotNull CompressionType type) {
+        if (type == CompressionType.NONE) {
+            return null;
+        }
+        MessageCompressor compressor = get(type.getCompressorName());
+        if (compressor == null) {
+            throw new CompressionException("No compressor found for " + type + ", check the classpath");
+        }
+        return compressor;
+    }
+
+    /**
+     * 按名称解压
+     *
+     * @param name 压缩器的名称
+     * @param data 压缩后的内容
+     * @return 原始内容
+     * @throws CompressionException 压缩器不存在或解压失败
+     */
+    public byte[] decompress(@NotNull String name, byte[] data) {
+        MessageCompressor compressor = compressors.get(name);
+        if (compressor == null) {
+            throw new CompressionException("No compressor found for name " + name);
+        }
+        return compressor.decompress(data);
+    }
+
+}
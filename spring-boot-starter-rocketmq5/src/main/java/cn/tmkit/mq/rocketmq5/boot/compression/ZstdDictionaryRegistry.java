@@ -0,0 +1,156 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zstd字典的注册表，生产者和消费者共用
+ * <ul>
+ *     <li>生产者：按主题查找字典压缩消息体，并把字典ID记录在消息属性中</li>
+ *     <li>消费者：按消息属性中的字典ID查找字典解压消息体</li>
+ * </ul>
+ * 小消息（几百字节的JSON）使用普通压缩几乎没有收益，使用按主题训练的字典可以显著降低消息体大小
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-18
+ */
+@Slf4j
+public class ZstdDictionaryRegistry implements Closeable {
+
+    private final int level;
+
+    private final Map<String, Dictionary> topicDictionaries = new ConcurrentHashMap<>();
+
+    private final Map<Long, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+
+    public ZstdDictionaryRegistry() {
+        this(ZstdMessageCompressor.DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level 压缩级别
+     */
+    public ZstdDictionaryRegistry(int level) {
+        this.level = level;
+    }
+
+    /**
+     * 注册主题的字典，该主题的消息使用此字典压缩；同时注册为可解压的字典
+     *
+     * @param topic      主题
+     * @param dictionary 字典的内容，由{@linkplain ZstdDictionaryTrainer}训练得到
+     * @return 字典ID
+     */
+    public long register(@NotNull String topic, @NotNull byte[] dictionary) {
+        long dictId = register(dictionary);
+        Dictionary previous = topicDictionaries.put(topic, new Dictionary(dictId, new ZstdDictCompress(dictionary, level)));
+        if (previous != null) {
+            previous.compress.close();
+        }
+        log.info("Register zstd dictionary for topic {} ,dictId = {} ,size = {}", topic, dictId, dictionary.length);
+        return dictId;
+    }
+
+    /**
+     * 注册仅用于解压的字典，用于字典轮换期间解压旧字典压缩的消息
+     *
+     * @param dictionary 字典的内容
+     * @return 字典ID
+     */
+    public long register(@NotNull byte[] dictionary) {
+        long dictId = Zstd.getDictIdFromDict(dictionary);
+        if (dictId == 0) {
+            throw new CompressionException("Invalid zstd dictionary: missing dictionary id");
+        }
+        ZstdDictDecompress previous = decompressDictionaries.put(dictId, new ZstdDictDecompress(dictionary));
+        if (previous != null) {
+            previous.close();
+        }
+        return dictId;
+    }
+
+    /**
+     * 查找主题的字典ID
+     *
+     * @param topic 主题
+     * @return 字典ID，主题未注册字典时返回{@code null}
+     */
+    public @Nullable Long getDictId(String topic) {
+        Dictionary dictionary = topicDictionaries.get(topic);
+        return dictionary == null ? null : dictionary.dictId;
+    }
+
+    /**
+     * 使用主题的字典压缩
+     *
+     * @param topic 主题
+     * @param data  原始内容
+     * @return 压缩后的内容，主题未注册字典时返回{@code null}
+     */
+    public @Nullable byte[] compress(String topic, byte[] data) {
+        Dictionary dictionary = topicDictionaries.get(topic);
+        if (dictionary == null) {
+            return null;
+        }
+        try {
+            return Zstd.compress(data, dictionary.compress);
+        } catch (ZstdException e) {
+            throw new CompressionException("Could not compress with zstd dictionary: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 使用指定的字典解压
+     *
+     * @param dictId 字典ID
+     * @param data   压缩后的内容
+     * @return 原始内容
+     */
+    public byte[] decompress(long dictId, byte[] data) {
+        ZstdDictDecompress dictionary = decompressDictionaries.get(dictId);
+        if (dictionary == null) {
+            throw new CompressionException("No zstd dictionary found for dictId " + dictId);
+        }
+        long originalLength = Zstd.decompressedSize(data);
+        if (originalLength <= 0 || originalLength > Integer.MAX_VALUE) {
+            throw new CompressionException("Could not decompress with zstd dictionary: unknown content size");
+        }
+        try {
+            return Zstd.decompress(data, dictionary, (int) originalLength);
+        } catch (ZstdException e) {
+            throw new CompressionException("Could not decompress with zstd dictionary: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        topicDictionaries.values().forEach(dictionary -> dictionary.compress.close());
+        topicDictionaries.clear();
+        decompressDictionaries.values().forEach(ZstdDictDecompress::close);
+        decompressDictionaries.clear();
+    }
+
+    private static class Dictionary {
+
+        private final long dictId;
+
+        private final ZstdDictCompress compress;
+
+        Dictionary(long dictId, ZstdDictCompress compress) {
+            this.dictId = dictId;
+            this.compress = compress;
+        }
+
+    }
+
+}
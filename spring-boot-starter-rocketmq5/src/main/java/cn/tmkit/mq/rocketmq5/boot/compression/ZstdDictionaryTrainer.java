@@ -0,0 +1,86 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zstd字典的训练工具：从序列化后的消息体中抽样，训练出用于{@linkplain ZstdDictionaryRegistry}的字典
+ * <pre>{@code
+ * ZstdDictionaryTrainer trainer = new ZstdDictionaryTrainer(16 * 1024 * 1024, 16 * 1024, 0.1);
+ * payloads.forEach(payload -> trainer.offer(serializer.serialize(payload)));
+ * Files.write(Paths.get("order.zdict"), trainer.train());
+ * }</pre>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-18
+ */
+public class ZstdDictionaryTrainer {
+
+    private final ZstdDictTrainer trainer;
+
+    private final double sampleRate;
+
+    /**
+     * 创建训练工具
+     *
+     * @param sampleBufferSize 样本缓冲区的大小，单位字节，一般为字典大小的100倍
+     * @param dictSize         字典的大小，单位字节，一般为16K~112K
+     * @param sampleRate       抽样比例，(0, 1]
+     */
+    public ZstdDictionaryTrainer(int sampleBufferSize, int dictSize, double sampleRate) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be in (0, 1]");
+        }
+        this.trainer = new ZstdDictTrainer(sampleBufferSize, dictSize);
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 提交一个样本，按抽样比例决定是否采用
+     *
+     * @param sample 序列化后的消息体
+     * @return 样本被采用并且缓冲区未满时返回{@code true}
+     */
+    public boolean offer(@NotNull byte[] sample) {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        return trainer.addSample(sample);
+    }
+
+    /**
+     * 使用已采用的样本训练字典
+     *
+     * @return 字典的内容
+     */
+    public byte[] train() {
+        try {
+            return trainer.trainSamples();
+        } catch (ZstdException e) {
+            throw new CompressionException("Could not train zstd dictionary: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 使用给定的样本训练字典
+     *
+     * @param samples  序列化后的消息体
+     * @param dictSize 字典的大小，单位字节
+     * @return 字典的内容
+     */
+    public static byte[] train(@NotNull Collection<byte[]> samples, int dictSize) {
+        long total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        ZstdDictionaryTrainer trainer = new ZstdDictionaryTrainer((int) Math.min(Integer.MAX_VALUE, total), dictSize, 1);
+        samples.forEach(trainer::offer);
+        return trainer.train();
+    }
+
+}
@@ -0,0 +1,63 @@
+package cn.tmkit.mq.rocketmq5.boot.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 基于zstd-jni的压缩器，压缩后的帧中记录了原始长度
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+public class ZstdMessageCompressor implements MessageCompressor {
+
+    public static final String NAME = "zstd";
+
+    /**
+     * 默认的压缩级别
+     */
+    public static final int DEFAULT_LEVEL = 3;
+
+    private final int level;
+
+    public ZstdMessageCompressor() {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level 压缩级别，1~22，越大压缩率越高、速度越慢
+     */
+    public ZstdMessageCompressor(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public @NotNull String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        try {
+            return Zstd.compress(data, level);
+        } catch (ZstdException e) {
+            throw new CompressionException("Could not compress with zstd: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) {
+        long originalLength = Zstd.decompressedSize(data);
+        if (originalLength <= 0 || originalLength > Integer.MAX_VALUE) {
+            throw new CompressionException("Could not decompress with zstd: unknown content size");
+        }
+        try {
+            return Zstd.decompress(data, (int) originalLength);
+        } catch (ZstdException e) {
+            throw new CompressionException("Could not decompress with zstd: " + e.getMessage(), e);
+        }
+    }
+
+}
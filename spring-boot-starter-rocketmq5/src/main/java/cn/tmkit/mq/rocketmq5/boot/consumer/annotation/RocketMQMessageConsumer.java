@@ -85,4 +85,26 @@ public @interface RocketMQMessageConsumer {
      */
     int maxCacheMessageSizeInBytes() default 4194304;
 
+    /**
+     * 是否消费分片消息，默认关闭。分片只能在单个实例的内存中重组，开启即声明消费者组只有一个实例，
+     * 同一应用内多个开启分片的监听器使用相同的消费者组时启动失败。未开启时收到的分片消费失败
+     */
+    boolean chunked() default false;
+
+    /**
+     * 分片重组缓冲区的最大字节数，超过后新的分片消费失败等待重新投递，默认64M
+     */
+    long maxChunkBufferBytes() default 67108864;
+
+    /**
+     * 未消费成功的分片在内存中的有效期，也是已消费的分片ID保留的时长，单位秒；默认10分钟。
+     * 分片缓存后即确认，过期或进程重启后该消息丢失
+     */
+    int chunkExpireSeconds() default 600;
+
+    /**
+     * 是否按去重键跳过重复的消息，默认开启。对冲发送的消息携带去重键，订阅主备集群的监听器使用相同的消费者组时只处理一次
+     */
+    boolean dedup() default true;
+
 }
@@ -0,0 +1,258 @@
+package cn.tmkit.mq.rocketmq5.boot.consumer.listener;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分片消息的重组缓冲区，缓存的分片总字节数有上限
+ * <ul>
+ *     <li>分片到齐前容器确认每个分片，分片只保存在缓冲区中，不消耗Broker的重试次数</li>
+ *     <li>分片到齐后按序号拼接为完整的消息体，消费成功前一直保留在缓冲区中：消费失败后最后一个分片重新投递时再次返回完整的消息体</li>
+ *     <li>消费成功后记录分片ID，有效期内重复投递的分片直接确认</li>
+ *     <li>超过上限时拒绝新的分片，由容器返回消费失败，等待Broker重新投递，形成反压</li>
+ *     <li>超过有效期仍未消费成功的分片从内存中丢弃并记录日志</li>
+ * </ul>
+ * <p>
+ * 已确认的分片只在当前进程的内存中，进程重启或分片过期后该消息丢失，需要可靠投递的大消息请使用Claim-Check
+ * （{@code spring.rocketmq.claim-check}）。同一条消息的分片须投递到同一个消费者实例才能重组，
+ * 因此分片要求消费者组只有一个实例，监听器须通过{@code RocketMQMessageConsumer#chunked()}显式开启
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-22
+ */
+@Slf4j
+public class ChunkAssembler {
+
+    /**
+     * 缓存分片的最大字节数
+     */
+    @Getter
+    private final long maxBufferedBytes;
+
+    /**
+     * 未到齐的分片的有效期，单位毫秒
+     */
+    @Getter
+    private final long expireMs;
+
+    private final Map<String, Partial> partials = new ConcurrentHashMap<>();
+
+    /**
+     * 已消费成功的分片ID及其过期时间
+     */
+    private final Map<String, Long> consumed = new ConcurrentHashMap<>();
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    private volatile long lastSweepTime = System.currentTimeMillis();
+
+    /**
+     * @param maxBufferedBytes 缓存分片的最大字节数
+     * @param expireMs         未到齐的分片的有效期，也是已消费的分片ID保留的时长，单位毫秒
+     */
+    public ChunkAssembler(long maxBufferedBytes, long expireMs) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.expireMs = expireMs;
+    }
+
+    /**
+     * 提交一个分片
+     *
+     * @param chunkId 分片ID
+     * @param index   分片序号，从0开始
+     * @param count   分片总数
+     * @param chunk   分片的内容
+     * @return 重组的结果
+     */
+    public Result offer(@NotNull String chunkId, int index, int count, @NotNull byte[] chunk) {
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid chunk index " + index + " of " + count);
+        }
+        sweepIfNecessary();
+        Long consumedUntil = consumed.get(chunkId);
+        if (consumedUntil != null && consumedUntil > System.currentTimeMillis()) {
+            return Result.CONSUMED;
+        }
+        Partial partial = partials.computeIfAbsent(chunkId, key -> new Partial(count));
+        synchronized (partial) {
+            if (partial.discarded) {
+                return Result.PENDING;
+            }
+            if (partial.chunks[index] != null) {
+                if (partial.received == count && index == partial.lastIndex) {
+                    // 完整的消息消费失败后，最后一个分片重新投递
+                    return new Result(partial.assemble());
+                }
+                // 重复投递的分片
+                return Result.PENDING;
+            }
+            if (partial.received + 1 < count && !reserve(chunk.length)) {
+                if (partial.received == 0) {
+                    partials.remove(chunkId, partial);
+                }
+                return Result.REJECTED;
+            }
+            if (partial.received + 1 == count) {
+                // 最后一个分片不受上限限制，保证已缓存的分片可以完成
+                bufferedBytes.addAndGet(chunk.length);
+            }
+            partial.chunks[index] = chunk;
+            partial.received++;
+            partial.bytes += chunk.length;
+            if (partial.received < count) {
+                return Result.PENDING;
+            }
+            partial.lastIndex = index;
+            return new Result(partial.assemble());
+        }
+    }
+
+    /**
+     * 重组后的消息消费成功，释放缓存的分片，在有效期内直接确认相同分片ID的分片
+     *
+     * @param chunkId 分片ID
+     */
+    public void markConsumed(@NotNull String chunkId) {
+        consumed.put(chunkId, System.currentTimeMillis() + expireMs);
+        Partial partial = partials.remove(chunkId);
+        if (partial != null) {
+            synchronized (partial) {
+                if (!partial.discarded) {
+                    partial.discarded = true;
+                    bufferedBytes.addAndGet(-partial.bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 当前缓存的分片字节数
+     */
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    private boolean reserve(int size) {
+        while (true) {
+            long current = bufferedBytes.get();
+            if (current + size > maxBufferedBytes) {
+                return false;
+            }
+            if (bufferedBytes.compareAndSet(current, current + size)) {
+                return true;
+            }
+        }
+    }
+
+    private void sweepIfNecessary() {
+        long now = System.currentTimeMillis();
+        if (now - lastSweepTime < expireMs / 2) {
+            return;
+        }
+        lastSweepTime = now;
+        consumed.values().removeIf(expireTime -> expireTime <= now);
+        Iterator<Map.Entry<String, Partial>> iterator = partials.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Partial> entry = iterator.next();
+            Partial partial = entry.getValue();
+            int received;
+            // 锁内只修改状态，日志在锁外输出，避免虚拟线程在日志的I/O上固定载体线程
+            synchronized (partial) {
+                if (partial.discarded || now - partial.createTime <= expireMs) {
+                    continue;
+                }
+                partial.discarded = true;
+                iterator.remove();
+                bufferedBytes.addAndGet(-partial.bytes);
+                received = partial.received;
+            }
+            log.warn("Discard expired chunks, chunkId = {} ,received = {}/{} ,expired after {}s", entry.getKey(),
+                    received, partial.chunks.length, TimeUnit.MILLISECONDS.toSeconds(expireMs));
+        }
+    }
+
+    /**
+     * 重组的结果
+     */
+    public static final class Result {
+
+        /**
+         * 分片已缓存，等待其余分片，分片可以确认
+         */
+        public static final Result PENDING = new Result(null);
+
+        /**
+         * 分片所属的消息已消费成功，分片可以直接确认
+         */
+        public static final Result CONSUMED = new Result(null);
+
+        /**
+         * 缓冲区已满，分片未被缓存
+         */
+        public static final Result REJECTED = new Result(null);
+
+        /**
+         * 完整的消息体，分片到齐时才有值
+         */
+        @Getter
+        private final byte[] body;
+
+        private Result(byte[] body) {
+            this.body = body;
+        }
+
+        /**
+         * @return 分片是否已经到齐
+         */
+        public boolean isComplete() {
+            return body != null;
+        }
+
+    }
+
+    private static class Partial {
+
+        private final byte[][] chunks;
+
+        private final long createTime = System.currentTimeMillis();
+
+        private int received;
+
+        private long bytes;
+
+        /**
+         * 补齐消息的分片序号
+         */
+        private int lastIndex = -1;
+
+        /**
+         * 已从缓冲区中移除
+         */
+        private boolean discarded;
+
+        Partial(int count) {
+            this.chunks = new byte[count][];
+        }
+
+        byte[] assemble() {
+            byte[] body = new byte[(int) bytes];
+            int offset = 0;
+            for (byte[] part : chunks) {
+                System.arraycopy(part, 0, body, offset, part.length);
+                offset += part.length;
+            }
+            return body;
+        }
+
+    }
+
+}
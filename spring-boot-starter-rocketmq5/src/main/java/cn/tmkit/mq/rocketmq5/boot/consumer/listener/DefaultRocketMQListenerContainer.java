@@ -3,7 +3,13 @@ package cn.tmkit.mq.rocketmq5.boot.consumer.listener;
 import cn.tmkit.core.io.NioUtil;
 import cn.tmkit.core.lang.Asserts;
 import cn.tmkit.core.lang.Maps;
+import cn.tmkit.mq.rocketmq5.boot.compression.MessageCompressors;
+import cn.tmkit.mq.rocketmq5.boot.compression.ZstdDictionaryRegistry;
 import cn.tmkit.mq.rocketmq5.boot.consumer.annotation.RocketMQMessageConsumer;
+import cn.tmkit.mq.rocketmq5.boot.core.MessageException;
+import cn.tmkit.mq.rocketmq5.boot.core.MessagePacking;
+import cn.tmkit.mq.rocketmq5.boot.core.RocketMQHeaders;
+import cn.tmkit.mq.rocketmq5.boot.payload.PayloadStore;
 import cn.tmkit.mq.rocketmq5.boot.serializer.RocketMQMessageSerializer;
 import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
 import lombok.AccessLevel;
@@ -13,10 +19,12 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
 import org.apache.rocketmq.client.apis.consumer.FilterExpression;
 import org.apache.rocketmq.client.apis.consumer.FilterExpressionType;
 import org.apache.rocketmq.client.apis.consumer.PushConsumer;
 import org.apache.rocketmq.client.apis.consumer.PushConsumerBuilder;
+import org.apache.rocketmq.client.apis.message.MessageView;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -25,6 +33,7 @@ import org.springframework.context.SmartLifecycle;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -44,6 +53,31 @@ public class DefaultRocketMQListenerContainer implements RocketMQListenerContain
 
     private RocketMQMessageSerializer<Object> rocketMQMessageSerializer;
 
+    /**
+     * 压缩器的注册表，用于解压压缩过的消息体
+     */
+    private MessageCompressors messageCompressors;
+
+    /**
+     * Zstd字典的注册表，用于解压字典压缩的消息体
+     */
+    private ZstdDictionaryRegistry zstdDictionaryRegistry;
+
+    /**
+     * 分片消息的重组缓冲区，为空时收到分片消息直接消费失败
+     */
+    private ChunkAssembler chunkAssembler;
+
+    /**
+     * 消息体的外部存储，用于读取Claim-Check模式发送的消息体
+     */
+    private PayloadStore payloadStore;
+
+    /**
+     * 消息去重，为空时不去重；只对携带去重键的消息生效
+     */
+    private MessageDeduplicator messageDeduplicator;
+
     /**
      * The name of the DefaultRocketMQListenerContainer instance
      */
@@ -187,16 +221,7 @@ public class DefaultRocketMQListenerContainer implements RocketMQListenerContain
                     .setConsumptionThreadCount(consumptionThreadCount)
                     .setMaxCacheMessageCount(maxCachedMessageCount)
                     .setMaxCacheMessageSizeInBytes(maxCacheMessageSizeInBytes)
-                    .setMessageListener(messageView -> {
-                        try {
-                            Object message = rocketMQMessageSerializer.deserialize(NioUtil.readBytes(messageView.getBody()));
-                            return rocketMQMessageListener.consume(message, messageView);
-                        } catch (Exception e) {
-                            log.error("Message consumed exception endpoints = {} ,group = {} ,topic = {}",
-                                    endpoints, consumerGroup, topic, e);
-                            throw new RuntimeException(e);
-                        }
-                    });
+                    .setMessageListener(this::consume);
             pushConsumer = pushConsumerBuilder.build();
         } catch (ClientException e) {
             throw new RuntimeException(e);
@@ -205,6 +230,180 @@ public class DefaultRocketMQListenerContainer implements RocketMQListenerContain
         log.info("running container: {}", this);
     }
 
+    /**
+     * 消费消息，携带去重键的消息在有效期内只处理一次
+     *
+     * @param messageView 消息视图
+     * @return 消费结果
+     */
+    private ConsumeResult consume(MessageView messageView) {
+        String dedupKey = messageDeduplicator == null ? null : messageView.getProperties().get(RocketMQHeaders.DEDUP_KEY);
+        if (dedupKey == null) {
+            return doConsume(messageView);
+        }
+        MessageDeduplicator.Status status = messageDeduplicator.acquire(consumerGroup, dedupKey);
+        if (status == MessageDeduplicator.Status.DUPLICATE) {
+            log.debug("Skip duplicate message, topic = {} ,dedupKey = {} ,messageId = {}", topic, dedupKey,
+                    messageView.getMessageId());
+            return ConsumeResult.SUCCESS;
+        }
+        if (status == MessageDeduplicator.Status.BUSY) {
+            // 另一份消息正在处理，等待重新投递时再判断
+            return ConsumeResult.FAILURE;
+        }
+        if (status == MessageDeduplicator.Status.UNTRACKED) {
+            return doConsume(messageView);
+        }
+        boolean success = false;
+        try {
+            ConsumeResult consumeResult = doConsume(messageView);
+            success = consumeResult == ConsumeResult.SUCCESS;
+            return consumeResult;
+        } finally {
+            if (success) {
+                messageDeduplicator.complete(consumerGroup, dedupKey);
+            } else {
+                messageDeduplicator.release(consumerGroup, dedupKey);
+            }
+        }
+    }
+
+    /**
+     * 消费消息：还原消息体后反序列化，再交给监听器处理
+     *
+     * @param messageView 消息视图
+     * @return 消费结果
+     */
+    private ConsumeResult doConsume(MessageView messageView) {
+        try {
+            byte[] body = NioUtil.readBytes(messageView.getBody());
+            String chunkId = messageView.getProperties().get(RocketMQHeaders.CHUNK_ID);
+            if (chunkId != null) {
+                ChunkAssembler.Result result = assemble(body, messageView);
+                if (result == ChunkAssembler.Result.REJECTED) {
+                    // 分片未被缓存，等待重新投递
+                    return ConsumeResult.FAILURE;
+                }
+                if (!result.isComplete()) {
+                    // 已缓存或已消费的分片直接确认，不消耗重试次数
+                    return ConsumeResult.SUCCESS;
+                }
+                body = result.getBody();
+            }
+            ConsumeResult consumeResult = consumeBody(body, messageView);
+            if (chunkId != null && consumeResult == ConsumeResult.SUCCESS) {
+                chunkAssembler.markConsumed(chunkId);
+            }
+            return consumeResult;
+        } catch (Exception e) {
+            log.error("Message consumed exception endpoints = {} ,group = {} ,topic = {}",
+                    endpoints, consumerGroup, topic, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 消费还原后的消息体
+     *
+     * @param body        消息体
+     * @param messageView 消息视图
+     * @return 消费结果
+     */
+    private ConsumeResult consumeBody(byte[] body, MessageView messageView) {
+        body = resolveClaimCheck(body, messageView);
+        body = decompress(body, messageView);
+        if (messageView.getProperties().containsKey(RocketMQHeaders.PACKED)) {
+            return consumePacked(body, messageView);
+        }
+        Object message = rocketMQMessageSerializer.deserialize(body);
+        return rocketMQMessageListener.consume(message, messageView);
+    }
+
+    /**
+     * 消费打包消息：解包后逐条交给监听器处理，任意一条失败则整个信封消费失败并等待重新投递，
+     * 因此同一信封内已处理成功的逻辑消息可能被重复消费
+     *
+     * @param envelope    信封的内容
+     * @param messageView 消息视图
+     * @return 消费结果
+     */
+    private ConsumeResult consumePacked(byte[] envelope, MessageView messageView) {
+        for (byte[] frame : MessagePacking.unpack(envelope)) {
+            Object message = rocketMQMessageSerializer.deserialize(frame);
+            if (rocketMQMessageListener.consume(message, messageView) != ConsumeResult.SUCCESS) {
+                return ConsumeResult.FAILURE;
+            }
+        }
+        return ConsumeResult.SUCCESS;
+    }
+
+    /**
+     * 缓存分片消息，分片到齐后返回完整的消息体。未开启分片或缓冲区已满时拒绝分片
+     *
+     * @param chunk       分片的内容
+     * @param messageView 消息视图
+     * @return 重组的结果
+     */
+    private ChunkAssembler.Result assemble(byte[] chunk, MessageView messageView) {
+        if (chunkAssembler == null) {
+            log.error("Chunked message received but chunked is not enabled on the consumer, topic = {} ,messageId = {}",
+                    topic, messageView.getMessageId());
+            return ChunkAssembler.Result.REJECTED;
+        }
+        Map<String, String> properties = messageView.getProperties();
+        ChunkAssembler.Result result = chunkAssembler.offer(properties.get(RocketMQHeaders.CHUNK_ID),
+                Integer.parseInt(properties.get(RocketMQHeaders.CHUNK_INDEX)),
+                Integer.parseInt(properties.get(RocketMQHeaders.CHUNK_COUNT)), chunk);
+        if (result == ChunkAssembler.Result.REJECTED) {
+            log.warn("Chunk buffer is full, chunkId = {} ,bufferedBytes = {}", properties.get(RocketMQHeaders.CHUNK_ID),
+                    chunkAssembler.getBufferedBytes());
+        }
+        return result;
+    }
+
+    /**
+     * 消息体为外部存储的引用时，从{@linkplain #payloadStore}读取真实的内容。消息可能被多个消费者组消费，读取后不删除
+     *
+     * @param body        消息体
+     * @param messageView 消息视图
+     * @return 真实的消息体
+     */
+    private byte[] resolveClaimCheck(byte[] body, MessageView messageView) {
+        String reference = messageView.getProperties().get(RocketMQHeaders.CLAIM_CHECK);
+        if (reference == null) {
+            return body;
+        }
+        if (payloadStore == null) {
+            throw new MessageException("Message body stored at " + reference + " but no payload store configured");
+        }
+        return payloadStore.load(reference);
+    }
+
+    /**
+     * 按消息属性还原压缩过的消息体
+     *
+     * @param body        消息体
+     * @param messageView 消息视图
+     * @return 原始的消息体
+     */
+    private byte[] decompress(byte[] body, MessageView messageView) {
+        Map<String, String> properties = messageView.getProperties();
+        String compression = properties.get(RocketMQHeaders.COMPRESSION);
+        String dictId = properties.get(RocketMQHeaders.ZSTD_DICT_ID);
+        if (dictId != null) {
+            if (zstdDictionaryRegistry == null) {
+                throw new MessageException("Message body compressed with zstd dictionary " + dictId + " but no dictionaries configured");
+            }
+            body = zstdDictionaryRegistry.decompress(Long.parseLong(dictId), body);
+        } else if (compression != null) {
+            if (messageCompressors == null) {
+                throw new MessageException("Message body compressed with " + compression + " but no compressors configured");
+            }
+            body = messageCompressors.decompress(compression, body);
+        }
+        return body;
+    }
+
     @Override
     public void setApplicationContext(@NotNull ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
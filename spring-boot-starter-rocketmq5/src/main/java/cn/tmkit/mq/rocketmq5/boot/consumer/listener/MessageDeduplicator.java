@@ -0,0 +1,164 @@
+package cn.tmkit.mq.rocketmq5.boot.consumer.listener;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 消息去重：记录最近消费成功的去重键，对冲发送到主备集群的两份消息只处理一次
+ * <p>
+ * 去重键按消费者组隔离，订阅两个集群的监听容器须使用相同的消费者组名并运行在同一个进程中才能去重。
+ * 去重只在单个进程的内存中进行：两份消息由各自集群的负载均衡分配，多实例部署时常常落在不同的进程上，
+ * 重启后记录也会丢失，因此本类只减少重复，监听器仍须自身幂等（如按去重键做数据库唯一约束）。
+ * 处理中的去重键再次到达时返回{@linkplain Status#BUSY}，消费失败后等待重新投递，届时前一份消息已有结果
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-27
+ */
+public class MessageDeduplicator {
+
+    /**
+     * 处理中的标记
+     */
+    private static final long PROCESSING = -1L;
+
+    /**
+     * 消费成功的去重键保留的时长，单位毫秒
+     */
+    @Getter
+    private final long expireMs;
+
+    /**
+     * 最多保留的去重键数量，超过后不再记录新的去重键
+     */
+    @Getter
+    private final int maxEntries;
+
+    private final ConcurrentMap<String, Long> entries = new ConcurrentHashMap<>();
+
+    private volatile long lastEviction;
+
+    /**
+     * @param expireMs   消费成功的去重键保留的时长，单位毫秒，应大于主备集群投递的时间差
+     * @param maxEntries 最多保留的去重键数量
+     */
+    public MessageDeduplicator(long expireMs, int maxEntries) {
+        if (expireMs <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("expireMs and maxEntries must be greater than 0");
+        }
+        this.expireMs = expireMs;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 开始处理一条消息
+     *
+     * @param group    消费者组
+     * @param dedupKey 去重键
+     * @return 处理的状态
+     */
+    public Status acquire(@NotNull String group, @NotNull String dedupKey) {
+        String key = group + '\u0000' + dedupKey;
+        long now = System.currentTimeMillis();
+        while (true) {
+            Long value = entries.get(key);
+            if (value == null) {
+                if (entries.size() >= maxEntries && !evictExpired(now)) {
+                    // 去重表已满，放行但不记录
+                    return Status.UNTRACKED;
+                }
+                if (entries.putIfAbsent(key, PROCESSING) == null) {
+                    return Status.ACQUIRED;
+                }
+            } else if (value == PROCESSING) {
+                return Status.BUSY;
+            } else if (value > now) {
+                return Status.DUPLICATE;
+            } else if (entries.replace(key, value, PROCESSING)) {
+                return Status.ACQUIRED;
+            }
+        }
+    }
+
+    /**
+     * 消息处理成功，在有效期内跳过相同去重键的消息
+     *
+     * @param group    消费者组
+     * @param dedupKey 去重键
+     */
+    public void complete(@NotNull String group, @NotNull String dedupKey) {
+        entries.put(group + '\u0000' + dedupKey, System.currentTimeMillis() + expireMs);
+    }
+
+    /**
+     * 消息处理失败，允许相同去重键的消息重新处理
+     *
+     * @param group    消费者组
+     * @param dedupKey 去重键
+     */
+    public void release(@NotNull String group, @NotNull String dedupKey) {
+        entries.remove(group + '\u0000' + dedupKey, PROCESSING);
+    }
+
+    /**
+     * @return 当前记录的去重键数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 清理过期的去重键，每秒最多清理一次，避免去重表满时每条消息都遍历
+     *
+     * @param now 当前时间
+     * @return 清理后仍有空位时返回{@code true}
+     */
+    private boolean evictExpired(long now) {
+        if (now - lastEviction < 1000) {
+            return false;
+        }
+        lastEviction = now;
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            long value = iterator.next().getValue();
+            if (value != PROCESSING && value <= now) {
+                iterator.remove();
+            }
+        }
+        return entries.size() < maxEntries;
+    }
+
+    /**
+     * 处理的状态
+     */
+    public enum Status {
+
+        /**
+         * 首次处理，处理结束后须调用{@linkplain MessageDeduplicator#complete}或{@linkplain MessageDeduplicator#release}
+         */
+        ACQUIRED,
+
+        /**
+         * 有效期内已处理成功，直接跳过
+         */
+        DUPLICATE,
+
+        /**
+         * 相同去重键的消息正在处理
+         */
+        BUSY,
+
+        /**
+         * 去重表已满，不做去重
+         */
+        UNTRACKED
+
+    }
+
+}
@@ -3,7 +3,10 @@ package cn.tmkit.mq.rocketmq5.boot.consumer.listener;
 import cn.tmkit.core.convert.ConvertUtil;
 import cn.tmkit.core.lang.Asserts;
 import cn.tmkit.core.lang.Strings;
+import cn.tmkit.mq.rocketmq5.boot.compression.MessageCompressors;
+import cn.tmkit.mq.rocketmq5.boot.compression.ZstdDictionaryRegistry;
 import cn.tmkit.mq.rocketmq5.boot.consumer.annotation.RocketMQMessageConsumer;
+import cn.tmkit.mq.rocketmq5.boot.payload.PayloadStore;
 import cn.tmkit.mq.rocketmq5.boot.serializer.RocketMQMessageSerializer;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
@@ -16,6 +19,9 @@ import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
 
 import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -33,6 +39,16 @@ public class RocketMQMessageListenerBeanPostProcessor implements ApplicationCont
 
     private GenericApplicationContext applicationContext;
 
+    /**
+     * 没有自定义{@linkplain MessageDeduplicator}时所有监听容器共享的去重表，保留10分钟内最多10万个去重键
+     */
+    private MessageDeduplicator defaultMessageDeduplicator;
+
+    /**
+     * 开启分片的消费者组，分片只能在单个消费者内重组
+     */
+    private final Set<String> chunkedGroups = ConcurrentHashMap.newKeySet();
+
     @Override
     public Object postProcessBeforeInitialization(@NotNull Object bean, @NotNull String beanName) throws BeansException {
         return bean;
@@ -77,6 +93,10 @@ public class RocketMQMessageListenerBeanPostProcessor implements ApplicationCont
         RocketMQMessageSerializer<Object> rocketMQMessageSerializer = applicationContext.getBean(RocketMQMessageSerializer.class);
         DefaultRocketMQListenerContainer container = new DefaultRocketMQListenerContainer();
         container.setRocketMQMessageSerializer(rocketMQMessageSerializer);
+        container.setMessageCompressors(applicationContext.getBeanProvider(MessageCompressors.class)
+                .getIfAvailable(MessageCompressors::defaults));
+        container.setZstdDictionaryRegistry(applicationContext.getBeanProvider(ZstdDictionaryRegistry.class).getIfAvailable());
+        container.setPayloadStore(applicationContext.getBeanProvider(PayloadStore.class).getIfAvailable());
         container.setName(name);
         container.setRocketMQMessageListener((RocketMQMessageListener<Object>) bean);
         container.setRocketMQMessageConsumer(annotation);
@@ -92,7 +112,27 @@ public class RocketMQMessageListenerBeanPostProcessor implements ApplicationCont
         container.setSecretKey(environment.resolvePlaceholders(annotation.secretKey()));
         container.setMaxCachedMessageCount(annotation.maxCachedMessageCount());
         container.setMaxCacheMessageSizeInBytes(annotation.maxCacheMessageSizeInBytes());
+        if (annotation.chunked()) {
+            String chunkedGroup = container.getEndpoints() + "/" + container.getConsumerGroup();
+            if (!chunkedGroups.add(chunkedGroup)) {
+                throw new IllegalStateException("Chunked consumer group [" + container.getConsumerGroup()
+                        + "] must have a single consumer, chunks are reassembled in memory of one instance");
+            }
+            container.setChunkAssembler(new ChunkAssembler(annotation.maxChunkBufferBytes(),
+                    TimeUnit.SECONDS.toMillis(annotation.chunkExpireSeconds())));
+        }
+        if (annotation.dedup()) {
+            container.setMessageDeduplicator(applicationContext.getBeanProvider(MessageDeduplicator.class)
+                    .getIfAvailable(this::getDefaultMessageDeduplicator));
+        }
         return container;
     }
 
+    private MessageDeduplicator getDefaultMessageDeduplicator() {
+        if (defaultMessageDeduplicator == null) {
+            defaultMessageDeduplicator = new MessageDeduplicator(TimeUnit.MINUTES.toMillis(10), 100000);
+        }
+        return defaultMessageDeduplicator;
+    }
+
 }
@@ -0,0 +1,22 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 异步发送结果的完成方式
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-09
+ */
+public enum AsyncCompletionMode {
+
+    /**
+     * 在客户端的回调线程上直接完成，没有线程切换的开销；后续的处理不能有阻塞操作
+     */
+    DIRECT,
+
+    /**
+     * 在异步发送线程池{@code asyncSendThreadPoolTaskExecutor}上完成；线程池饱和时退回到客户端的回调线程上直接完成
+     */
+    EXECUTOR
+
+}
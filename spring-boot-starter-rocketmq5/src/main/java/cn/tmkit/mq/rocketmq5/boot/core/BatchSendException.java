@@ -0,0 +1,60 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量发送中部分消息发送失败，携带每条消息各自的发送结果
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+public class BatchSendException extends MessageException {
+
+    /**
+     * 与消息内容顺序一致的发送结果，发送失败的位置为{@code null}
+     */
+    private final List<SendResult> sendResults;
+
+    /**
+     * 与消息内容顺序一致的失败原因，发送成功的位置为{@code null}
+     */
+    private final List<Throwable> causes;
+
+    /**
+     * Constructs a new {@link BatchSendException} instance.
+     *
+     * @param topic       主题
+     * @param sendResults 与消息内容顺序一致的发送结果
+     * @param causes      与消息内容顺序一致的失败原因
+     * @param failed      失败的消息数
+     * @param firstCause  第一个失败原因
+     */
+    public BatchSendException(String topic, List<SendResult> sendResults, List<Throwable> causes, int failed,
+                              Throwable firstCause) {
+        super("Send batch to " + topic + " failed for " + failed + " of " + sendResults.size() + " messages",
+                firstCause);
+        this.sendResults = Collections.unmodifiableList(sendResults);
+        this.causes = Collections.unmodifiableList(causes);
+    }
+
+    /**
+     * 返回与消息内容顺序一致的发送结果，发送失败的位置为{@code null}，已成功的消息不需要重发
+     *
+     * @return 发送结果
+     */
+    public List<SendResult> getSendResults() {
+        return sendResults;
+    }
+
+    /**
+     * 返回与消息内容顺序一致的失败原因，发送成功的位置为{@code null}
+     *
+     * @return 失败原因
+     */
+    public List<Throwable> getCauses() {
+        return causes;
+    }
+
+}
@@ -0,0 +1,252 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个主题的熔断器，基于最近{@code windowSize}次调用的失败率和慢调用率
+ * <ul>
+ *     <li>关闭：正常发送，失败率或慢调用率达到阈值时打开</li>
+ *     <li>打开：直接拒绝发送，等待{@code waitDurationInOpenMs}后进入半开</li>
+ *     <li>半开：放行{@code permittedCallsInHalfOpen}次探测，全部完成后按失败率决定关闭或重新打开</li>
+ * </ul>
+ * 关闭状态下获取许可只读取一次{@code volatile}变量，不加锁
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-26
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    /**
+     * 熔断器的状态
+     */
+    public enum State {
+
+        /**
+         * 关闭，正常发送
+         */
+        CLOSED,
+
+        /**
+         * 打开，拒绝发送
+         */
+        OPEN,
+
+        /**
+         * 半开，放行少量探测
+         */
+        HALF_OPEN
+
+    }
+
+    /**
+     * 主题
+     */
+    @Getter
+    private final String name;
+
+    private final int windowSize;
+
+    private final int minimumCalls;
+
+    private final float failureRateThreshold;
+
+    private final float slowCallRateThreshold;
+
+    private final long slowCallDurationNanos;
+
+    private final long waitDurationInOpenNanos;
+
+    private final int permittedCallsInHalfOpen;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 最近调用的结果，0成功，1失败，2慢调用
+     */
+    private final byte[] outcomes;
+
+    /**
+     * 当前状态
+     */
+    @Getter
+    private volatile State state = State.CLOSED;
+
+    private volatile long openedAt;
+
+    private int index;
+
+    private int calls;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private int halfOpenPermits;
+
+    /**
+     * @param name                     主题
+     * @param windowSize               统计的调用次数
+     * @param minimumCalls             计算失败率的最少调用次数
+     * @param failureRateThreshold     失败率的阈值，百分比
+     * @param slowCallRateThreshold    慢调用率的阈值，百分比
+     * @param slowCallDurationMs       慢调用的耗时，单位毫秒
+     * @param waitDurationInOpenMs     打开状态的持续时间，单位毫秒
+     * @param permittedCallsInHalfOpen 半开状态放行的探测次数
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, float failureRateThreshold,
+                          float slowCallRateThreshold, long slowCallDurationMs, long waitDurationInOpenMs,
+                          int permittedCallsInHalfOpen) {
+        if (windowSize <= 0 || permittedCallsInHalfOpen <= 0) {
+            throw new IllegalArgumentException("windowSize and permittedCallsInHalfOpen must be greater than 0");
+        }
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDurationMs);
+        this.waitDurationInOpenNanos = TimeUnit.MILLISECONDS.toNanos(waitDurationInOpenMs);
+        this.permittedCallsInHalfOpen = permittedCallsInHalfOpen;
+        this.outcomes = new byte[windowSize];
+    }
+
+    /**
+     * 获取一次调用的许可，获取成功后必须调用{@linkplain #onSuccess(long)}或{@linkplain #onError(long)}
+     *
+     * @return 是否允许调用
+     */
+    public boolean tryAcquire() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAt < waitDurationInOpenNanos) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < waitDurationInOpenNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits <= 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次成功的调用
+     *
+     * @param durationNanos 调用的耗时，单位纳秒
+     */
+    public void onSuccess(long durationNanos) {
+        record(durationNanos >= slowCallDurationNanos ? (byte) 2 : (byte) 0);
+    }
+
+    /**
+     * 记录一次失败的调用
+     *
+     * @param durationNanos 调用的耗时，单位纳秒
+     */
+    public void onError(long durationNanos) {
+        record((byte) 1);
+    }
+
+    /**
+     * @return 当前窗口的失败率，百分比；调用次数不足时返回-1
+     */
+    public float getFailureRate() {
+        lock.lock();
+        try {
+            return calls < minimumCalls ? -1 : failures * 100f / calls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 当前窗口的慢调用率，百分比；调用次数不足时返回-1
+     */
+    public float getSlowCallRate() {
+        lock.lock();
+        try {
+            return calls < minimumCalls ? -1 : slowCalls * 100f / calls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(byte outcome) {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                // 打开前放行的调用晚到的结果
+                return;
+            }
+            if (calls == windowSize) {
+                evict(outcomes[index]);
+            } else {
+                calls++;
+            }
+            outcomes[index] = outcome;
+            index = (index + 1) % windowSize;
+            if (outcome == 1) {
+                failures++;
+            } else if (outcome == 2) {
+                slowCalls++;
+            }
+            if (state == State.HALF_OPEN) {
+                if (calls >= permittedCallsInHalfOpen) {
+                    transitionTo(exceedsThreshold() ? State.OPEN : State.CLOSED);
+                }
+            } else if (calls >= minimumCalls && exceedsThreshold()) {
+                transitionTo(State.OPEN);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(byte outcome) {
+        if (outcome == 1) {
+            failures--;
+        } else if (outcome == 2) {
+            slowCalls--;
+        }
+    }
+
+    private boolean exceedsThreshold() {
+        return failures * 100f / calls >= failureRateThreshold || slowCalls * 100f / calls >= slowCallRateThreshold;
+    }
+
+    private void transitionTo(State newState) {
+        State oldState = state;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        index = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (newState == State.HALF_OPEN) {
+            halfOpenPermits = permittedCallsInHalfOpen;
+        }
+        state = newState;
+        log.warn("Circuit breaker of topic {} changed from {} to {}", name, oldState, newState);
+    }
+
+}
@@ -0,0 +1,21 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 主题的熔断器处于打开状态，消息未发送
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-26
+ */
+public class CircuitBreakerOpenException extends MessageException {
+
+    /**
+     * Constructs a new {@link CircuitBreakerOpenException} instance.
+     *
+     * @param topic 主题
+     */
+    public CircuitBreakerOpenException(String topic) {
+        super("Circuit breaker of topic " + topic + " is open");
+    }
+
+}
@@ -0,0 +1,103 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按主题创建的熔断器，所有主题共用同一组阈值
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-26
+ */
+@Getter
+public class CircuitBreakerRegistry {
+
+    /**
+     * 统计的调用次数
+     */
+    private final int windowSize;
+
+    /**
+     * 计算失败率的最少调用次数
+     */
+    private final int minimumCalls;
+
+    /**
+     * 失败率的阈值，百分比
+     */
+    private final float failureRateThreshold;
+
+    /**
+     * 慢调用率的阈值，百分比
+     */
+    private final float slowCallRateThreshold;
+
+    /**
+     * 慢调用的耗时，单位毫秒
+     */
+    private final long slowCallDurationMs;
+
+    /**
+     * 打开状态的持续时间，单位毫秒
+     */
+    private final long waitDurationInOpenMs;
+
+    /**
+     * 半开状态放行的探测次数
+     */
+    private final int permittedCallsInHalfOpen;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * @param windowSize               统计的调用次数
+     * @param minimumCalls             计算失败率的最少调用次数
+     * @param failureRateThreshold     失败率的阈值，百分比
+     * @param slowCallRateThreshold    慢调用率的阈值，百分比
+     * @param slowCallDurationMs       慢调用的耗时，单位毫秒
+     * @param waitDurationInOpenMs     打开状态的持续时间，单位毫秒
+     * @param permittedCallsInHalfOpen 半开状态放行的探测次数
+     */
+    public CircuitBreakerRegistry(int windowSize, int minimumCalls, float failureRateThreshold,
+                                  float slowCallRateThreshold, long slowCallDurationMs, long waitDurationInOpenMs,
+                                  int permittedCallsInHalfOpen) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationMs = slowCallDurationMs;
+        this.waitDurationInOpenMs = waitDurationInOpenMs;
+        this.permittedCallsInHalfOpen = permittedCallsInHalfOpen;
+    }
+
+    /**
+     * 获取主题的熔断器，不存在时创建
+     *
+     * @param topic 主题
+     * @return {@linkplain CircuitBreaker}
+     */
+    public CircuitBreaker get(@NotNull String topic) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(topic);
+        if (circuitBreaker != null) {
+            return circuitBreaker;
+        }
+        return circuitBreakers.computeIfAbsent(topic, name -> new CircuitBreaker(name, windowSize, minimumCalls,
+                failureRateThreshold, slowCallRateThreshold, slowCallDurationMs, waitDurationInOpenMs,
+                permittedCallsInHalfOpen));
+    }
+
+    /**
+     * @return 已创建的熔断器
+     */
+    public Collection<CircuitBreaker> getAll() {
+        return Collections.unmodifiableCollection(circuitBreakers.values());
+    }
+
+}
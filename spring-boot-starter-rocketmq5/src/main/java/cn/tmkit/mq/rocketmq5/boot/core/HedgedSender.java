@@ -0,0 +1,368 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 对冲发送：消息先发往主集群，超过对冲延迟仍未收到回执时再发往备集群，以先成功的结果为准
+ * <p>
+ * 对冲延迟取主集群最近发送耗时的分位数（默认P95），限制在{@code [minDelayMs, maxDelayMs]}之间，每秒重新计算一次；
+ * 样本不足时使用{@code maxDelayMs}。主集群因服务端不可用发送失败时立即发往备集群，两边都失败时返回主集群的异常。
+ * 同一集群上的重试无法消除慢节点造成的长尾，对冲只额外发送约{@code 1 - percentile}比例的消息
+ * </p>
+ * <p>
+ * 两份消息是同一个{@linkplain Message}对象，携带相同的{@linkplain RocketMQHeaders#DEDUP_KEY}，消费者只能在单个进程内去重，
+ * 两份消息被不同的实例消费时都会处理，监听器须自身幂等。分片消息和设置了消息组的顺序消息跨集群后无法保证顺序，不做对冲
+ * </p>
+ * <p>
+ * 发往备集群的消息同样受在途限制和限流，但不等待许可：对冲在调度线程或客户端的回调线程上发出，没有许可时放弃本次对冲，
+ * 以主集群的结果为准
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-27
+ */
+@Slf4j
+public class HedgedSender implements Closeable {
+
+    /**
+     * 计算分位数需要的最少样本数
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * 备集群的生产者
+     */
+    @Getter
+    private final Producer secondary;
+
+    /**
+     * 对冲发送的主题
+     */
+    private final Set<String> topics;
+
+    /**
+     * 对冲延迟取主集群发送耗时的分位数
+     */
+    @Getter
+    private final double percentile;
+
+    /**
+     * 最短的对冲延迟，单位毫秒
+     */
+    @Getter
+    private final long minDelayMs;
+
+    /**
+     * 最长的对冲延迟，单位毫秒
+     */
+    @Getter
+    private final long maxDelayMs;
+
+    private final int sampleSize;
+
+    private final ConcurrentMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder hedged = new LongAdder();
+
+    private final LongAdder secondaryWins = new LongAdder();
+
+    /**
+     * @param secondary  备集群的生产者
+     * @param topics     对冲发送的主题
+     * @param percentile 对冲延迟取主集群发送耗时的分位数，取值(0, 1)
+     * @param minDelayMs 最短的对冲延迟，单位毫秒
+     * @param maxDelayMs 最长的对冲延迟，单位毫秒
+     * @param sampleSize 每个主题保留的耗时样本数
+     */
+    public HedgedSender(@NotNull Producer secondary, @NotNull Collection<String> topics, double percentile,
+                        long minDelayMs, long maxDelayMs, int sampleSize) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        if (sampleSize < MIN_SAMPLES) {
+            throw new IllegalArgumentException("sampleSize must not be less than " + MIN_SAMPLES);
+        }
+        this.secondary = secondary;
+        this.topics = new HashSet<>(topics);
+        this.percentile = percentile;
+        this.minDelayMs = Math.max(0, minDelayMs);
+        this.maxDelayMs = Math.max(this.minDelayMs, maxDelayMs);
+        this.sampleSize = sampleSize;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("rocketmq-hedge-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::refreshDelays, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 主题是否对冲发送
+     *
+     * @param topic 主题
+     * @return 对冲发送时返回{@code true}
+     */
+    public boolean isHedged(String topic) {
+        return topics.contains(topic);
+    }
+
+    /**
+     * 消息是否需要对冲，没有去重键的消息（如打包消息）和设置了消息组的消息不对冲
+     *
+     * @param message 消息
+     * @return 需要对冲时返回{@code true}
+     */
+    boolean accept(Message message) {
+        return isHedged(message.getTopic()) && !message.getMessageGroup().isPresent()
+                && message.getProperties().containsKey(RocketMQHeaders.DEDUP_KEY);
+    }
+
+    /**
+     * 当前主题的对冲延迟
+     *
+     * @param topic 主题
+     * @return 对冲延迟，单位毫秒
+     */
+    public long getDelayMs(String topic) {
+        LatencyWindow window = windows.get(topic);
+        return window == null ? maxDelayMs : window.delayMs;
+    }
+
+    /**
+     * @return 累计发往备集群的次数
+     */
+    public long getHedgedCount() {
+        return hedged.sum();
+    }
+
+    /**
+     * @return 以备集群结果返回的次数
+     */
+    public long getSecondaryWinCount() {
+        return secondaryWins.sum();
+    }
+
+    /**
+     * 对冲发送消息
+     *
+     * @param message   消息
+     * @param primary   发往主集群，返回主集群的发送结果
+     * @param secondary 发往备集群，返回备集群的发送结果，不能阻塞
+     * @return 先成功的发送结果
+     */
+    CompletableFuture<SendResult> send(Message message, Supplier<CompletableFuture<SendResult>> primary,
+                                       Supplier<CompletableFuture<SendResult>> secondary) {
+        Attempt attempt = new Attempt(message, secondary);
+        long start = System.nanoTime();
+        CompletableFuture<SendResult> primaryFuture;
+        try {
+            primaryFuture = primary.get();
+        } catch (RuntimeException e) {
+            primaryFuture = new CompletableFuture<>();
+            primaryFuture.completeExceptionally(e);
+        }
+        if (!primaryFuture.isDone()) {
+            attempt.timer = scheduler.schedule(attempt::startSecondary, getDelayMs(message.getTopic()), TimeUnit.MILLISECONDS);
+        }
+        primaryFuture.whenComplete((sendResult, throwable) -> {
+            if (throwable == null) {
+                record(message.getTopic(), System.nanoTime() - start);
+                attempt.onSuccess(sendResult, false);
+            } else {
+                attempt.onPrimaryFailure(throwable);
+            }
+        });
+        return attempt.result;
+    }
+
+    /**
+     * 记录主集群一次成功发送的耗时
+     *
+     * @param topic         主题
+     * @param durationNanos 耗时，单位纳秒
+     */
+    private void record(String topic, long durationNanos) {
+        windows.computeIfAbsent(topic, key -> new LatencyWindow()).add(durationNanos);
+    }
+
+    private void refreshDelays() {
+        try {
+            for (LatencyWindow window : windows.values()) {
+                window.refresh();
+            }
+        } catch (Exception e) {
+            log.warn("Refresh hedge delay failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            secondary.close();
+        } catch (IOException e) {
+            log.warn("Close secondary producer failed", e);
+        }
+    }
+
+    /**
+     * 单条消息的一次对冲发送，主备集群各最多发送一次
+     */
+    private class Attempt {
+
+        private final Message message;
+
+        private final Supplier<CompletableFuture<SendResult>> secondarySender;
+
+        private final CompletableFuture<SendResult> result = new CompletableFuture<>();
+
+        private final AtomicBoolean secondaryStarted = new AtomicBoolean();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private volatile Throwable primaryError;
+
+        private volatile ScheduledFuture<?> timer;
+
+        Attempt(Message message, Supplier<CompletableFuture<SendResult>> secondarySender) {
+            this.message = message;
+            this.secondarySender = secondarySender;
+        }
+
+        void startSecondary() {
+            if (!result.isDone() && secondaryStarted.compareAndSet(false, true)) {
+                sendSecondary();
+            }
+        }
+
+        private void sendSecondary() {
+            hedged.increment();
+            CompletableFuture<SendResult> secondaryFuture;
+            try {
+                secondaryFuture = secondarySender.get();
+            } catch (RuntimeException e) {
+                secondaryFuture = new CompletableFuture<>();
+                secondaryFuture.completeExceptionally(e);
+            }
+            secondaryFuture.whenComplete((sendResult, throwable) -> {
+                if (throwable == null) {
+                    onSuccess(sendResult, true);
+                } else {
+                    onFailure(throwable);
+                }
+            });
+        }
+
+        void onSuccess(SendResult sendResult, boolean fromSecondary) {
+            if (result.complete(sendResult)) {
+                if (fromSecondary) {
+                    secondaryWins.increment();
+                }
+                ScheduledFuture<?> timer = this.timer;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+        }
+
+        void onPrimaryFailure(Throwable throwable) {
+            primaryError = throwable;
+            ScheduledFuture<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (!secondaryStarted.compareAndSet(false, true)) {
+                onFailure(null);
+                return;
+            }
+            if (!RocketMQUtils.isUnavailable(throwable)) {
+                // 请求本身有误，发往备集群也会失败
+                result.completeExceptionally(throwable);
+                return;
+            }
+            log.warn("Primary send failed, hedge to secondary immediately. topic = {}", message.getTopic(), throwable);
+            // 先计入主集群的失败，备集群也失败时失败数达到2
+            failures.incrementAndGet();
+            sendSecondary();
+        }
+
+        /**
+         * 记录一次失败，主备集群都失败后以主集群的异常完成
+         *
+         * @param secondaryError 备集群的异常，主集群失败时为{@code null}
+         */
+        void onFailure(Throwable secondaryError) {
+            if (failures.incrementAndGet() < 2) {
+                return;
+            }
+            Throwable error = primaryError;
+            if (error == null) {
+                error = secondaryError;
+            } else if (secondaryError != null && secondaryError != error) {
+                error.addSuppressed(secondaryError);
+            }
+            result.completeExceptionally(error);
+        }
+
+    }
+
+    /**
+     * 单个主题最近的发送耗时，环形缓冲区保存最近{@code sampleSize}个样本
+     */
+    private class LatencyWindow {
+
+        private final AtomicLongArray samples = new AtomicLongArray(sampleSize);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private volatile long delayMs = maxDelayMs;
+
+        void add(long durationNanos) {
+            long index = count.getAndIncrement();
+            samples.set((int) (index % sampleSize), durationNanos);
+        }
+
+        void refresh() {
+            int size = (int) Math.min(count.get(), sampleSize);
+            if (size < MIN_SAMPLES) {
+                return;
+            }
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            long nanos = sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+            delayMs = Math.max(minDelayMs, Math.min(maxDelayMs, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步发送的在途请求限制器，同时限制在途的消息数和消息体字节数，避免Broker变慢时回调和消息体在内存中无限堆积
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-10
+ */
+@Getter
+public class InFlightLimiter {
+
+    /**
+     * 最大的在途消息数，小于等于0表示不限制
+     */
+    private final int maxMessages;
+
+    /**
+     * 最大的在途消息体字节数，小于等于0表示不限制
+     */
+    private final int maxBytes;
+
+    /**
+     * 达到上限时的处理策略
+     */
+    private final InFlightPolicy policy;
+
+    /**
+     * {@linkplain InFlightPolicy#TIMEOUT}策略的等待时间，单位毫秒
+     */
+    private final long timeoutMs;
+
+    private final Semaphore messagePermits;
+
+    private final Semaphore bytePermits;
+
+    /**
+     * 创建在途请求限制器
+     *
+     * @param maxMessages 最大的在途消息数，小于等于0表示不限制
+     * @param maxBytes    最大的在途消息体字节数，小于等于0表示不限制
+     * @param policy      达到上限时的处理策略
+     * @param timeoutMs   {@linkplain InFlightPolicy#TIMEOUT}策略的等待时间，单位毫秒
+     */
+    public InFlightLimiter(int maxMessages, long maxBytes, @NotNull InFlightPolicy policy, long timeoutMs) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = (int) Math.min(maxBytes, Integer.MAX_VALUE);
+        this.policy = policy;
+        this.timeoutMs = timeoutMs;
+        this.messagePermits = maxMessages > 0 ? new Semaphore(maxMessages) : null;
+        this.bytePermits = this.maxBytes > 0 ? new Semaphore(this.maxBytes) : null;
+    }
+
+    /**
+     * 获取一条消息的在途许可
+     *
+     * @param size 消息体的字节数
+     * @throws MessageException 按策略未能获取许可
+     */
+    public void acquire(int size) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        if (messagePermits != null && !tryAcquire(messagePermits, 1, deadline)) {
+            throw new MessageException("Too many in-flight messages, max-messages = " + maxMessages);
+        }
+        if (bytePermits != null && !tryAcquire(bytePermits, byteCost(size), deadline)) {
+            if (messagePermits != null) {
+                messagePermits.release();
+            }
+            throw new MessageException("Too many in-flight bytes, max-bytes = " + maxBytes);
+        }
+    }
+
+    /**
+     * 不等待地获取一条消息的在途许可，与策略无关，用于不能阻塞的线程
+     *
+     * @param size 消息体的字节数
+     * @return 获取到许可时返回{@code true}
+     */
+    public boolean tryAcquire(int size) {
+        if (messagePermits != null && !messagePermits.tryAcquire()) {
+            return false;
+        }
+        if (bytePermits != null && !bytePermits.tryAcquire(byteCost(size))) {
+            if (messagePermits != null) {
+                messagePermits.release();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 归还一条消息的在途许可
+     *
+     * @param size 消息体的字节数，必须与{@linkplain #acquire(int)}时一致
+     */
+    public void release(int size) {
+        if (messagePermits != null) {
+            messagePermits.release();
+        }
+        if (bytePermits != null) {
+            bytePermits.release(byteCost(size));
+        }
+    }
+
+    /**
+     * @return 当前在途的消息数，未限制消息数时返回-1
+     */
+    public int getInFlightMessages() {
+        return messagePermits == null ? -1 : maxMessages - messagePermits.availablePermits();
+    }
+
+    /**
+     * @return 当前在途的消息体字节数，未限制字节数时返回-1
+     */
+    public int getInFlightBytes() {
+        return bytePermits == null ? -1 : maxBytes - bytePermits.availablePermits();
+    }
+
+    /**
+     * 超过上限的单条消息按上限计算，保证其最终可以发送
+     */
+    private int byteCost(int size) {
+        return Math.min(Math.max(size, 1), maxBytes);
+    }
+
+    private boolean tryAcquire(Semaphore semaphore, int permits, long deadline) {
+        try {
+            switch (policy) {
+                case BLOCK:
+                    semaphore.acquire(permits);
+                    return true;
+                case TIMEOUT:
+                    return semaphore.tryAcquire(permits, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                default:
+                    return semaphore.tryAcquire(permits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException("Interrupted while waiting for in-flight permits", e);
+        }
+    }
+
+}
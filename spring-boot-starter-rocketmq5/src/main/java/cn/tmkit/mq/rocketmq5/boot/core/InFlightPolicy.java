@@ -0,0 +1,27 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 在途请求达到上限时的处理策略
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-10
+ */
+public enum InFlightPolicy {
+
+    /**
+     * 一直阻塞等待，直到有请求完成
+     */
+    BLOCK,
+
+    /**
+     * 阻塞等待至超时，超时后发送失败
+     */
+    TIMEOUT,
+
+    /**
+     * 立即发送失败
+     */
+    REJECT
+
+}
@@ -0,0 +1,25 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+
+/**
+ * 本地事务的执行器，半消息发送成功后执行
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-24
+ */
+@FunctionalInterface
+public interface LocalTransactionExecutor {
+
+    /**
+     * 执行本地事务
+     *
+     * @param sendResult 半消息的发送结果
+     * @return {@linkplain TransactionResolution#COMMIT}提交，{@linkplain TransactionResolution#ROLLBACK}回滚，
+     * {@linkplain TransactionResolution#UNKNOWN}由服务端回查确定
+     * @throws Exception 本地事务执行失败，半消息会被回滚
+     */
+    TransactionResolution execute(final SendResult sendResult) throws Exception;
+
+}
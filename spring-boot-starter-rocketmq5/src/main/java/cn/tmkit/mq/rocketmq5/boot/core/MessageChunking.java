@@ -0,0 +1,82 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 大消息的分片：消息体超过上限时拆分为多条分片消息，分片共享分片ID和原消息的消息组，消费者按分片序号重组，
+ * 不依赖分片的投递顺序
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-22
+ */
+public final class MessageChunking {
+
+    private MessageChunking() {
+    }
+
+    /**
+     * 拆分消息
+     *
+     * @param message         原始消息，消息体已经过序列化和压缩
+     * @param chunkSize       每个分片消息体的最大字节数
+     * @param useMessageGroup 原消息没有消息组时是否把分片ID作为消息组，只能用于FIFO主题；定时消息不能设置消息组
+     * @return 分片消息
+     */
+    public static List<Message> split(@NotNull Message message, int chunkSize, boolean useMessageGroup) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        ByteBuffer body = message.getBody();
+        int totalSize = body.remaining();
+        int count = (totalSize + chunkSize - 1) / chunkSize;
+        String chunkId = UUID.randomUUID().toString();
+        String messageGroup = message.getMessageGroup().orElse(null);
+        Long deliveryTimestamp = message.getDeliveryTimestamp().orElse(null);
+        if (messageGroup == null && useMessageGroup && deliveryTimestamp == null) {
+            messageGroup = chunkId;
+        }
+        Collection<String> keys = message.getKeys();
+        String[] keyArray = keys.isEmpty() ? null : keys.toArray(new String[0]);
+        String countValue = String.valueOf(count);
+        String totalSizeValue = String.valueOf(totalSize);
+        List<Message> chunks = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            MessageBuilder messageBuilder = RocketMQUtils.getClientServiceProvider().newMessageBuilder()
+                    .setTopic(message.getTopic());
+            message.getTag().ifPresent(messageBuilder::setTag);
+            if (keyArray != null) {
+                messageBuilder.setKeys(keyArray);
+            }
+            for (Map.Entry<String, String> entry : message.getProperties().entrySet()) {
+                messageBuilder.addProperty(entry.getKey(), entry.getValue());
+            }
+            if (messageGroup != null) {
+                messageBuilder.setMessageGroup(messageGroup);
+            }
+            if (deliveryTimestamp != null) {
+                messageBuilder.setDeliveryTimestamp(deliveryTimestamp);
+            }
+            byte[] chunk = new byte[Math.min(chunkSize, body.remaining())];
+            body.get(chunk);
+            chunks.add(messageBuilder.setBody(chunk)
+                    .addProperty(RocketMQHeaders.CHUNK_ID, chunkId)
+                    .addProperty(RocketMQHeaders.CHUNK_INDEX, String.valueOf(index))
+                    .addProperty(RocketMQHeaders.CHUNK_COUNT, countValue)
+                    .addProperty(RocketMQHeaders.CHUNK_TOTAL_SIZE, totalSizeValue)
+                    .build());
+        }
+        return chunks;
+    }
+
+}
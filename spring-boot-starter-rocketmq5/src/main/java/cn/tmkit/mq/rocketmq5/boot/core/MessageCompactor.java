@@ -0,0 +1,254 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息压缩器：在一个时间窗口内按主题、标签和消息标识只保留最新的一条消息，窗口结束时统一发送，适用于只关心最新状态的主题
+ * <p>
+ * 被覆盖的消息不会发送，其发送结果与最终发送的那条消息相同。同一标识的消息在窗口内最多延迟{@code windowMs}，
+ * 不同标识之间的发送顺序不保证。待发送的标识达到{@code maxKeys}时新的标识不再压缩，直接发送
+ * </p>
+ * <p>
+ * 同一标识同时最多只有一条消息在途：上一条消息还在发送或重试时，后续窗口的消息继续压缩，上一条完成后的下一个窗口只发送最新的一条，
+ * 避免重试的旧值晚于新值到达Broker
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-31
+ */
+@Slf4j
+public class MessageCompactor implements Closeable {
+
+    private final RocketMQTemplate rocketMQTemplate;
+
+    /**
+     * 压缩的时间窗口，单位毫秒
+     */
+    @Getter
+    private final long windowMs;
+
+    /**
+     * 窗口内最多保留的标识数
+     */
+    @Getter
+    private final int maxKeys;
+
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder compacted = new LongAdder();
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean closed;
+
+    /**
+     * 创建消息压缩器
+     *
+     * @param rocketMQTemplate 消息模板，用于发送消息
+     * @param windowMs         压缩的时间窗口，单位毫秒
+     * @param maxKeys          窗口内最多保留的标识数
+     */
+    public MessageCompactor(@NotNull RocketMQTemplate rocketMQTemplate, long windowMs, int maxKeys) {
+        if (windowMs <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("windowMs and maxKeys must be greater than 0");
+        }
+        this.rocketMQTemplate = rocketMQTemplate;
+        this.windowMs = windowMs;
+        this.maxKeys = maxKeys;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("rocketmq-compactor-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::flushAll, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 追加消息，覆盖窗口内相同标识的消息
+     *
+     * @param message 消息
+     * @param key     消息标识
+     * @return 最终发送的消息的发送结果
+     */
+    public CompletableFuture<SendResult> append(@NotNull Message message, @NotNull String key) {
+        CompletableFuture<SendResult> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new MessageException("MessageCompactor already closed"));
+            return future;
+        }
+        String compactionKey = message.getTopic() + '\u0000' + message.getTag().orElse("") + '\u0000' + key;
+        if (pending.size() >= maxKeys && !pending.containsKey(compactionKey)) {
+            return rocketMQTemplate.doAsyncSend(message);
+        }
+        pending.compute(compactionKey, (k, current) -> {
+            if (current == null) {
+                return new Pending(message, future);
+            }
+            if (current.message != null) {
+                compacted.increment();
+            }
+            current.message = message;
+            current.futures.add(future);
+            return current;
+        });
+        if (closed) {
+            // 与close()并发追加的消息可能错过关闭时的发送，由追加的线程发送
+            Batch batch = take(compactionKey);
+            if (batch != null) {
+                send(compactionKey, batch);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 立即发送窗口内所有的消息，上一条还在途的标识等其完成后的下一个窗口再发送
+     */
+    public void flushAll() {
+        for (String key : pending.keySet()) {
+            Batch batch = take(key);
+            if (batch != null) {
+                send(key, batch);
+            }
+        }
+    }
+
+    /**
+     * @return 累计被覆盖而未发送的消息数
+     */
+    public long getCompactedCount() {
+        return compacted.sum();
+    }
+
+    /**
+     * @return 窗口内待发送或在途的标识数
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 取出标识待发送的消息并标记为在途
+     *
+     * @param key 压缩的标识
+     * @return 待发送的消息，没有消息或上一条还在途时返回{@code null}
+     */
+    private Batch take(String key) {
+        Batch[] taken = new Batch[1];
+        pending.computeIfPresent(key, (k, current) -> {
+            if (current.inFlight) {
+                return current;
+            }
+            if (current.message == null) {
+                return null;
+            }
+            taken[0] = new Batch(current.message, current.futures);
+            current.message = null;
+            current.futures = new ArrayList<>(2);
+            current.inFlight = true;
+            return current;
+        });
+        return taken[0];
+    }
+
+    private void send(String key, Batch batch) {
+        CompletableFuture<SendResult> sendFuture;
+        try {
+            sendFuture = rocketMQTemplate.doAsyncSend(batch.message);
+        } catch (Exception e) {
+            log.warn("Send compacted message failed, topic = {}", batch.message.getTopic(), e);
+            sendFuture = new CompletableFuture<>();
+            sendFuture.completeExceptionally(e);
+        }
+        sendFuture.whenComplete((sendResult, throwable) -> {
+            for (CompletableFuture<SendResult> future : batch.futures) {
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                } else {
+                    future.complete(sendResult);
+                }
+            }
+            afterSend(key);
+        });
+    }
+
+    /**
+     * 上一条消息完成后解除在途标记，压缩期间的最新消息留给下一个窗口；关闭后调度器不再运行，直接发送
+     *
+     * @param key 压缩的标识
+     */
+    private void afterSend(String key) {
+        pending.computeIfPresent(key, (k, current) -> {
+            current.inFlight = false;
+            return current.message == null ? null : current;
+        });
+        if (closed) {
+            Batch batch = take(key);
+            if (batch != null) {
+                send(key, batch);
+            }
+        }
+    }
+
+    /**
+     * 关闭压缩器，关闭前会发送窗口内所有的消息
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        flushAll();
+    }
+
+    /**
+     * 单个标识待发送的消息，只在{@linkplain ConcurrentMap#compute}内修改
+     */
+    private static class Pending {
+
+        private Message message;
+
+        private List<CompletableFuture<SendResult>> futures = new ArrayList<>(2);
+
+        /**
+         * 上一条消息是否还在发送
+         */
+        private boolean inFlight;
+
+        Pending(Message message, CompletableFuture<SendResult> future) {
+            this.message = message;
+            this.futures.add(future);
+        }
+
+    }
+
+    /**
+     * 取出发送的消息及其覆盖的消息的结果
+     */
+    private static class Batch {
+
+        private final Message message;
+
+        private final List<CompletableFuture<SendResult>> futures;
+
+        Batch(Message message, List<CompletableFuture<SendResult>> futures) {
+            this.message = message;
+            this.futures = futures;
+        }
+
+    }
+
+}
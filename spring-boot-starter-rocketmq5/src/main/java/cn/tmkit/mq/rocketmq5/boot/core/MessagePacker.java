@@ -0,0 +1,231 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 消息打包器：按主题和标签缓存序列化后的逻辑消息体，满足以下任一条件时打包成一条物理消息发送
+ * <ul>
+ *     <li>缓存时间达到{@code lingerMs}</li>
+ *     <li>缓存的逻辑消息数达到{@code maxFrames}</li>
+ *     <li>缓存的消息体大小达到{@code maxBytes}</li>
+ * </ul>
+ * 同一信封内的逻辑消息共享标签和属性，消费者逐条交给监听器处理。适用于大量的小消息，以少量的延迟换取Broker消息数的大幅下降
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-19
+ * @see MessagePacking
+ */
+public class MessagePacker implements Closeable {
+
+    private static final String NO_TAG = "";
+
+    private final RocketMQTemplate rocketMQTemplate;
+
+    /**
+     * 最长的缓存时间，单位毫秒
+     */
+    @Getter
+    private final long lingerMs;
+
+    /**
+     * 每个信封最大的逻辑消息数
+     */
+    @Getter
+    private final int maxFrames;
+
+    /**
+     * 每个信封最大的消息体大小，单位字节
+     */
+    @Getter
+    private final long maxBytes;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Envelope>> envelopes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean closed;
+
+    /**
+     * 创建消息打包器
+     *
+     * @param rocketMQTemplate 消息模板，用于发送信封
+     * @param lingerMs         最长的缓存时间，单位毫秒
+     * @param maxFrames        每个信封最大的逻辑消息数
+     * @param maxBytes         每个信封最大的消息体大小，单位字节
+     */
+    public MessagePacker(@NotNull RocketMQTemplate rocketMQTemplate, long lingerMs, int maxFrames, long maxBytes) {
+        if (lingerMs <= 0 || maxFrames <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("lingerMs, maxFrames and maxBytes must be greater than 0");
+        }
+        this.rocketMQTemplate = rocketMQTemplate;
+        this.lingerMs = lingerMs;
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("rocketmq-packer-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::flushAll, lingerMs, lingerMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 追加逻辑消息体
+     *
+     * @param topic 主题
+     * @param tag   标签
+     * @param frame 序列化后的逻辑消息体
+     * @return 所在信封的发送结果
+     */
+    public CompletableFuture<SendResult> append(@NotNull String topic, @Nullable String tag, @NotNull byte[] frame) {
+        CompletableFuture<SendResult> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new MessageException("MessagePacker already closed"));
+            return future;
+        }
+        Envelope envelope = envelopes.computeIfAbsent(topic, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(tag == null ? NO_TAG : tag, key -> new Envelope(topic, tag));
+        Packed packed = envelope.add(frame, future);
+        if (packed != null) {
+            send(packed);
+        }
+        if (closed) {
+            // 与close()并发追加的消息可能错过关闭时的发送，由追加的线程发送
+            packed = envelope.drain();
+            if (packed != null) {
+                send(packed);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 立即发送所有缓存的信封
+     */
+    public void flushAll() {
+        for (ConcurrentMap<String, Envelope> tagEnvelopes : envelopes.values()) {
+            for (Envelope envelope : tagEnvelopes.values()) {
+                Packed packed = envelope.drain();
+                if (packed != null) {
+                    send(packed);
+                }
+            }
+        }
+    }
+
+    private void send(Packed packed) {
+        try {
+            byte[] body = MessagePacking.pack(packed.frames, packed.bytes);
+            rocketMQTemplate.doAsyncSendPacked(rocketMQTemplate.createPackedMessage(packed.topic, packed.tag, body, packed.frames.size()))
+                    .whenComplete((sendResult, throwable) -> {
+                        for (CompletableFuture<SendResult> future : packed.futures) {
+                            if (throwable != null) {
+                                future.completeExceptionally(throwable);
+                            } else {
+                                future.complete(sendResult);
+                            }
+                        }
+                    });
+        } catch (Exception e) {
+            packed.futures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 关闭打包器，关闭前会发送所有缓存的信封
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        flushAll();
+    }
+
+    /**
+     * 单个主题和标签正在打包的信封
+     */
+    private class Envelope {
+
+        private final String topic;
+
+        private final String tag;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private List<byte[]> frames = new ArrayList<>();
+
+        private List<CompletableFuture<SendResult>> futures = new ArrayList<>();
+
+        private long bytes;
+
+        Envelope(String topic, String tag) {
+            this.topic = topic;
+            this.tag = tag;
+        }
+
+        Packed add(byte[] frame, CompletableFuture<SendResult> future) {
+            lock.lock();
+            try {
+                frames.add(frame);
+                futures.add(future);
+                bytes += frame.length + MessagePacking.FRAME_OVERHEAD;
+                if (frames.size() >= maxFrames || bytes >= maxBytes) {
+                    return swap();
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Packed drain() {
+            lock.lock();
+            try {
+                return frames.isEmpty() ? null : swap();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Packed swap() {
+            long frameBytes = bytes - (long) MessagePacking.FRAME_OVERHEAD * frames.size();
+            Packed packed = new Packed(topic, tag, frames, futures, frameBytes);
+            frames = new ArrayList<>(Math.min(packed.frames.size(), maxFrames));
+            futures = new ArrayList<>(Math.min(packed.frames.size(), maxFrames));
+            bytes = 0;
+            return packed;
+        }
+
+    }
+
+    private static class Packed {
+
+        private final String topic;
+
+        private final String tag;
+
+        private final List<byte[]> frames;
+
+        private final List<CompletableFuture<SendResult>> futures;
+
+        private final long bytes;
+
+        Packed(String topic, String tag, List<byte[]> frames, List<CompletableFuture<SendResult>> futures, long bytes) {
+            this.topic = topic;
+            this.tag = tag;
+            this.frames = frames;
+            this.futures = futures;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 打包消息的信封格式：多个逻辑消息体以长度前缀的帧写入一个物理消息体
+ * <pre>
+ * +-------------+--------------+-----------+--------------+-----------+-----
+ * | count (int) | length (int) | frame ... | length (int) | frame ... | ...
+ * +-------------+--------------+-----------+--------------+-----------+-----
+ * </pre>
+ * 整数均为大端序
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-19
+ */
+public final class MessagePacking {
+
+    /**
+     * 每个帧的额外开销，单位字节
+     */
+    public static final int FRAME_OVERHEAD = 4;
+
+    private MessagePacking() {
+    }
+
+    /**
+     * 打包
+     *
+     * @param frames 逻辑消息体
+     * @param bytes  所有逻辑消息体的总字节数
+     * @return 信封的内容
+     */
+    public static byte[] pack(@NotNull List<byte[]> frames, long bytes) {
+        long size = 4 + bytes + (long) FRAME_OVERHEAD * frames.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new MessageException("Packed message too large: " + size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(frames.size());
+        for (byte[] frame : frames) {
+            buffer.putInt(frame.length);
+            buffer.put(frame);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 解包
+     *
+     * @param envelope 信封的内容
+     * @return 逻辑消息体
+     */
+    public static List<byte[]> unpack(@NotNull byte[] envelope) {
+        ByteBuffer buffer = ByteBuffer.wrap(envelope);
+        try {
+            int count = buffer.getInt();
+            if (count < 0 || (long) count * FRAME_OVERHEAD > buffer.remaining()) {
+                throw new MessageException("Invalid packed message: frame count " + count);
+            }
+            List<byte[]> frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new MessageException("Invalid packed message: frame length " + length);
+                }
+                byte[] frame = new byte[length];
+                buffer.get(frame);
+                frames.add(frame);
+            }
+            return frames;
+        } catch (BufferUnderflowException e) {
+            throw new MessageException("Invalid packed message: truncated envelope", e);
+        }
+    }
+
+}
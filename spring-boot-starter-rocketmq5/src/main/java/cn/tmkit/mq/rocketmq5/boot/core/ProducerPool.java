@@ -0,0 +1,372 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 生产者池：将发送请求分散到多个{@linkplain Producer}实例上，避免所有请求竞争同一个客户端及其连接
+ * <p>
+ * 使用方式：先通过{@linkplain #select(String)}选择生产者的下标，发送完成后必须调用{@linkplain #release(int)}
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-12
+ */
+@Slf4j
+public class ProducerPool implements Closeable {
+
+    private final Producer[] producers;
+
+    /**
+     * 选择生产者的策略
+     */
+    @Getter
+    private final ProducerSelectStrategy strategy;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private final AtomicIntegerArray inFlight;
+
+    /**
+     * 生产者的名称，如连接的接入点
+     */
+    private final String[] names;
+
+    /**
+     * 延迟的指数加权移动平均，单位纳秒，0表示没有样本
+     */
+    private final AtomicLongArray latencyEwma;
+
+    /**
+     * 连续失败的次数
+     */
+    private final AtomicIntegerArray consecutiveErrors;
+
+    /**
+     * 剔除的截止时间，{@linkplain System#nanoTime()}，0表示未剔除
+     */
+    private final AtomicLongArray ejectedUntil;
+
+    /**
+     * 延迟EWMA的平滑系数
+     */
+    @Getter
+    private double ewmaAlpha = 0.2;
+
+    /**
+     * 连续失败多少次后剔除
+     */
+    @Getter
+    private int ejectConsecutiveErrors = 5;
+
+    /**
+     * 延迟超过最快生产者的多少倍后剔除
+     */
+    @Getter
+    private double ejectLatencyFactor = 3;
+
+    /**
+     * 剔除的时长，单位纳秒
+     */
+    private long ejectDurationNanos = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * 创建生产者池
+     *
+     * @param producers 生产者列表，不能为空
+     * @param strategy  选择生产者的策略
+     */
+    public ProducerPool(@NotNull List<Producer> producers, @NotNull ProducerSelectStrategy strategy) {
+        this(producers, null, strategy);
+    }
+
+    /**
+     * 创建生产者池
+     *
+     * @param producers 生产者列表，不能为空
+     * @param names     生产者的名称，如连接的接入点，与生产者一一对应；为空时使用下标
+     * @param strategy  选择生产者的策略
+     */
+    public ProducerPool(@NotNull List<Producer> producers, List<String> names, @NotNull ProducerSelectStrategy strategy) {
+        if (producers.isEmpty()) {
+            throw new IllegalArgumentException("producers must not be empty");
+        }
+        this.producers = producers.toArray(new Producer[0]);
+        this.strategy = strategy;
+        this.inFlight = new AtomicIntegerArray(this.producers.length);
+        this.names = new String[this.producers.length];
+        for (int i = 0; i < this.names.length; i++) {
+            this.names[i] = names != null && i < names.size() ? names.get(i) : String.valueOf(i);
+        }
+        this.latencyEwma = new AtomicLongArray(this.producers.length);
+        this.consecutiveErrors = new AtomicIntegerArray(this.producers.length);
+        this.ejectedUntil = new AtomicLongArray(this.producers.length);
+    }
+
+    /**
+     * 设置{@linkplain ProducerSelectStrategy#LATENCY_AWARE}策略的参数
+     *
+     * @param ewmaAlpha              延迟EWMA的平滑系数，越大越偏向最近的样本
+     * @param ejectConsecutiveErrors 连续失败多少次后剔除
+     * @param ejectLatencyFactor     延迟超过最快生产者的多少倍后剔除
+     * @param ejectDurationMs        剔除的时长，单位毫秒
+     */
+    public void setLatencyAwareSettings(double ewmaAlpha, int ejectConsecutiveErrors, double ejectLatencyFactor,
+                                        long ejectDurationMs) {
+        this.ewmaAlpha = ewmaAlpha;
+        this.ejectConsecutiveErrors = ejectConsecutiveErrors;
+        this.ejectLatencyFactor = ejectLatencyFactor;
+        this.ejectDurationNanos = TimeUnit.MILLISECONDS.toNanos(ejectDurationMs);
+    }
+
+    /**
+     * 选择生产者，并将其在途请求数加一
+     *
+     * @param topic 消息的主题
+     * @return 生产者的下标
+     */
+    public int select(String topic) {
+        int index;
+        switch (strategy) {
+            case TOPIC_HASH:
+                index = topic == null ? 0 : (topic.hashCode() & Integer.MAX_VALUE) % producers.length;
+                break;
+            case LEAST_IN_FLIGHT:
+                index = leastInFlight();
+                break;
+            case LATENCY_AWARE:
+                index = latencyAware();
+                break;
+            default:
+                index = (sequence.getAndIncrement() & Integer.MAX_VALUE) % producers.length;
+                break;
+        }
+        inFlight.incrementAndGet(index);
+        return index;
+    }
+
+    /**
+     * 获取生产者
+     *
+     * @param index 生产者的下标
+     * @return {@linkplain Producer}
+     */
+    public Producer get(int index) {
+        return producers[index];
+    }
+
+    /**
+     * 发送完成，将生产者的在途请求数减一
+     *
+     * @param index 生产者的下标
+     */
+    public void release(int index) {
+        inFlight.decrementAndGet(index);
+    }
+
+    /**
+     * 发送完成，将生产者的在途请求数减一，并记录延迟和结果用于{@linkplain ProducerSelectStrategy#LATENCY_AWARE}策略
+     *
+     * @param index         生产者的下标
+     * @param latencyNanos  发送的耗时，单位纳秒
+     * @param success       是否发送成功
+     */
+    public void release(int index, long latencyNanos, boolean success) {
+        inFlight.decrementAndGet(index);
+        if (strategy != ProducerSelectStrategy.LATENCY_AWARE) {
+            return;
+        }
+        updateEwma(index, latencyNanos);
+        if (success) {
+            consecutiveErrors.set(index, 0);
+            if (isLatencyOutlier(index)) {
+                eject(index, "latency " + TimeUnit.NANOSECONDS.toMillis(latencyEwma.get(index)) + "ms");
+            }
+        } else if (consecutiveErrors.incrementAndGet(index) >= ejectConsecutiveErrors) {
+            eject(index, consecutiveErrors.get(index) + " consecutive errors");
+        }
+    }
+
+    /**
+     * @return 生产者的数量
+     */
+    public int size() {
+        return producers.length;
+    }
+
+    /**
+     * 获取生产者当前的在途请求数
+     *
+     * @param index 生产者的下标
+     * @return 在途请求数
+     */
+    public int getInFlight(int index) {
+        return inFlight.get(index);
+    }
+
+    /**
+     * 获取生产者的名称
+     *
+     * @param index 生产者的下标
+     * @return 名称
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * 获取生产者延迟的EWMA
+     *
+     * @param index 生产者的下标
+     * @return 延迟，单位毫秒
+     */
+    public double getLatencyEwmaMillis(int index) {
+        return latencyEwma.get(index) / 1e6;
+    }
+
+    /**
+     * 判断生产者当前是否被剔除
+     *
+     * @param index 生产者的下标
+     * @return 被剔除时返回{@code true}
+     */
+    public boolean isEjected(int index) {
+        long until = ejectedUntil.get(index);
+        return until != 0 && until - System.nanoTime() > 0;
+    }
+
+    /**
+     * 二选一：随机取两个未剔除的生产者，选择{@code 延迟 * (在途请求数 + 1)}较小的
+     */
+    private int latencyAware() {
+        int length = producers.length;
+        if (length == 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = healthy(random.nextInt(length));
+        int second = healthy(random.nextInt(length));
+        if (first == second) {
+            return first;
+        }
+        return score(first) <= score(second) ? first : second;
+    }
+
+    /**
+     * 从指定位置开始查找未剔除的生产者，全部被剔除时返回起始位置
+     */
+    private int healthy(int start) {
+        int length = producers.length;
+        for (int i = 0; i < length; i++) {
+            int candidate = (start + i) % length;
+            if (!isEjected(candidate)) {
+                return candidate;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 生产者的负载分数，没有延迟样本的生产者（新建或刚恢复）只在没有在途请求时优先，每次只放行一个探测
+     */
+    private double score(int index) {
+        long latency = latencyEwma.get(index);
+        int current = inFlight.get(index);
+        if (latency == 0) {
+            return current == 0 ? 0 : Double.MAX_VALUE;
+        }
+        return (double) latency * (current + 1);
+    }
+
+    private void updateEwma(int index, long latencyNanos) {
+        long current;
+        long next;
+        do {
+            current = latencyEwma.get(index);
+            next = current == 0 ? Math.max(1, latencyNanos) : (long) (current + (latencyNanos - current) * ewmaAlpha);
+        } while (!latencyEwma.compareAndSet(index, current, next));
+    }
+
+    /**
+     * 延迟是否超过其他未剔除生产者中最快的{@code ejectLatencyFactor}倍
+     */
+    private boolean isLatencyOutlier(int index) {
+        long latency = latencyEwma.get(index);
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < producers.length; i++) {
+            long other = latencyEwma.get(i);
+            if (i != index && other > 0 && !isEjected(i)) {
+                fastest = Math.min(fastest, other);
+            }
+        }
+        return fastest != Long.MAX_VALUE && latency > fastest * ejectLatencyFactor;
+    }
+
+    /**
+     * 剔除生产者，至少保留一个未剔除的生产者
+     */
+    private void eject(int index, String reason) {
+        if (isEjected(index)) {
+            return;
+        }
+        int healthy = 0;
+        for (int i = 0; i < producers.length; i++) {
+            if (i != index && !isEjected(i)) {
+                healthy++;
+            }
+        }
+        if (healthy == 0) {
+            return;
+        }
+        long until = System.nanoTime() + ejectDurationNanos;
+        ejectedUntil.set(index, until == 0 ? 1 : until);
+        // 恢复后重新采样
+        latencyEwma.set(index, 0);
+        consecutiveErrors.set(index, 0);
+        log.warn("Producer {} ejected for {}s, reason: {}", names[index],
+                TimeUnit.NANOSECONDS.toSeconds(ejectDurationNanos), reason);
+    }
+
+    /**
+     * 从轮询的位置开始查找在途请求最少的生产者，避免负载相同时总是选中第一个
+     */
+    private int leastInFlight() {
+        int length = producers.length;
+        int start = (sequence.getAndIncrement() & Integer.MAX_VALUE) % length;
+        int index = start;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            int candidate = (start + i) % length;
+            int current = inFlight.get(candidate);
+            if (current < min) {
+                min = current;
+                index = candidate;
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public void close() {
+        for (Producer producer : producers) {
+            try {
+                producer.close();
+            } catch (IOException e) {
+                log.warn("Close Producer occupy exception", e);
+            }
+        }
+    }
+
+}
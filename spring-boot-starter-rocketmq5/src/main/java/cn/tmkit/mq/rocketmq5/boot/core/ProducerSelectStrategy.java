@@ -0,0 +1,33 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 生产者池选择生产者的策略
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-12
+ */
+public enum ProducerSelectStrategy {
+
+    /**
+     * 轮询
+     */
+    ROUND_ROBIN,
+
+    /**
+     * 按主题哈希，同一主题总是使用同一个生产者
+     */
+    TOPIC_HASH,
+
+    /**
+     * 选择在途请求最少的生产者
+     */
+    LEAST_IN_FLIGHT,
+
+    /**
+     * 按延迟选择：随机取两个健康的生产者，选择{@code 延迟的EWMA * (在途请求数 + 1)}较小的一个；
+     * 连续失败或延迟远高于其他生产者的会被暂时剔除。通常每个生产者连接一个Proxy接入点
+     */
+    LATENCY_AWARE
+
+}
@@ -0,0 +1,22 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 发送速率达到上限时的处理策略
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-28
+ */
+public enum RateLimitPolicy {
+
+    /**
+     * 阻塞等待至超时，预计等待时间超过超时时间时立即发送失败
+     */
+    BLOCK,
+
+    /**
+     * 立即发送失败
+     */
+    REJECT
+
+}
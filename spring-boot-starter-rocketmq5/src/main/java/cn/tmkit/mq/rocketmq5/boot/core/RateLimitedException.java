@@ -0,0 +1,21 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 发送速率超过限制，消息未发送
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-28
+ */
+public class RateLimitedException extends MessageException {
+
+    /**
+     * Constructs a new {@link RateLimitedException} instance.
+     *
+     * @param resource 限流的主题或主题和标签
+     */
+    public RateLimitedException(String resource) {
+        super("Send rate of " + resource + " exceeds the limit");
+    }
+
+}
@@ -0,0 +1,105 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的令牌桶限流器，按GCRA（通用信元速率算法）实现
+ * <p>
+ * 只保存一个理论到达时间（TAT），每次获取许可把TAT向后推移一个发放间隔，TAT超前当前时间不超过突发容量时放行。
+ * 等待时通过CAS预留未来的许可后在调用线程上休眠，多个线程之间没有锁竞争
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-28
+ */
+@Getter
+public class RateLimiter {
+
+    /**
+     * 每秒发放的许可数
+     */
+    private final double permitsPerSecond;
+
+    /**
+     * 突发容量，空闲后最多连续放行的许可数
+     */
+    private final int burst;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final long intervalNanos;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final long toleranceNanos;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permitsPerSecond 每秒发放的许可数
+     * @param burst            突发容量，小于1时按1处理
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be greater than 0");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (this.burst - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 获取一个许可，需要等待时在调用线程上休眠
+     *
+     * @param maxWaitNanos 最长的等待时间，单位纳秒，为0时不等待
+     * @return 获取到许可时返回{@code true}，预计等待时间超过{@code maxWaitNanos}时返回{@code false}且不占用许可
+     * @throws MessageException 等待时被中断
+     */
+    public boolean tryAcquire(long maxWaitNanos) {
+        long waitNanos = reserve(maxWaitNanos);
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            // parkNanos可能提前返回，循环直到预留的时刻
+            long deadline = System.nanoTime() + waitNanos;
+            do {
+                LockSupport.parkNanos(waitNanos);
+                if (Thread.currentThread().isInterrupted()) {
+                    // 已预留的许可不归还
+                    throw new MessageException("Interrupted while waiting for rate limit");
+                }
+                waitNanos = deadline - System.nanoTime();
+            } while (waitNanos > 0);
+        }
+        return true;
+    }
+
+    /**
+     * 预留一个许可
+     *
+     * @param maxWaitNanos 最长的等待时间，单位纳秒
+     * @return 需要等待的时间，单位纳秒；超过{@code maxWaitNanos}时返回-1
+     */
+    long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long start = tat - now > 0 ? tat : now;
+            long waitNanos = start - toleranceNanos - now;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(tat, start + intervalNanos)) {
+                return Math.max(0, waitNanos);
+            }
+        }
+    }
+
+}
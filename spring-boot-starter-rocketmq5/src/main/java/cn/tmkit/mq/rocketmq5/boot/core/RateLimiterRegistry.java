@@ -0,0 +1,133 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按主题和标签配置的发送限流，同时配置了主题和标签的限流时两者都需要获取许可
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-28
+ */
+@Getter
+public class RateLimiterRegistry {
+
+    /**
+     * 达到上限时的处理策略
+     */
+    private final RateLimitPolicy policy;
+
+    /**
+     * {@linkplain RateLimitPolicy#BLOCK}策略最长的等待时间，单位毫秒
+     */
+    private final long timeoutMs;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final long timeoutNanos;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final ConcurrentMap<String, TopicLimiters> topics = new ConcurrentHashMap<>();
+
+    /**
+     * @param policy    达到上限时的处理策略
+     * @param timeoutMs {@linkplain RateLimitPolicy#BLOCK}策略最长的等待时间，单位毫秒
+     */
+    public RateLimiterRegistry(@NotNull RateLimitPolicy policy, long timeoutMs) {
+        this.policy = policy;
+        this.timeoutMs = timeoutMs;
+        this.timeoutNanos = policy == RateLimitPolicy.REJECT ? 0 : TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMs));
+    }
+
+    /**
+     * 注册限流
+     *
+     * @param topic            主题
+     * @param tag              标签，为空时限制整个主题
+     * @param permitsPerSecond 每秒允许发送的消息数
+     * @param burst            突发容量
+     */
+    public void register(@NotNull String topic, @Nullable String tag, double permitsPerSecond, int burst) {
+        TopicLimiters limiters = topics.computeIfAbsent(topic, key -> new TopicLimiters());
+        RateLimiter rateLimiter = new RateLimiter(permitsPerSecond, burst);
+        if (tag == null || tag.isEmpty()) {
+            limiters.topicLimiter = rateLimiter;
+        } else {
+            limiters.tagLimiters.put(tag, rateLimiter);
+        }
+    }
+
+    /**
+     * 获取主题或标签的限流器
+     *
+     * @param topic 主题
+     * @param tag   标签，为空时返回主题的限流器
+     * @return 限流器，没有配置时返回{@code null}
+     */
+    @Nullable
+    public RateLimiter get(@NotNull String topic, @Nullable String tag) {
+        TopicLimiters limiters = topics.get(topic);
+        if (limiters == null) {
+            return null;
+        }
+        return tag == null ? limiters.topicLimiter : limiters.tagLimiters.get(tag);
+    }
+
+    /**
+     * 获取一条消息的发送许可
+     *
+     * @param topic 主题
+     * @param tag   标签
+     * @throws RateLimitedException 按策略未能获取许可
+     */
+    public void acquire(@NotNull String topic, @Nullable String tag) {
+        acquire(topic, tag, Long.MAX_VALUE);
+    }
+
+    /**
+     * 获取一条消息的发送许可，{@linkplain RateLimitPolicy#BLOCK}策略的等待时间不超过{@linkplain #timeoutMs}和{@code maxWaitNanos}中较短的一个，
+     * 标签和主题的等待时间合计计算
+     *
+     * @param topic        主题
+     * @param tag          标签
+     * @param maxWaitNanos 调用方允许的最长等待时间，单位纳秒，如同步发送剩余的截止时间
+     * @throws RateLimitedException 按策略未能获取许可
+     */
+    public void acquire(@NotNull String topic, @Nullable String tag, long maxWaitNanos) {
+        TopicLimiters limiters = topics.get(topic);
+        if (limiters == null) {
+            return;
+        }
+        long waitNanos = Math.max(0, Math.min(timeoutNanos, maxWaitNanos));
+        long deadline = System.nanoTime() + waitNanos;
+        if (tag != null && !limiters.tagLimiters.isEmpty()) {
+            RateLimiter tagLimiter = limiters.tagLimiters.get(tag);
+            if (tagLimiter != null && !tagLimiter.tryAcquire(waitNanos)) {
+                throw new RateLimitedException(topic + ":" + tag);
+            }
+            waitNanos = waitNanos == 0 ? 0 : Math.max(0, deadline - System.nanoTime());
+        }
+        RateLimiter topicLimiter = limiters.topicLimiter;
+        if (topicLimiter != null && !topicLimiter.tryAcquire(waitNanos)) {
+            throw new RateLimitedException(topic);
+        }
+    }
+
+    /**
+     * 单个主题的限流器
+     */
+    private static class TopicLimiters {
+
+        private volatile RateLimiter topicLimiter;
+
+        private final Map<String, RateLimiter> tagLimiters = new ConcurrentHashMap<>();
+
+    }
+
+}
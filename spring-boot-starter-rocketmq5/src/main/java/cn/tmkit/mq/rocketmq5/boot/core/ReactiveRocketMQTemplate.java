@@ -0,0 +1,145 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.payload.PayloadStore;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 基于Reactor的RocketMQ Template，发送委托给{@linkplain RocketMQTemplate#sendAsync(SendRequest)}
+ * <p>
+ * {@code send}返回的{@linkplain Mono}在订阅时才创建并发送消息，取消订阅不会撤回已发出的消息。
+ * {@code sendMany}按下游的需求从上游拉取消息，同时在途的发送不超过{@linkplain #concurrency}，
+ * 结果按上游的顺序输出；任一条发送失败时取消剩余的发送并以该异常结束
+ * </p>
+ * <p>
+ * 消息在订阅的线程上序列化和压缩。配置了可能阻塞的组件时，即{@linkplain PayloadStore}、本地预写日志、非拒绝策略的{@linkplain InFlightLimiter}
+ * 或{@linkplain RateLimiterRegistry}，发送切换到{@linkplain Schedulers#boundedElastic()}上执行，不会阻塞事件循环或客户端的回调线程
+ * </p>
+ * <pre>{@code
+ * reactiveRocketMQTemplate.sendMany("topic", "tag", orderFlux)
+ *         .subscribe(sendResult -> log.info("sent {}", sendResult.getMsgId()));
+ * }</pre>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-03
+ */
+public class ReactiveRocketMQTemplate {
+
+    @Getter
+    private final RocketMQTemplate rocketMQTemplate;
+
+    /**
+     * {@code sendMany}同时在途的最大发送数
+     */
+    @Getter
+    private final int concurrency;
+
+    /**
+     * @param rocketMQTemplate 消息模板
+     * @param concurrency      {@code sendMany}同时在途的最大发送数
+     */
+    public ReactiveRocketMQTemplate(@NotNull RocketMQTemplate rocketMQTemplate, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be greater than 0");
+        }
+        this.rocketMQTemplate = rocketMQTemplate;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * 发送消息到默认普通主题上
+     *
+     * @param tag  消息标签
+     * @param body 消息内容
+     * @return 发送结果
+     */
+    public Mono<SendResult> send(String tag, @NotNull Object body) {
+        return send(rocketMQTemplate.getDefaultNormalTopic(), tag, body);
+    }
+
+    /**
+     * 发送消息
+     *
+     * @param topic 主题
+     * @param tag   消息标签
+     * @param body  消息内容
+     * @return 发送结果
+     */
+    public Mono<SendResult> send(@NotNull String topic, String tag, @NotNull Object body) {
+        return defer(() -> rocketMQTemplate.sendAsync(SendRequest.of(topic, tag, body)));
+    }
+
+    /**
+     * 发送消息。请求在订阅时才读取，订阅前不能重置或修改
+     *
+     * @param request 发送请求
+     * @return 发送结果
+     */
+    public Mono<SendResult> send(@NotNull SendRequest request) {
+        return defer(() -> rocketMQTemplate.sendAsync(request));
+    }
+
+    /**
+     * 逐条发送消息到默认普通主题上
+     *
+     * @param tag    消息标签
+     * @param bodies 消息内容
+     * @return 与上游顺序一致的发送结果
+     */
+    public Flux<SendResult> sendMany(String tag, @NotNull Publisher<?> bodies) {
+        return sendMany(rocketMQTemplate.getDefaultNormalTopic(), tag, bodies);
+    }
+
+    /**
+     * 逐条发送消息，同时在途的发送不超过{@linkplain #concurrency}
+     *
+     * @param topic  主题
+     * @param tag    消息标签
+     * @param bodies 消息内容
+     * @return 与上游顺序一致的发送结果
+     */
+    public Flux<SendResult> sendMany(@NotNull String topic, String tag, @NotNull Publisher<?> bodies) {
+        return Flux.from(bodies).flatMapSequential(body -> send(topic, tag, body), concurrency, 1);
+    }
+
+    /**
+     * 逐条发送请求，同时在途的发送不超过{@linkplain #concurrency}。每个请求须是独立的对象，不能复用
+     *
+     * @param requests 发送请求
+     * @return 与上游顺序一致的发送结果
+     */
+    public Flux<SendResult> sendRequests(@NotNull Publisher<SendRequest> requests) {
+        return Flux.from(requests).flatMapSequential(this::send, concurrency, 1);
+    }
+
+    /**
+     * 订阅时发送，可能阻塞时切换到{@linkplain Schedulers#boundedElastic()}上
+     *
+     * @param sender 发送消息
+     * @return 发送结果
+     */
+    private Mono<SendResult> defer(Supplier<CompletableFuture<SendResult>> sender) {
+        Mono<SendResult> mono = Mono.defer(() -> Mono.fromFuture(sender.get()));
+        return mayBlock() ? mono.subscribeOn(Schedulers.boundedElastic()) : mono;
+    }
+
+    /**
+     * @return 发送路径上存在可能阻塞的组件时返回{@code true}
+     */
+    private boolean mayBlock() {
+        InFlightLimiter inFlightLimiter = rocketMQTemplate.getInFlightLimiter();
+        RateLimiterRegistry rateLimiterRegistry = rocketMQTemplate.getRateLimiterRegistry();
+        return rocketMQTemplate.getPayloadStore() != null || rocketMQTemplate.getMessageSpool() != null
+                || (inFlightLimiter != null && inFlightLimiter.getPolicy() != InFlightPolicy.REJECT)
+                || (rateLimiterRegistry != null && rateLimiterRegistry.getPolicy() != RateLimitPolicy.REJECT);
+    }
+
+}
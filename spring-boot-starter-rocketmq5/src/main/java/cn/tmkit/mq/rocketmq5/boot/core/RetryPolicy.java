@@ -0,0 +1,221 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 发送失败的重试策略：带预算的重试加随机抖动的指数退避
+ * <p>
+ * 每个首次发送向预算存入{@code budgetRatio}个令牌，每次重试取出一个令牌，另外每秒固定允许{@code minRetriesPerSecond}次重试。
+ * 服务端整体不可用时重试次数被限制在请求量的一定比例内，不会把流量放大数倍。
+ * 退避时间在{@code [0, min(maxBackoffMs, baseBackoffMs * 2^attempt)]}之间随机，避免大量调用方同时重试
+ * </p>
+ * <p>
+ * 该策略在客户端内部的重试（{@code max-attempts}）之外生效，开启后建议把{@code max-attempts}调小
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-26
+ */
+@Getter
+public class RetryPolicy implements Closeable {
+
+    private static final long TOKEN = 1000;
+
+    /**
+     * 单条消息最大的重试次数
+     */
+    private final int maxRetries;
+
+    /**
+     * 退避的基准时间，单位毫秒
+     */
+    private final long baseBackoffMs;
+
+    /**
+     * 最长的退避时间，单位毫秒
+     */
+    private final long maxBackoffMs;
+
+    /**
+     * 每次首次发送存入预算的令牌数
+     */
+    private final double budgetRatio;
+
+    /**
+     * 每秒固定允许的重试次数
+     */
+    private final int minRetriesPerSecond;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final long depositPerRequest;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final long maxBalance;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong balance = new AtomicLong();
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong reserveWindow = new AtomicLong();
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicLong reserveUsed = new AtomicLong();
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final LongAdder retries = new LongAdder();
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final LongAdder exhausted = new LongAdder();
+
+    @Getter(lombok.AccessLevel.NONE)
+    private volatile ScheduledExecutorService scheduler;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private volatile boolean closed;
+
+    /**
+     * @param maxRetries          单条消息最大的重试次数
+     * @param baseBackoffMs       退避的基准时间，单位毫秒
+     * @param maxBackoffMs        最长的退避时间，单位毫秒
+     * @param budgetRatio         每次首次发送存入预算的令牌数，如0.1表示重试最多为请求量的10%
+     * @param minRetriesPerSecond 每秒固定允许的重试次数，保证低流量时也能重试
+     */
+    public RetryPolicy(int maxRetries, long baseBackoffMs, long maxBackoffMs, double budgetRatio, int minRetriesPerSecond) {
+        this.maxRetries = maxRetries;
+        this.baseBackoffMs = Math.max(1, baseBackoffMs);
+        this.maxBackoffMs = Math.max(this.baseBackoffMs, maxBackoffMs);
+        this.budgetRatio = budgetRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.depositPerRequest = (long) (budgetRatio * TOKEN);
+        // 预算最多积累约10秒的固定重试量，避免长时间空闲后突发大量重试
+        this.maxBalance = Math.max(TOKEN, minRetriesPerSecond * 10L * TOKEN);
+    }
+
+    /**
+     * 记录一次首次发送，向预算存入令牌
+     */
+    public void onRequest() {
+        if (depositPerRequest <= 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + depositPerRequest)));
+    }
+
+    /**
+     * 判断能否进行第{@code attempt}次重试，允许时取出一个令牌
+     *
+     * @param attempt 重试的次数，从1开始
+     * @return 是否允许重试
+     */
+    public boolean tryRetry(int attempt) {
+        if (attempt > maxRetries) {
+            return false;
+        }
+        if (withdraw() || withdrawReserve()) {
+            retries.increment();
+            return true;
+        }
+        exhausted.increment();
+        return false;
+    }
+
+    /**
+     * 计算第{@code attempt}次重试前的退避时间
+     *
+     * @param attempt 重试的次数，从1开始
+     * @return 退避时间，单位毫秒
+     */
+    public long backoffMs(int attempt) {
+        long ceiling = baseBackoffMs << Math.min(attempt - 1, 20);
+        return ThreadLocalRandom.current().nextLong(Math.min(maxBackoffMs, ceiling) + 1);
+    }
+
+    /**
+     * 延迟执行异步发送的重试
+     *
+     * @param task    重试的任务
+     * @param delayMs 延迟时间，单位毫秒
+     * @throws RejectedExecutionException 已经关闭
+     */
+    public void schedule(Runnable task, long delayMs) {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new RejectedExecutionException("RetryPolicy already closed");
+                }
+                scheduler = this.scheduler;
+                if (scheduler == null) {
+                    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("rocketmq-send-retry-");
+                    threadFactory.setDaemon(true);
+                    scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+                    this.scheduler = scheduler;
+                }
+            }
+        }
+        scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 累计的重试次数
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return 因预算耗尽放弃重试的次数
+     */
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    private boolean withdrawReserve() {
+        if (minRetriesPerSecond <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long window = reserveWindow.get();
+        if (window != second && reserveWindow.compareAndSet(window, second)) {
+            reserveUsed.set(0);
+        }
+        return reserveUsed.incrementAndGet() <= minRetriesPerSecond;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+}
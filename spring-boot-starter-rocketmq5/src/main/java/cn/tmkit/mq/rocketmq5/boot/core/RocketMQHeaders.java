@@ -0,0 +1,65 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 本组件写入消息的自定义属性名，消费者据此还原消息体
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-16
+ */
+public final class RocketMQHeaders {
+
+    /**
+     * 属性名的前缀
+     */
+    public static final String PREFIX = "rmq5_";
+
+    /**
+     * 消息体的压缩算法名称
+     */
+    public static final String COMPRESSION = PREFIX + "compression";
+
+    /**
+     * 压缩消息体使用的Zstd字典ID
+     */
+    public static final String ZSTD_DICT_ID = PREFIX + "zstd_dict_id";
+
+    /**
+     * 打包消息中逻辑消息的数量，存在该属性时消息体为{@linkplain MessagePacking}格式的信封
+     */
+    public static final String PACKED = PREFIX + "packed";
+
+    /**
+     * 分片ID，同一条消息的所有分片相同
+     */
+    public static final String CHUNK_ID = PREFIX + "chunk_id";
+
+    /**
+     * 分片序号，从0开始
+     */
+    public static final String CHUNK_INDEX = PREFIX + "chunk_index";
+
+    /**
+     * 分片总数
+     */
+    public static final String CHUNK_COUNT = PREFIX + "chunk_count";
+
+    /**
+     * 分片前消息体的总字节数
+     */
+    public static final String CHUNK_TOTAL_SIZE = PREFIX + "chunk_total_size";
+
+    /**
+     * 消息体在外部存储中的引用，存在该属性时消息体为引用而不是内容
+     */
+    public static final String CLAIM_CHECK = PREFIX + "claim_check";
+
+    /**
+     * 去重键，对冲发送时主备集群上的两份消息相同，消费者据此跳过重复的消息
+     */
+    public static final String DEDUP_KEY = PREFIX + "dedup_key";
+
+    private RocketMQHeaders() {
+    }
+
+}
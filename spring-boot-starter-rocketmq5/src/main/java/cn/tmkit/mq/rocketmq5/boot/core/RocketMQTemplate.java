@@ -2,28 +2,55 @@ package cn.tmkit.mq.rocketmq5.boot.core;
 
 import cn.tmkit.core.date.LocalDateTimes;
 import cn.tmkit.core.lang.*;
+import cn.tmkit.mq.rocketmq5.boot.compression.MessageCompressor;
+import cn.tmkit.mq.rocketmq5.boot.compression.ZstdDictionaryRegistry;
+import cn.tmkit.mq.rocketmq5.boot.compression.ZstdMessageCompressor;
+import cn.tmkit.mq.rocketmq5.boot.payload.PayloadStore;
 import cn.tmkit.mq.rocketmq5.boot.serializer.RocketMQMessageSerializer;
+import cn.tmkit.mq.rocketmq5.boot.spool.MessageSpool;
 import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.ClientException;
 import org.apache.rocketmq.client.apis.message.Message;
 import org.apache.rocketmq.client.apis.message.MessageBuilder;
 import org.apache.rocketmq.client.apis.producer.Producer;
 import org.apache.rocketmq.client.apis.producer.SendReceipt;
+import org.apache.rocketmq.client.apis.producer.Transaction;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
 import org.apache.rocketmq.client.java.impl.producer.SendReceiptImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * RocketMQ Template for RocketMQ 5.x
@@ -41,6 +68,11 @@ public class RocketMQTemplate implements DisposableBean {
      */
     private Producer producer;
 
+    /**
+     * 生产者池，不为空时发送消息使用池中的生产者，而不是{@linkplain #producer}
+     */
+    private ProducerPool producerPool;
+
     /**
      * 默认的普通主题
      */
@@ -56,11 +88,154 @@ public class RocketMQTemplate implements DisposableBean {
      */
     private RocketMQMessageSerializer<Object> rocketMQMessageSerializer;
 
+    /**
+     * 消息体的压缩器，为空时不压缩
+     */
+    private MessageCompressor messageCompressor;
+
+    /**
+     * 压缩的阈值，序列化后的消息体不小于该字节数时才压缩
+     */
+    private int compressionThreshold = 4096;
+
+    /**
+     * Zstd字典的注册表，为空时不使用字典压缩
+     */
+    private ZstdDictionaryRegistry zstdDictionaryRegistry;
+
+    /**
+     * 字典压缩的阈值，主题注册了字典并且序列化后的消息体不小于该字节数时使用字典压缩
+     */
+    private int dictionaryCompressionThreshold = 64;
+
     /**
      * 异步发送线程池
      */
     private ThreadPoolTaskExecutor asyncSendThreadPoolTaskExecutor;
 
+    /**
+     * 异步发送回调的执行器，如虚拟线程的执行器，为空时使用{@linkplain #asyncSendThreadPoolTaskExecutor}
+     */
+    private Executor callbackExecutor;
+
+    /**
+     * {@linkplain CompletableFuture}形式异步发送结果的完成方式，默认在客户端的回调线程上直接完成
+     */
+    private AsyncCompletionMode asyncCompletionMode = AsyncCompletionMode.DIRECT;
+
+    /**
+     * 消息打包器，为空时{@linkplain #packedSend}逐条发送
+     */
+    private MessagePacker messagePacker;
+
+    /**
+     * 消息压缩器，为空时{@linkplain #compactingSend}直接异步发送
+     */
+    private MessageCompactor messageCompactor;
+
+    /**
+     * 异步发送的在途请求限制器，为空时不限制
+     */
+    private InFlightLimiter inFlightLimiter;
+
+    /**
+     * 单条消息体的最大字节数，压缩后仍超过该值的消息拆分为多条分片消息发送，小于等于0表示不分片
+     */
+    private int maxBodySize;
+
+    /**
+     * 没有消息组的分片消息是否使用分片ID作为消息组，只能在FIFO主题上开启；默认只保留调用方设置的消息组
+     */
+    private boolean chunkUseMessageGroup;
+
+    /**
+     * 消息体的外部存储，为空时不使用Claim-Check模式
+     */
+    private PayloadStore payloadStore;
+
+    /**
+     * Claim-Check的阈值，压缩后的消息体不小于该字节数时写入{@linkplain #payloadStore}，消息中只携带引用
+     */
+    private int claimCheckThreshold = 1048576;
+
+    /**
+     * 本地预写日志，不为空时服务端不可用的消息写入日志，由{@linkplain #spoolReplayer}恢复后重放
+     */
+    private MessageSpool messageSpool;
+
+    /**
+     * 本地预写日志的重放线程
+     */
+    private SpoolReplayer spoolReplayer;
+
+    /**
+     * 按主题的熔断器，为空时不熔断
+     */
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    /**
+     * 服务端不可用时的重试策略，为空时只依赖客户端内部的重试
+     */
+    private RetryPolicy retryPolicy;
+
+    /**
+     * 对冲发送，不为空时配置的主题在主集群响应慢时再发往备集群
+     */
+    private HedgedSender hedgedSender;
+
+    /**
+     * 按主题和标签的发送限流，不为空时超过速率的消息按策略等待或拒绝
+     */
+    private RateLimiterRegistry rateLimiterRegistry;
+
+    /**
+     * 发送拦截器，启动时排序后固定为数组，为空数组时发送路径上不做任何拦截
+     */
+    @Setter(lombok.AccessLevel.NONE)
+    private SendInterceptor[] sendInterceptors = new SendInterceptor[0];
+
+    /**
+     * 发送指标的记录器，为空时不记录
+     */
+    private SendMetrics sendMetrics;
+
+    /**
+     * 单向发送失败的次数
+     */
+    @Getter(lombok.AccessLevel.NONE)
+    @Setter(lombok.AccessLevel.NONE)
+    private final LongAdder onewayFailures = new LongAdder();
+
+    /**
+     * 单向发送被熔断或限流拒绝的次数
+     */
+    @Getter(lombok.AccessLevel.NONE)
+    @Setter(lombok.AccessLevel.NONE)
+    private final LongAdder onewayRejections = new LongAdder();
+
+    /**
+     * 关闭时等待在途异步发送完成的最长时间，单位毫秒；配置了{@linkplain #retryPolicy}或{@linkplain #messageSpool}时生效
+     */
+    private long closeTimeoutMs = 10000;
+
+    /**
+     * 配置了{@linkplain #retryPolicy}或{@linkplain #messageSpool}时在途的异步发送数，关闭时等待其完成后再关闭这两个组件
+     */
+    @Getter(lombok.AccessLevel.NONE)
+    @Setter(lombok.AccessLevel.NONE)
+    private final AtomicInteger pendingAsyncSends = new AtomicInteger();
+
+    /**
+     * 单向发送完成后的处理，只累加失败次数，在客户端的回调线程上执行
+     */
+    @Getter(lombok.AccessLevel.NONE)
+    @Setter(lombok.AccessLevel.NONE)
+    private final BiConsumer<Object, Throwable> onewayCompletion = (result, throwable) -> {
+        if (throwable != null) {
+            onewayFailures.increment();
+        }
+    };
+
     // region 同步发送消息
 
     /**
@@ -1468,103 +1643,1603 @@ public class RocketMQTemplate implements DisposableBean {
 
     // endregion
 
-    // region 发消息的核心逻辑
+    // region 基于发送请求发送消息
 
     /**
-     * 发送消息
+     * 同步发送消息
      *
-     * @param topic        自定义的主题
-     * @param tag          标签
-     * @param body         消息内容
-     * @param properties   自定义的属性
-     * @param keys         消息标识
-     * @param deliveryTime 分发时间
-     * @return 发送结果
+     * @param request 发送请求
+     * @return {@link SendResult}
      */
-    private SendResult doSyncSend(String topic, String tag, Object body, Map<String, String> properties,
-                                  Collection<String> keys, Long deliveryTime) {
-        try {
-            SendReceiptImpl sendReceiptImpl = (SendReceiptImpl) producer.send(createRocketMQMessage(topic, tag, body, properties, keys, deliveryTime));
-            return new SendResult(sendReceiptImpl.getMessageId(), sendReceiptImpl.getTransactionId(), sendReceiptImpl.getMessageQueue(),
-                    sendReceiptImpl.getOffset());
-        } catch (Exception e) {
-            log.error("send request message failed. topic = {} ,tag = {} ,body = {} ", topic, tag, body, e);
-            throw new MessageException(e.getMessage(), e);
-        }
+    public SendResult send(@NotNull SendRequest request) {
+        return doSyncSend(request);
+    }
+
+    /**
+     * 在超时时间内同步发送消息，超时后抛出{@linkplain SendDeadlineExceededException}，不再等待回执
+     *
+     * @param topic   主题
+     * @param tag     消息标签
+     * @param body    消息内容
+     * @param timeout 超时时间，短于生产者的请求超时时间时生效
+     * @return {@link SendResult}
+     * @see SendRequest#timeout(Duration)
+     */
+    public SendResult send(@NotNull String topic, String tag, @NotNull Object body, @NotNull Duration timeout) {
+        return doSyncSend(SendRequest.of(topic, tag, body).timeout(timeout));
     }
 
     /**
      * 异步发送消息
      *
+     * @param request 发送请求
+     * @return 发送结果，完成方式由{@linkplain #asyncCompletionMode}决定
+     */
+    public CompletableFuture<SendResult> sendAsync(@NotNull SendRequest request) {
+        return complete(doAsyncSend(request));
+    }
+
+    /**
+     * 异步发送消息
+     *
+     * @param request      发送请求
+     * @param sendCallback {@link SendCallback}
+     */
+    public void asyncSend(@NotNull SendRequest request, @Nullable SendCallback sendCallback) {
+        doAsyncSend(request, sendCallback);
+    }
+
+    // endregion
+
+    // region 单向发送消息
+
+    /**
+     * 单向发送消息，发送到默认普通主题{@linkplain #defaultNormalTopic}上
+     *
+     * @param tag  消息标签
+     * @param body 消息内容
+     * @see #sendOneway(SendRequest)
+     */
+    public void sendOneway(String tag, @NotNull Object body) {
+        sendOneway(SendRequest.of(defaultNormalTopic, tag, body));
+    }
+
+    /**
+     * 单向发送消息
+     *
+     * @param topic 主题
+     * @param tag   消息标签
+     * @param body  消息内容
+     * @see #sendOneway(SendRequest)
+     */
+    public void sendOneway(@NotNull String topic, String tag, @NotNull Object body) {
+        sendOneway(SendRequest.of(topic, tag, body));
+    }
+
+    /**
+     * 单向发送消息
+     *
+     * @param topic      主题
+     * @param tag        消息标签
+     * @param body       消息内容
+     * @param properties 自定义属性
+     * @see #sendOneway(SendRequest)
+     */
+    public void sendOneway(@NotNull String topic, String tag, @NotNull Object body,
+                           @Nullable Map<String, String> properties) {
+        sendOneway(SendRequest.of(topic, tag, body).properties(properties));
+    }
+
+    /**
+     * 单向发送消息，适用于审计、埋点等不关心发送结果的消息
+     * <p>
+     * 不返回发送结果，不调度回调，不转换回执，也不调用拦截器的{@linkplain SendInterceptor#onReceipt}和
+     * {@linkplain SendInterceptor#onError}；发送失败时不重试、不写入本地预写日志、不记录日志，
+     * 只累加{@linkplain #getOnewayFailureCount}和{@linkplain #getOnewayRejectedCount}。
+     * 限流和熔断仍然生效，序列化失败时直接抛出异常
+     * </p>
+     *
+     * @param request 发送请求
+     */
+    public void sendOneway(@NotNull SendRequest request) {
+        doOnewaySend(createRocketMQMessage(request));
+    }
+
+    /**
+     * @return 累计单向发送失败的次数
+     */
+    public long getOnewayFailureCount() {
+        return onewayFailures.sum();
+    }
+
+    /**
+     * @return 累计单向发送被熔断或限流拒绝的次数
+     */
+    public long getOnewayRejectedCount() {
+        return onewayRejections.sum();
+    }
+
+    // endregion
+
+    // region 发送顺序消息
+
+    /**
+     * 同步发送顺序消息，发送到默认普通主题{@linkplain #defaultNormalTopic}上，该主题须为FIFO类型
+     * <p>
+     * 消费端的顺序完全依赖服务端配置为顺序投递（FIFO）的消费者分组，监听器不需要额外配置
+     * </p>
+     *
+     * @param tag          消息标签
+     * @param body         消息内容
+     * @param messageGroup 消息组，同一消息组的消息按发送顺序投递
+     * @return {@link SendResult}
+     */
+    public SendResult sendOrderly(String tag, @NotNull Object body, @NotNull String messageGroup) {
+        return sendOrderly(defaultNormalTopic, tag, body, messageGroup);
+    }
+
+    /**
+     * 同步发送顺序消息，发送到指定的FIFO主题上
+     *
      * @param topic        主题
-     * @param tag          标签
+     * @param tag          消息标签
      * @param body         消息内容
-     * @param properties   自定义属性
-     * @param keys         消息标识
-     * @param sendCallback {@link SendCallback}
+     * @param messageGroup 消息组，同一消息组的消息按发送顺序投递
+     * @return {@link SendResult}
      */
-    private void doAsyncSend(String topic, String tag, Object body, Map<String, String> properties,
-                             Collection<String> keys, Long deliveryTime, SendCallback sendCallback) {
-        CompletableFuture<SendReceipt> completableFuture = producer.sendAsync(createRocketMQMessage(topic, tag, body, properties, keys, deliveryTime));
-        if (sendCallback != null) {
-            completableFuture.whenCompleteAsync((sendReceipt, throwable) -> {
-                SendReceiptImpl sendReceiptImpl = (SendReceiptImpl) sendReceipt;
-                if (throwable != null) {
-                    sendCallback.onException(throwable);
-                } else {
-                    sendCallback.onSuccess(new SendResult(sendReceiptImpl.getMessageId(), sendReceiptImpl.getTransactionId(),
-                            sendReceiptImpl.getMessageQueue(), sendReceiptImpl.getOffset()));
-                }
-            }, asyncSendThreadPoolTaskExecutor);
-        }
+    public SendResult sendOrderly(@NotNull String topic, String tag, @NotNull Object body, @NotNull String messageGroup) {
+        return sendOrderly(topic, tag, body, null, null, messageGroup);
     }
 
     /**
-     * 创建消息
+     * 同步发送顺序消息，发送到指定的FIFO主题上
      *
-     * @param topic        指定的主题
+     * @param topic        主题
      * @param tag          消息标签
      * @param body         消息内容
      * @param properties   自定义属性
      * @param keys         消息标识
-     * @param deliveryTime 分发的时间
-     * @return {@linkplain Message}
+     * @param messageGroup 消息组，同一消息组的消息按发送顺序投递
+     * @return {@link SendResult}
      */
-    private Message createRocketMQMessage(String topic, String tag, Object body, Map<String, String> properties,
-                                          Collection<String> keys, Long deliveryTime) {
-        MessageBuilder messageBuilder = RocketMQUtils.getClientServiceProvider().newMessageBuilder()
-                .setTopic(topic)
-                .setTag(tag)
-                .setBody(getRocketMQMessageSerializer().serialize(body));
-        if (Maps.isNotEmpty(properties)) {
-            properties.forEach(messageBuilder::addProperty);
+    public SendResult sendOrderly(@NotNull String topic, String tag, @NotNull Object body,
+                                  @Nullable Map<String, String> properties, @Nullable Collection<String> keys,
+                                  @NotNull String messageGroup) {
+        return doSyncSend(SendRequest.of(topic, tag, body).properties(properties).keys(keys).messageGroup(messageGroup));
+    }
+
+    /**
+     * 异步发送顺序消息，发送到指定的FIFO主题上。
+     * 同一消息组的多条消息须等上一条的结果完成后再发送，否则重试可能打乱顺序
+     *
+     * @param topic        主题
+     * @param tag          消息标签
+     * @param body         消息内容
+     * @param messageGroup 消息组，同一消息组的消息按发送顺序投递
+     * @return 发送结果，完成方式由{@linkplain #asyncCompletionMode}决定
+     */
+    public CompletableFuture<SendResult> sendOrderlyAsync(@NotNull String topic, String tag, @NotNull Object body,
+                                                          @NotNull String messageGroup) {
+        return complete(doAsyncSend(SendRequest.of(topic, tag, body).messageGroup(messageGroup)));
+    }
+
+    // endregion
+
+    // region 发送事务消息
+
+    /**
+     * 发送事务消息：先发送半消息，再执行本地事务，根据本地事务的结果提交或回滚。
+     * 本地事务返回{@linkplain TransactionResolution#UNKNOWN}或提交失败时，由服务端回查生产者的{@code TransactionChecker}确定
+     *
+     * @param topic    主题，须为事务类型
+     * @param tag      消息标签
+     * @param body     消息内容
+     * @param executor 本地事务的执行器
+     * @return {@linkplain TransactionSendResult}
+     */
+    public TransactionSendResult sendInTransaction(@NotNull String topic, String tag, @NotNull Object body,
+                                                   @NotNull LocalTransactionExecutor executor) {
+        return sendInTransaction(SendRequest.of(topic, tag, body), executor);
+    }
+
+    /**
+     * 发送事务消息：先发送半消息，再执行本地事务，根据本地事务的结果提交或回滚。
+     * 本地事务返回{@linkplain TransactionResolution#UNKNOWN}或提交失败时，由服务端回查生产者的{@code TransactionChecker}确定
+     * <p>
+     * 半消息与普通消息一样经过限流、熔断和生产者池，事务在选中的生产者上开启和结束。半消息发送失败时不重试、不写入本地日志，
+     * 也不做对冲发送，异常直接抛给调用方，此时本地事务尚未执行
+     * </p>
+     *
+     * @param request  发送请求，不能设置分发时间和消息组
+     * @param executor 本地事务的执行器
+     * @return {@linkplain TransactionSendResult}
+     */
+    public TransactionSendResult sendInTransaction(@NotNull SendRequest request, @NotNull LocalTransactionExecutor executor) {
+        if (request.isScheduled() || request.getMessageGroup() != null) {
+            throw new MessageException("Transactional message can not have deliveryTime or messageGroup");
         }
-        if (CollectionUtil.isNotEmpty(keys)) {
-            keys.forEach(messageBuilder::setKeys);
+        long start = isObserved() ? System.nanoTime() : 0L;
+        Message message = createRocketMQMessage(request);
+        if (needChunk(message)) {
+            throw new MessageException("Transactional message body exceeds maxBodySize " + maxBodySize + " and can not be chunked");
         }
-        if (ObjectUtil.nonNull(deliveryTime)) {
-            if (deliveryTime < System.currentTimeMillis()) {
-                throw new MessageException("deliveryTime must be greater than current time");
+        Transaction transaction;
+        SendResult sendResult;
+        try {
+            acquireRateLimit(message);
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry == null ? null : circuitBreakerRegistry.get(message.getTopic());
+            if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                throw new CircuitBreakerOpenException(message.getTopic());
+            }
+            int index = producerPool == null ? -1 : producerPool.select(message.getTopic());
+            Producer transactionProducer = index < 0 ? producer : producerPool.get(index);
+            long sendStart = System.nanoTime();
+            boolean unavailable = false;
+            try {
+                transaction = transactionProducer.beginTransaction();
+                sendResult = toSendResult(transactionProducer.send(message, transaction));
+            } catch (ClientException | RuntimeException e) {
+                unavailable = RocketMQUtils.isUnavailable(e);
+                throw e;
+            } finally {
+                long durationNanos = System.nanoTime() - sendStart;
+                if (index >= 0) {
+                    producerPool.release(index, durationNanos, !unavailable);
+                }
+                if (circuitBreaker != null) {
+                    recordOutcome(circuitBreaker, unavailable, durationNanos);
+                }
+            }
+        } catch (Exception e) {
+            afterError(message, e, start, false);
+            if (e instanceof CircuitBreakerOpenException || e instanceof RateLimitedException) {
+                throw (MessageException) e;
             }
-            messageBuilder.setDeliveryTimestamp(deliveryTime);
+            log.error("send transactional message failed. request = {}", request, e);
+            throw new MessageException(e.getMessage(), e);
         }
-        return messageBuilder.build();
+        afterReceipt(message, sendResult, start, false);
+        TransactionResolution resolution;
+        try {
+            resolution = executor.execute(sendResult);
+        } catch (Exception e) {
+            endTransaction(transaction, TransactionResolution.ROLLBACK, sendResult);
+            throw new MessageException("Local transaction failed, msgId = " + sendResult.getMsgId(), e);
+        }
+        endTransaction(transaction, resolution, sendResult);
+        return new TransactionSendResult(sendResult, resolution);
     }
 
-    // endregion
-
-    @Override
-    public void destroy() {
-        if (Objects.nonNull(producer)) {
-            try {
-                producer.close();
-            } catch (IOException e) {
-                log.warn("Destroy Producer occupy exception", e);
-                // ignore
+    /**
+     * 结束事务，失败时只记录日志，由服务端回查确定
+     *
+     * @param transaction 事务
+     * @param resolution  本地事务的结果
+     * @param sendResult  半消息的发送结果
+     */
+    private void endTransaction(Transaction transaction, TransactionResolution resolution, SendResult sendResult) {
+        try {
+            if (resolution == TransactionResolution.COMMIT) {
+                transaction.commit();
+            } else if (resolution == TransactionResolution.ROLLBACK) {
+                transaction.rollback();
             }
+        } catch (ClientException e) {
+            log.warn("End transaction failed, resolution = {} ,msgId = {} ,transactionId = {}, wait for check",
+                    resolution, sendResult.getMsgId(), sendResult.getTransactionId(), e);
         }
-        if (Objects.nonNull(asyncSendThreadPoolTaskExecutor)) {
-            asyncSendThreadPoolTaskExecutor.destroy();
+    }
+
+    // endregion
+
+    // region 异步发送消息（CompletableFuture）
+
+    /**
+     * 异步发送消息，发送到默认普通主题{@linkplain #defaultNormalTopic}上
+     *
+     * @param tag  消息的标签
+     * @param body 消息内容
+     * @return 发送结果
+     */
+    public CompletableFuture<SendResult> sendAsync(String tag, @NotNull Object body) {
+        return sendAsync(defaultNormalTopic, tag, body);
+    }
+
+    /**
+     * 异步发送消息，发送到指定主题上
+     *
+     * @param topic 主题
+     * @param tag   消息的标签
+     * @param body  消息内容
+     * @return 发送结果
+     */
+    public CompletableFuture<SendResult> sendAsync(@NotNull String topic, String tag, @NotNull Object body) {
+        return sendAsync(topic, tag, body, null, null);
+    }
+
+    /**
+     * 异步发送消息，发送到指定主题上
+     *
+     * @param topic      主题
+     * @param tag        消息的标签
+     * @param body       消息内容
+     * @param properties 自定义属性
+     * @param keys       消息标识
+     * @return 发送结果，完成方式由{@linkplain #asyncCompletionMode}决定
+     */
+    public CompletableFuture<SendResult> sendAsync(@NotNull String topic, String tag, @NotNull Object body,
+                                                   @Nullable Map<String, String> properties, @Nullable Collection<String> keys) {
+        return complete(doAsyncSend(SendRequest.of(topic, tag, body).properties(properties).keys(keys)));
+    }
+
+    /**
+     * 异步发送定时消息，发送到指定主题上
+     *
+     * @param topic        主题
+     * @param tag          消息的标签
+     * @param body         消息内容
+     * @param properties   自定义属性
+     * @param keys         消息标识
+     * @param deliveryTime 分发的时间，单位毫秒
+     * @return 发送结果，完成方式由{@linkplain #asyncCompletionMode}决定
+     */
+    public CompletableFuture<SendResult> sendScheduleAsync(@NotNull String topic, String tag, @NotNull Object body,
+                                                           @Nullable Map<String, String> properties,
+                                                           @Nullable Collection<String> keys, long deliveryTime) {
+        return complete(doAsyncSend(SendRequest.of(topic, tag, body).properties(properties).keys(keys)
+                .deliveryTimestamp(deliveryTime)));
+    }
+
+    /**
+     * 异步发送延迟消息，发送到指定主题上
+     *
+     * @param topic      主题
+     * @param tag        消息的标签
+     * @param body       消息内容
+     * @param properties 自定义属性
+     * @param keys       消息标识
+     * @param duration   延迟时长，最大为24小时
+     * @return 发送结果，完成方式由{@linkplain #asyncCompletionMode}决定
+     */
+    public CompletableFuture<SendResult> sendDelayAsync(@NotNull String topic, String tag, @NotNull Object body,
+                                                        @Nullable Map<String, String> properties,
+                                                        @Nullable Collection<String> keys, @NotNull Duration duration) {
+        return sendScheduleAsync(topic, tag, body, properties, keys, System.currentTimeMillis() + duration.toMillis());
+    }
+
+    // endregion
+
+    // region 批量发送消息
+
+    /**
+     * 批量同步发送消息，发送到默认普通主题{@linkplain #defaultNormalTopic}上
+     *
+     * @param tag    消息标签
+     * @param bodies 消息内容列表
+     * @return 与消息内容顺序一致的发送结果
+     * @throws BatchSendException 部分消息发送失败，异常中带有每条消息各自的结果
+     */
+    public List<SendResult> sendBatch(String tag, @NotNull Collection<?> bodies) {
+        return sendBatch(defaultNormalTopic, tag, bodies);
+    }
+
+    /**
+     * 批量同步发送消息，发送到指定主题上。所有消息先连续异步提交，再统一等待结果，避免逐条等待网络往返
+     *
+     * @param topic  主题
+     * @param tag    消息标签
+     * @param bodies 消息内容列表
+     * @return 与消息内容顺序一致的发送结果
+     * @throws BatchSendException 部分消息发送失败，异常中带有每条消息各自的结果，已成功的消息不需要重发
+     */
+    public List<SendResult> sendBatch(@NotNull String topic, String tag, @NotNull Collection<?> bodies) {
+        List<CompletableFuture<SendResult>> futures = new ArrayList<>(bodies.size());
+        SendRequest request = new SendRequest();
+        for (Object body : bodies) {
+            futures.add(doAsyncSend(request.reset().topic(topic).tag(tag).body(body)));
+        }
+        List<SendResult> sendResults = new ArrayList<>(futures.size());
+        List<Throwable> causes = new ArrayList<>(futures.size());
+        Throwable firstCause = null;
+        int failed = 0;
+        for (CompletableFuture<SendResult> future : futures) {
+            try {
+                sendResults.add(future.join());
+                causes.add(null);
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = unwrap(e);
+                sendResults.add(null);
+                causes.add(cause);
+                failed++;
+                if (firstCause == null) {
+                    firstCause = cause;
+                }
+            }
+        }
+        if (failed > 0) {
+            log.error("send batch message failed. topic = {} ,tag = {} ,size = {} ,failed = {}", topic, tag,
+                    bodies.size(), failed, firstCause);
+            throw new BatchSendException(topic, sendResults, causes, failed, firstCause);
+        }
+        return sendResults;
+    }
+
+    /**
+     * 打包发送消息：序列化后的消息体进入{@linkplain #messagePacker}，同一主题和标签的多条消息打包成一条物理消息发送，
+     * 消费者解包后逐条交给监听器。未配置打包器时直接异步发送
+     * <p>
+     * 逻辑消息不单独构建，不经过{@linkplain SendInterceptor}；指标按逻辑消息记录序列化，按物理消息记录发送结果
+     * </p>
+     *
+     * @param topic 主题
+     * @param tag   消息标签
+     * @param body  消息内容
+     * @return 所在物理消息的发送结果
+     * @see MessagePacker
+     */
+    public CompletableFuture<SendResult> packedSend(@NotNull String topic, String tag, @NotNull Object body) {
+        if (messagePacker == null) {
+            return doAsyncSend(SendRequest.of(topic, tag, body));
+        }
+        SendMetrics metrics = sendMetrics;
+        long start = System.nanoTime();
+        byte[] frame;
+        try {
+            frame = getRocketMQMessageSerializer().serialize(body);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        if (metrics != null) {
+            metrics.recordSerialization(topic, System.nanoTime() - start, frame.length);
+        }
+        return messagePacker.append(topic, tag, frame);
+    }
+
+    /**
+     * 压缩发送消息，发送到默认普通主题{@linkplain #defaultNormalTopic}上
+     *
+     * @param tag  消息标签
+     * @param body 消息内容
+     * @param key  消息标识，窗口内相同标识的消息只发送最新的一条
+     * @return 最终发送的消息的发送结果
+     * @see MessageCompactor
+     */
+    public CompletableFuture<SendResult> compactingSend(String tag, @NotNull Object body, @NotNull String key) {
+        return compactingSend(defaultNormalTopic, tag, body, key);
+    }
+
+    /**
+     * 压缩发送消息：消息先进入{@linkplain #messageCompactor}，窗口内相同主题、标签和标识的消息只发送最新的一条，
+     * 被覆盖的消息返回最终发送的那条消息的结果。未配置压缩器时直接异步发送
+     *
+     * @param topic 主题
+     * @param tag   消息标签
+     * @param body  消息内容
+     * @param key   消息标识，窗口内相同标识的消息只发送最新的一条
+     * @return 最终发送的消息的发送结果
+     * @see MessageCompactor
+     */
+    public CompletableFuture<SendResult> compactingSend(@NotNull String topic, String tag, @NotNull Object body,
+                                                        @NotNull String key) {
+        long start = isObserved() ? System.nanoTime() : 0L;
+        Message message;
+        try {
+            message = createRocketMQMessage(SendRequest.of(topic, tag, body).key(key));
+        } catch (RuntimeException e) {
+            if (isObserved()) {
+                afterError(null, e, start, true);
+            }
+            return failed(e);
+        }
+        if (isObserved()) {
+            return observe(message, start, () -> messageCompactor == null
+                    ? doAsyncSend(message) : messageCompactor.append(message, key));
+        }
+        if (messageCompactor == null) {
+            return doAsyncSend(message);
+        }
+        return messageCompactor.append(message, key);
+    }
+
+    // endregion
+
+    // region 拦截器
+
+    /**
+     * 设置发送拦截器，按{@linkplain org.springframework.core.Ordered}排序后固定为数组。应在发送消息前设置
+     *
+     * @param sendInterceptors 发送拦截器
+     */
+    public void setSendInterceptors(@Nullable Collection<? extends SendInterceptor> sendInterceptors) {
+        if (sendInterceptors == null || sendInterceptors.isEmpty()) {
+            this.sendInterceptors = new SendInterceptor[0];
+            return;
+        }
+        SendInterceptor[] interceptors = sendInterceptors.toArray(new SendInterceptor[0]);
+        AnnotationAwareOrderComparator.sort(interceptors);
+        this.sendInterceptors = interceptors;
+    }
+
+    // endregion
+
+    // region 预热
+
+    /**
+     * 预热消息的发送路径：对每个预绑定的主题重复构建消息，使序列化器和消息构建的代码在正式请求前完成类加载和JIT编译。
+     * 主题路由和连接在生产者构建时通过预绑定主题已完成。预热的消息不经过发送拦截器，也不计入指标
+     *
+     * @param topics     预绑定的主题
+     * @param iterations 每个主题构建消息的次数
+     */
+    public void warmUp(@NotNull Collection<String> topics, int iterations) {
+        long start = System.nanoTime();
+        Map<String, Object> body = new HashMap<>(4);
+        body.put("warmUp", Boolean.TRUE);
+        body.put("timestamp", System.currentTimeMillis());
+        SendRequest request = new SendRequest();
+        for (String topic : topics) {
+            for (int i = 0; i < iterations; i++) {
+                createRocketMQMessage(request.reset().topic(topic).tag("warm-up").body(body), new SendInterceptor[0], null);
+            }
+        }
+        log.info("RocketMQTemplate warm up finished, topics = {} ,iterations = {} ,cost = {}ms", topics, iterations,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // endregion
+
+    // region 发消息的核心逻辑
+
+    /**
+     * 发送消息
+     *
+     * @param topic        自定义的主题
+     * @param tag          标签
+     * @param body         消息内容
+     * @param properties   自定义的属性
+     * @param keys         消息标识
+     * @param deliveryTime 分发时间
+     * @return 发送结果
+     */
+    private SendResult doSyncSend(String topic, String tag, Object body, Map<String, String> properties,
+                                  Collection<String> keys, Long deliveryTime) {
+        return doSyncSend(SendRequest.of(topic, tag, body).properties(properties).keys(keys)
+                .deliveryTimestamp(deliveryTime == null ? 0 : deliveryTime));
+    }
+
+    /**
+     * 同步发送消息，所有同步发送的入口
+     *
+     * @param request 发送请求
+     * @return 发送结果
+     */
+    private SendResult doSyncSend(SendRequest request) {
+        long start = isObserved() ? System.nanoTime() : 0L;
+        Message message = null;
+        SendResult sendResult;
+        try {
+            long deadline = SendDeadline.earlier(request.getDeadlineNanos(), SendDeadline.current());
+            message = createRocketMQMessage(request);
+            // 日志中还有未发送的消息时直接写入日志，保证发送顺序，也避免每次请求都等待超时
+            if (messageSpool != null && !messageSpool.isEmpty()) {
+                sendResult = spool(message);
+            } else if (deadline != 0L) {
+                sendResult = doSyncSendBefore(message, deadline);
+            } else {
+                sendResult = doSyncSendGuarded(message);
+            }
+        } catch (Exception e) {
+            if (message == null || messageSpool == null || !isUnavailable(e)) {
+                afterError(message, e, start, false);
+                if (e instanceof CircuitBreakerOpenException || e instanceof RateLimitedException
+                        || e instanceof SendDeadlineExceededException) {
+                    // 熔断、限流和超过截止时间由调用方处理，不逐条记录日志
+                    throw (MessageException) e;
+                }
+                log.error("send request message failed. request = {}", request, e);
+                throw new MessageException(e.getMessage(), e);
+            }
+            log.warn("send request message failed, write to spool. request = {}", request, e);
+            sendResult = spool(message);
+        }
+        afterReceipt(message, sendResult, start, false);
+        return sendResult;
+    }
+
+    /**
+     * 同步发送已创建的消息，先经过{@linkplain #rateLimiterRegistry}限流和{@linkplain #circuitBreakerRegistry}熔断，
+     * 服务端不可用时按{@linkplain #retryPolicy}重试，重试不再限流
+     *
+     * @param message 消息
+     * @return 发送结果
+     * @throws ClientException 客户端异常
+     */
+    private SendResult doSyncSendGuarded(Message message) throws ClientException {
+        acquireRateLimit(message);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry == null ? null : circuitBreakerRegistry.get(message.getTopic());
+        if (retryPolicy != null) {
+            retryPolicy.onRequest();
+        }
+        for (int attempt = 1; ; attempt++) {
+            if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                throw new CircuitBreakerOpenException(message.getTopic());
+            }
+            long start = System.nanoTime();
+            try {
+                SendResult sendResult = doSyncSendDirect(message);
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess(System.nanoTime() - start);
+                }
+                return sendResult;
+            } catch (ClientException | RuntimeException e) {
+                boolean unavailable = RocketMQUtils.isUnavailable(e);
+                if (circuitBreaker != null) {
+                    recordOutcome(circuitBreaker, unavailable, System.nanoTime() - start);
+                }
+                if (!unavailable || retryPolicy == null || !retryPolicy.tryRetry(attempt)) {
+                    throw e;
+                }
+                sleep(retryPolicy.backoffMs(attempt));
+            }
+        }
+    }
+
+    /**
+     * 在截止时间前同步发送已创建的消息：走异步发送的路径，调用线程只等待剩余的时间，
+     * 不会因为生产者的请求超时时间较长而一直阻塞。超时后不取消发送，消息仍可能成功
+     *
+     * @param message       消息
+     * @param deadlineNanos 基于{@linkplain System#nanoTime()}的截止时间
+     * @return 发送结果
+     * @throws ClientException 客户端异常
+     */
+    private SendResult doSyncSendBefore(Message message, long deadlineNanos) throws ClientException {
+        if (deadlineNanos - System.nanoTime() <= 0) {
+            throw new SendDeadlineExceededException(message.getTopic());
+        }
+        CompletableFuture<SendResult> future = doAsyncSendGuarded(message, deadlineNanos - System.nanoTime());
+        try {
+            return future.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new SendDeadlineExceededException(message.getTopic());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException("Interrupted while waiting for send result", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * 同步发送已创建的消息，超过{@linkplain #maxBodySize}时拆分为分片逐个发送，返回最后一个分片的发送结果
+     *
+     * @param message 消息
+     * @return 发送结果
+     * @throws ClientException 客户端异常
+     */
+    private SendResult doSyncSendDirect(Message message) throws ClientException {
+        if (!needChunk(message)) {
+            if (hedgedSender != null && hedgedSender.accept(message)) {
+                return awaitHedged(hedgedSender.send(message, () -> doAsyncSendSingle(message),
+                        () -> doAsyncSendSecondary(message)));
+            }
+            return toSendResult(producerSend(message));
+        }
+        SendReceipt sendReceipt = null;
+        for (Message chunk : MessageChunking.split(message, maxBodySize, chunkUseMessageGroup)) {
+            sendReceipt = producerSend(chunk);
+        }
+        return toSendResult(sendReceipt);
+    }
+
+    /**
+     * 异步发送消息
+     *
+     * @param topic        主题
+     * @param tag          标签
+     * @param body         消息内容
+     * @param properties   自定义属性
+     * @param keys         消息标识
+     * @param sendCallback {@link SendCallback}
+     */
+    private void doAsyncSend(String topic, String tag, Object body, Map<String, String> properties,
+                             Collection<String> keys, Long deliveryTime, SendCallback sendCallback) {
+        doAsyncSend(SendRequest.of(topic, tag, body).properties(properties).keys(keys)
+                .deliveryTimestamp(deliveryTime == null ? 0 : deliveryTime), sendCallback);
+    }
+
+    /**
+     * 异步发送消息，回调在{@linkplain #callbackExecutor()}上执行
+     *
+     * @param request      发送请求
+     * @param sendCallback {@link SendCallback}
+     */
+    private void doAsyncSend(SendRequest request, SendCallback sendCallback) {
+        CompletableFuture<SendResult> completableFuture = doAsyncSend(request);
+        if (sendCallback != null) {
+            completableFuture.whenComplete((sendResult, throwable) -> dispatchCallback(sendCallback, sendResult, throwable));
+        }
+    }
+
+    /**
+     * 在{@linkplain #callbackExecutor()}上执行回调。执行器饱和拒绝时改在{@linkplain ForkJoinPool#commonPool()}上执行，
+     * 回调总会收到发送的结果，也不会在客户端的回调线程上阻塞其他在途发送的回执处理
+     *
+     * @param sendCallback 回调
+     * @param sendResult   发送结果
+     * @param throwable    发送异常
+     */
+    private void dispatchCallback(SendCallback sendCallback, SendResult sendResult, Throwable throwable) {
+        Runnable task = () -> {
+            if (throwable != null) {
+                sendCallback.onException(unwrap(throwable));
+            } else {
+                sendCallback.onSuccess(sendResult);
+            }
+        };
+        Executor executor = callbackExecutor();
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Async send callback rejected by saturated executor, run on common pool");
+            ForkJoinPool.commonPool().execute(task);
+        }
+    }
+
+    /**
+     * 异步发送消息，所有异步发送的入口。序列化、拦截器等创建消息时的异常同样以失败的结果返回，不直接抛出
+     *
+     * @param request 发送请求
+     * @return 在客户端回调线程上完成的发送结果
+     */
+    private CompletableFuture<SendResult> doAsyncSend(SendRequest request) {
+        long start = isObserved() ? System.nanoTime() : 0L;
+        Message message;
+        try {
+            message = createRocketMQMessage(request);
+            if (!isObserved()) {
+                return doAsyncSend(message);
+            }
+        } catch (RuntimeException e) {
+            if (isObserved()) {
+                afterError(null, e, start, true);
+            }
+            return failed(e);
+        }
+        return observe(message, start, () -> doAsyncSend(message));
+    }
+
+    /**
+     * @param throwable 异常
+     * @param <T>       结果的类型
+     * @return 以异常完成的结果
+     */
+    private static <T> CompletableFuture<T> failed(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * 单向发送已创建的消息，经过限流和熔断但不重试，失败只计数。
+     * 没有熔断、在途限制和分片时直接使用生产者的回执，只挂一个共享的完成处理
+     *
+     * @param message 消息
+     */
+    private void doOnewaySend(Message message) {
+        try {
+            acquireRateLimit(message);
+        } catch (MessageException e) {
+            onewayRejections.increment();
+            return;
+        }
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry == null ? null : circuitBreakerRegistry.get(message.getTopic());
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            onewayRejections.increment();
+            return;
+        }
+        try {
+            if (circuitBreaker == null && inFlightLimiter == null && !needChunk(message)) {
+                producerSendAsync(message).whenComplete(onewayCompletion);
+                return;
+            }
+            long start = System.nanoTime();
+            CompletableFuture<SendResult> future = doAsyncSendDirect(message);
+            if (circuitBreaker != null) {
+                future.whenComplete((sendResult, throwable) -> recordOutcome(circuitBreaker,
+                        throwable != null && RocketMQUtils.isUnavailable(throwable), System.nanoTime() - start));
+            }
+            future.whenComplete(onewayCompletion);
+        } catch (RuntimeException e) {
+            onewayFailures.increment();
+        }
+    }
+
+    /**
+     * 是否配置了拦截器或指标，都没有时发送路径上不计时
+     *
+     * @return 需要观测发送结果时返回{@code true}
+     */
+    private boolean isObserved() {
+        return sendInterceptors.length != 0 || sendMetrics != null;
+    }
+
+    /**
+     * 异步发送已创建的消息，完成后记录指标并调用拦截器
+     *
+     * @param message 消息
+     * @param start   创建消息的开始时间，单位纳秒
+     * @param sender  发送消息
+     * @return 发送结果
+     */
+    private CompletableFuture<SendResult> observe(Message message, long start,
+                                                  Supplier<CompletableFuture<SendResult>> sender) {
+        CompletableFuture<SendResult> future;
+        try {
+            future = sender.get();
+        } catch (RuntimeException e) {
+            afterError(message, e, start, true);
+            throw e;
+        }
+        return future.whenComplete((sendResult, throwable) -> {
+            if (throwable == null) {
+                afterReceipt(message, sendResult, start, true);
+            } else {
+                afterError(message, unwrap(throwable), start, true);
+            }
+        });
+    }
+
+    /**
+     * 发送成功后记录指标，再依次调用拦截器
+     *
+     * @param message    消息
+     * @param sendResult 发送结果
+     * @param start      创建消息的开始时间，单位纳秒
+     * @param async      是否异步发送
+     */
+    private void afterReceipt(Message message, SendResult sendResult, long start, boolean async) {
+        if (!isObserved()) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        if (sendMetrics != null) {
+            sendMetrics.recordSend(message.getTopic(), message.getTag().orElse(null), async, duration, sendResult, null);
+        }
+        for (SendInterceptor sendInterceptor : sendInterceptors) {
+            try {
+                sendInterceptor.onReceipt(message, sendResult, duration);
+            } catch (RuntimeException e) {
+                log.warn("SendInterceptor {} onReceipt failed", sendInterceptor, e);
+            }
+        }
+    }
+
+    /**
+     * 发送失败后记录指标，再依次调用拦截器。创建消息失败时没有主题，不记录指标
+     *
+     * @param message   消息，创建消息失败时为{@code null}
+     * @param throwable 异常
+     * @param start     创建消息的开始时间，单位纳秒
+     * @param async     是否异步发送
+     */
+    private void afterError(Message message, Throwable throwable, long start, boolean async) {
+        if (!isObserved()) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        if (sendMetrics != null && message != null) {
+            sendMetrics.recordSend(message.getTopic(), message.getTag().orElse(null), async, duration, null, throwable);
+        }
+        for (SendInterceptor sendInterceptor : sendInterceptors) {
+            try {
+                sendInterceptor.onError(message, throwable, duration);
+            } catch (RuntimeException e) {
+                log.warn("SendInterceptor {} onError failed", sendInterceptor, e);
+            }
+        }
+    }
+
+    /**
+     * 异步发送已创建的消息，配置了{@linkplain #retryPolicy}或{@linkplain #messageSpool}时记录在途的发送数，供关闭时等待
+     *
+     * @param message 消息
+     * @return 发送结果
+     */
+    CompletableFuture<SendResult> doAsyncSend(Message message) {
+        if (retryPolicy == null && messageSpool == null) {
+            return doAsyncSendGuarded(message);
+        }
+        pendingAsyncSends.incrementAndGet();
+        CompletableFuture<SendResult> future;
+        try {
+            future = doAsyncSendSpooled(message);
+        } catch (RuntimeException e) {
+            pendingAsyncSends.decrementAndGet();
+            throw e;
+        }
+        return future.whenComplete((sendResult, throwable) -> pendingAsyncSends.decrementAndGet());
+    }
+
+    /**
+     * 异步发送已创建的消息，配置了{@linkplain #messageSpool}时服务端不可用的消息写入日志
+     *
+     * @param message 消息
+     * @return 发送结果
+     */
+    private CompletableFuture<SendResult> doAsyncSendSpooled(Message message) {
+        if (messageSpool == null) {
+            return doAsyncSendGuarded(message);
+        }
+        CompletableFuture<SendResult> future = new CompletableFuture<>();
+        if (!messageSpool.isEmpty()) {
+            completeWithSpool(future, message);
+            return future;
+        }
+        doAsyncSendGuarded(message).whenComplete((sendResult, throwable) -> {
+            if (throwable == null) {
+                future.complete(sendResult);
+            } else if (isUnavailable(throwable)) {
+                log.warn("async send message failed, write to spool. topic = {}", message.getTopic(), throwable);
+                completeWithSpool(future, message);
+            } else {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 异步发送已创建的消息，先经过{@linkplain #rateLimiterRegistry}限流和{@linkplain #circuitBreakerRegistry}熔断，
+     * 服务端不可用时按{@linkplain #retryPolicy}延迟重试，重试不再限流
+     *
+     * @param message 消息
+     * @return 发送结果
+     */
+    private CompletableFuture<SendResult> doAsyncSendGuarded(Message message) {
+        return doAsyncSendGuarded(message, Long.MAX_VALUE);
+    }
+
+    /**
+     * 异步发送已创建的消息，限流的等待时间不超过{@code maxWaitNanos}
+     *
+     * @param message      消息
+     * @param maxWaitNanos 限流最长的等待时间，单位纳秒
+     * @return 发送结果
+     */
+    private CompletableFuture<SendResult> doAsyncSendGuarded(Message message, long maxWaitNanos) {
+        try {
+            acquireRateLimit(message, maxWaitNanos);
+        } catch (MessageException e) {
+            CompletableFuture<SendResult> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (circuitBreakerRegistry == null && retryPolicy == null) {
+            return doAsyncSendDirect(message);
+        }
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry == null ? null : circuitBreakerRegistry.get(message.getTopic());
+        if (retryPolicy != null) {
+            retryPolicy.onRequest();
+        }
+        CompletableFuture<SendResult> future = new CompletableFuture<>();
+        attemptAsyncSend(message, circuitBreaker, 1, future);
+        return future;
+    }
+
+    /**
+     * 异步发送的一次尝试
+     *
+     * @param message        消息
+     * @param circuitBreaker 主题的熔断器
+     * @param attempt        尝试的次数，从1开始
+     * @param future         最终的发送结果
+     */
+    private void attemptAsyncSend(Message message, CircuitBreaker circuitBreaker, int attempt,
+                                  CompletableFuture<SendResult> future) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            future.completeExceptionally(new CircuitBreakerOpenException(message.getTopic()));
+            return;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<SendResult> attemptFuture;
+        try {
+            attemptFuture = doAsyncSendDirect(message);
+        } catch (RuntimeException e) {
+            attemptFuture = new CompletableFuture<>();
+            attemptFuture.completeExceptionally(e);
+        }
+        attemptFuture.whenComplete((sendResult, throwable) -> {
+            if (throwable == null) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess(System.nanoTime() - start);
+                }
+                future.complete(sendResult);
+                return;
+            }
+            boolean unavailable = RocketMQUtils.isUnavailable(throwable);
+            if (circuitBreaker != null) {
+                recordOutcome(circuitBreaker, unavailable, System.nanoTime() - start);
+            }
+            if (unavailable && retryPolicy != null && retryPolicy.tryRetry(attempt)) {
+                try {
+                    retryPolicy.schedule(() -> attemptAsyncSend(message, circuitBreaker, attempt + 1, future),
+                            retryPolicy.backoffMs(attempt));
+                } catch (RejectedExecutionException e) {
+                    // 关闭后不再重试
+                    future.completeExceptionally(throwable);
+                }
+            } else {
+                future.completeExceptionally(throwable);
+            }
+        });
+    }
+
+    /**
+     * 获取消息所在主题和标签的发送许可，{@linkplain RateLimitPolicy#BLOCK}策略在调用线程上等待
+     *
+     * @param message 消息
+     * @throws RateLimitedException 按策略未能获取许可
+     */
+    private void acquireRateLimit(Message message) {
+        acquireRateLimit(message, Long.MAX_VALUE);
+    }
+
+    /**
+     * 获取消息所在主题和标签的发送许可，等待时间不超过配置的等待时间和{@code maxWaitNanos}中较短的一个
+     *
+     * @param message      消息
+     * @param maxWaitNanos 最长的等待时间，单位纳秒
+     * @throws RateLimitedException 按策略未能获取许可
+     */
+    private void acquireRateLimit(Message message, long maxWaitNanos) {
+        if (rateLimiterRegistry != null) {
+            rateLimiterRegistry.acquire(message.getTopic(), message.getTag().orElse(null), maxWaitNanos);
+        }
+    }
+
+    /**
+     * 记录调用的结果，请求本身有误的失败说明服务端可用，按成功记录
+     *
+     * @param circuitBreaker 熔断器
+     * @param unavailable    是否因服务端不可用失败
+     * @param durationNanos  调用的耗时，单位纳秒
+     */
+    private static void recordOutcome(CircuitBreaker circuitBreaker, boolean unavailable, long durationNanos) {
+        if (unavailable) {
+            circuitBreaker.onError(durationNanos);
+        } else {
+            circuitBreaker.onSuccess(durationNanos);
+        }
+    }
+
+    /**
+     * 发送失败是否由服务端不可用或熔断引起
+     *
+     * @param e 异常
+     * @return 服务端不可用时返回{@code true}
+     */
+    private static boolean isUnavailable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof CircuitBreakerOpenException) {
+                return true;
+            }
+        }
+        return RocketMQUtils.isUnavailable(e);
+    }
+
+    /**
+     * 重试前的退避
+     *
+     * @param millis 退避时间，单位毫秒
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    /**
+     * 异步发送已创建的消息，超过{@linkplain #maxBodySize}时拆分为分片逐个发送，返回最后一个分片的发送结果。
+     * 后续分片在{@linkplain #callbackExecutor()}上发送：{@linkplain #inFlightLimiter}的许可在客户端的回调线程上释放，
+     * 在回调线程上等待许可会使所有回调线程互相等待
+     *
+     * @param message 消息
+     * @return 发送结果
+     */
+    CompletableFuture<SendResult> doAsyncSendDirect(Message message) {
+        if (!needChunk(message)) {
+            if (hedgedSender != null && hedgedSender.accept(message)) {
+                return hedgedSender.send(message, () -> doAsyncSendSingle(message),
+                        () -> doAsyncSendSecondary(message));
+            }
+            return doAsyncSendSingle(message);
+        }
+        List<Message> chunks = MessageChunking.split(message, maxBodySize, chunkUseMessageGroup);
+        CompletableFuture<SendResult> future = doAsyncSendSingle(chunks.get(0));
+        Executor executor = callbackExecutor();
+        for (int i = 1; i < chunks.size(); i++) {
+            Message chunk = chunks.get(i);
+            future = executor == null ? future.thenComposeAsync(sendResult -> doAsyncSendSingle(chunk))
+                    : future.thenComposeAsync(sendResult -> doAsyncSendSingle(chunk), executor);
+        }
+        return future;
+    }
+
+    /**
+     * 等待对冲发送的结果，发送超时由生产者的请求超时时间保证
+     *
+     * @param future 对冲发送的结果
+     * @return 发送结果
+     * @throws ClientException 客户端异常
+     */
+    private static SendResult awaitHedged(CompletableFuture<SendResult> future) throws ClientException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException("Interrupted while waiting for hedged send", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * 去掉{@linkplain CompletableFuture}依赖阶段包装的{@linkplain CompletionException}，还原发送时的原始异常
+     *
+     * @param throwable 异常
+     * @return 原始异常
+     */
+    static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    /**
+     * 还原异步发送的异常
+     *
+     * @param e 等待异步发送结果时的异常
+     * @return 运行时异常，由调用方抛出
+     * @throws ClientException 异步发送的客户端异常
+     */
+    private static RuntimeException unwrap(ExecutionException e) throws ClientException {
+        Throwable cause = e.getCause();
+        if (cause instanceof ClientException) {
+            throw (ClientException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new MessageException(cause.getMessage(), cause);
+    }
+
+    /**
+     * 异步发送单条消息，受{@linkplain #inFlightLimiter}限制
+     *
+     * @param message 消息
+     * @return 发送结果
+     */
+    private CompletableFuture<SendResult> doAsyncSendSingle(Message message) {
+        if (inFlightLimiter == null) {
+            return producerSendAsync(message).thenApply(RocketMQTemplate::toSendResult);
+        }
+        int size = message.getBody().remaining();
+        try {
+            inFlightLimiter.acquire(size);
+        } catch (MessageException e) {
+            CompletableFuture<SendResult> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        CompletableFuture<SendResult> future;
+        try {
+            future = producerSendAsync(message).thenApply(RocketMQTemplate::toSendResult);
+        } catch (RuntimeException e) {
+            inFlightLimiter.release(size);
+            throw e;
+        }
+        future.whenComplete((sendResult, throwable) -> inFlightLimiter.release(size));
+        return future;
+    }
+
+    /**
+     * 对冲发往备集群，同样受{@linkplain #rateLimiterRegistry}和{@linkplain #inFlightLimiter}限制。
+     * 在对冲的调度线程或客户端的回调线程上调用，不等待许可，没有许可时以{@linkplain RateLimitedException}或
+     * {@linkplain MessageException}失败，放弃本次对冲
+     *
+     * @param message 消息
+     * @return 备集群的发送结果
+     */
+    private CompletableFuture<SendResult> doAsyncSendSecondary(Message message) {
+        CompletableFuture<SendResult> future;
+        int size = message.getBody().remaining();
+        try {
+            acquireRateLimit(message, 0L);
+            if (inFlightLimiter != null && !inFlightLimiter.tryAcquire(size)) {
+                throw new MessageException("Too many in-flight messages, skip hedge to secondary");
+            }
+        } catch (MessageException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        try {
+            future = hedgedSender.getSecondary().sendAsync(message).thenApply(RocketMQTemplate::toSendResult);
+        } catch (RuntimeException e) {
+            if (inFlightLimiter != null) {
+                inFlightLimiter.release(size);
+            }
+            throw e;
+        }
+        if (inFlightLimiter != null) {
+            future.whenComplete((sendResult, throwable) -> inFlightLimiter.release(size));
+        }
+        return future;
+    }
+
+    /**
+     * 同步发送消息，配置了生产者池时使用池中的生产者，并把耗时和结果反馈给生产者池
+     *
+     * @param message 消息
+     * @return 发送回执
+     * @throws ClientException 客户端异常
+     */
+    private SendReceipt producerSend(Message message) throws ClientException {
+        if (producerPool == null) {
+            return producer.send(message);
+        }
+        int index = producerPool.select(message.getTopic());
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            SendReceipt sendReceipt = producerPool.get(index).send(message);
+            success = true;
+            return sendReceipt;
+        } catch (ClientException | RuntimeException e) {
+            success = !RocketMQUtils.isUnavailable(e);
+            throw e;
+        } finally {
+            producerPool.release(index, System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * 异步发送消息，配置了生产者池时使用池中的生产者，并把耗时和结果反馈给生产者池
+     *
+     * @param message 消息
+     * @return 发送回执
+     */
+    private CompletableFuture<SendReceipt> producerSendAsync(Message message) {
+        if (producerPool == null) {
+            return producer.sendAsync(message);
+        }
+        int index = producerPool.select(message.getTopic());
+        long start = System.nanoTime();
+        CompletableFuture<SendReceipt> future;
+        try {
+            future = producerPool.get(index).sendAsync(message);
+        } catch (RuntimeException e) {
+            producerPool.release(index, System.nanoTime() - start, !RocketMQUtils.isUnavailable(e));
+            throw e;
+        }
+        future.whenComplete((sendReceipt, throwable) -> producerPool.release(index, System.nanoTime() - start,
+                throwable == null || !RocketMQUtils.isUnavailable(throwable)));
+        return future;
+    }
+
+    /**
+     * 写入本地预写日志
+     *
+     * @param message 消息
+     * @return 写入日志的发送结果
+     */
+    private SendResult spool(Message message) {
+        messageSpool.append(message);
+        return SendResult.spooled();
+    }
+
+    /**
+     * 写入本地预写日志并完成异步发送的结果
+     *
+     * @param future  异步发送的结果
+     * @param message 消息
+     */
+    private void completeWithSpool(CompletableFuture<SendResult> future, Message message) {
+        try {
+            future.complete(spool(message));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 消息体是否超过{@linkplain #maxBodySize}需要分片
+     *
+     * @param message 消息
+     * @return 需要分片时返回{@code true}
+     */
+    private boolean needChunk(Message message) {
+        return maxBodySize > 0 && message.getBody().remaining() > maxBodySize;
+    }
+
+    /**
+     * 按{@linkplain #asyncCompletionMode}完成异步发送的结果，执行器饱和拒绝时在当前线程上以原来的结果完成，
+     * 不会把已经成功的发送变成失败
+     *
+     * @param future 客户端回调线程上完成的结果
+     * @return 发送结果
+     */
+    private CompletableFuture<SendResult> complete(CompletableFuture<SendResult> future) {
+        Executor executor = callbackExecutor();
+        if (asyncCompletionMode != AsyncCompletionMode.EXECUTOR || executor == null) {
+            return future;
+        }
+        CompletableFuture<SendResult> completed = new CompletableFuture<>();
+        future.whenComplete((sendResult, throwable) -> {
+            Runnable task = () -> {
+                if (throwable != null) {
+                    completed.completeExceptionally(throwable);
+                } else {
+                    completed.complete(sendResult);
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        });
+        return completed;
+    }
+
+    /**
+     * @return 异步发送回调的执行器
+     */
+    private Executor callbackExecutor() {
+        return callbackExecutor != null ? callbackExecutor : asyncSendThreadPoolTaskExecutor;
+    }
+
+    /**
+     * 将发送回执转换为{@linkplain SendResult}
+     *
+     * @param sendReceipt 发送回执
+     * @return {@linkplain SendResult}
+     */
+    static SendResult toSendResult(SendReceipt sendReceipt) {
+        SendReceiptImpl sendReceiptImpl = (SendReceiptImpl) sendReceipt;
+        return new SendResult(sendReceiptImpl.getMessageId(), sendReceiptImpl.getTransactionId(),
+                sendReceiptImpl.getMessageQueue(), sendReceiptImpl.getOffset());
+    }
+
+    /**
+     * 创建消息
+     *
+     * @param request 发送请求
+     * @return {@linkplain Message}
+     */
+    private Message createRocketMQMessage(SendRequest request) {
+        return createRocketMQMessage(request, sendInterceptors, sendMetrics);
+    }
+
+    /**
+     * 创建消息
+     *
+     * @param request          发送请求
+     * @param sendInterceptors 发送拦截器，预热时为空数组
+     * @param sendMetrics      发送指标的记录器，预热时为空
+     * @return {@linkplain Message}
+     */
+    private Message createRocketMQMessage(SendRequest request, SendInterceptor[] sendInterceptors,
+                                          @Nullable SendMetrics sendMetrics) {
+        for (SendInterceptor sendInterceptor : sendInterceptors) {
+            sendInterceptor.beforeSerialize(request);
+        }
+        String topic = request.getTopic();
+        if (topic == null) {
+            topic = request.isScheduled() ? defaultDelayTopic : defaultNormalTopic;
+        }
+        long serializeStart = sendMetrics == null ? 0L : System.nanoTime();
+        byte[] body = getRocketMQMessageSerializer().serialize(request.getBody());
+        long serializationNanos = sendMetrics == null ? 0L : System.nanoTime() - serializeStart;
+        MessageBuilder messageBuilder = RocketMQUtils.getClientServiceProvider().newMessageBuilder()
+                .setTopic(topic);
+        byte[] encoded = encodeBody(topic, body, messageBuilder);
+        messageBuilder.setBody(encoded);
+        if (sendMetrics != null) {
+            sendMetrics.recordSerialization(topic, serializationNanos, encoded.length);
+        }
+        if (request.getTag() != null) {
+            messageBuilder.setTag(request.getTag());
+        }
+        Map<String, String> properties = request.getProperties();
+        if (Maps.isNotEmpty(properties)) {
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                messageBuilder.addProperty(entry.getKey(), entry.getValue());
+            }
+        }
+        if (hedgedSender != null && hedgedSender.isHedged(topic)
+                && (properties == null || !properties.containsKey(RocketMQHeaders.DEDUP_KEY))) {
+            // 主备集群上的两份消息共用去重键，调用方可以通过自定义属性指定业务上的去重键
+            messageBuilder.addProperty(RocketMQHeaders.DEDUP_KEY, UUID.randomUUID().toString());
+        }
+        if (request.getKeys().length > 0) {
+            messageBuilder.setKeys(request.getKeys());
+        }
+        if (request.getMessageGroup() != null) {
+            if (request.isScheduled()) {
+                throw new MessageException("messageGroup and deliveryTime can not be set at the same time");
+            }
+            messageBuilder.setMessageGroup(request.getMessageGroup());
+        }
+        if (request.isScheduled()) {
+            if (request.getDeliveryTimestamp() < System.currentTimeMillis()) {
+                throw new MessageException("deliveryTime must be greater than current time");
+            }
+            messageBuilder.setDeliveryTimestamp(request.getDeliveryTimestamp());
+        }
+        for (SendInterceptor sendInterceptor : sendInterceptors) {
+            sendInterceptor.beforeSend(messageBuilder, request);
+        }
+        return messageBuilder.build();
+    }
+
+    /**
+     * 创建打包消息
+     *
+     * @param topic    主题
+     * @param tag      标签
+     * @param envelope 信封的内容
+     * @param count    逻辑消息的数量
+     * @return {@linkplain Message}
+     */
+    Message createPackedMessage(String topic, String tag, byte[] envelope, int count) {
+        MessageBuilder messageBuilder = RocketMQUtils.getClientServiceProvider().newMessageBuilder()
+                .setTopic(topic)
+                .addProperty(RocketMQHeaders.PACKED, String.valueOf(count));
+        if (tag != null) {
+            messageBuilder.setTag(tag);
+        }
+        return messageBuilder.setBody(encodeBody(topic, envelope, messageBuilder)).build();
+    }
+
+    /**
+     * 异步发送打包消息，只记录发送指标，不经过{@linkplain SendInterceptor}
+     *
+     * @param message 打包消息
+     * @return 发送结果
+     */
+    CompletableFuture<SendResult> doAsyncSendPacked(Message message) {
+        SendMetrics metrics = sendMetrics;
+        if (metrics == null) {
+            return doAsyncSend(message);
+        }
+        String topic = message.getTopic();
+        String tag = message.getTag().orElse(null);
+        long start = System.nanoTime();
+        try {
+            return doAsyncSend(message).whenComplete((sendResult, throwable) -> metrics.recordSend(topic, tag, true,
+                    System.nanoTime() - start, sendResult, unwrap(throwable)));
+        } catch (RuntimeException e) {
+            metrics.recordSend(topic, tag, true, System.nanoTime() - start, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 编码消息体：先压缩，压缩后仍不小于{@linkplain #claimCheckThreshold}时写入{@linkplain #payloadStore}，
+     * 消息体替换为引用。Claim-Check优先于分片，写入外部存储的消息不会再分片
+     *
+     * @param topic          主题
+     * @param body           序列化后的消息体
+     * @param messageBuilder 消息构建器，用于记录编码的属性
+     * @return 最终的消息体
+     */
+    private byte[] encodeBody(String topic, byte[] body, MessageBuilder messageBuilder) {
+        byte[] encoded = compress(topic, body, messageBuilder);
+        if (payloadStore != null && encoded.length >= claimCheckThreshold) {
+            String reference = payloadStore.store(topic, encoded);
+            messageBuilder.addProperty(RocketMQHeaders.CLAIM_CHECK, reference);
+            return reference.getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    /**
+     * 压缩消息体：主题注册了Zstd字典时优先使用字典压缩，否则使用{@linkplain #messageCompressor}；
+     * 压缩后没有变小时使用原始内容
+     *
+     * @param topic          主题
+     * @param body           序列化后的消息体
+     * @param messageBuilder 消息构建器，用于记录压缩的属性
+     * @return 最终的消息体
+     */
+    private byte[] compress(String topic, byte[] body, MessageBuilder messageBuilder) {
+        if (zstdDictionaryRegistry != null && body.length >= dictionaryCompressionThreshold) {
+            Long dictId = zstdDictionaryRegistry.getDictId(topic);
+            if (dictId != null) {
+                byte[] compressed = zstdDictionaryRegistry.compress(topic, body);
+                if (compressed != null && compressed.length < body.length) {
+                    messageBuilder.addProperty(RocketMQHeaders.COMPRESSION, ZstdMessageCompressor.NAME);
+                    messageBuilder.addProperty(RocketMQHeaders.ZSTD_DICT_ID, String.valueOf(dictId));
+                    return compressed;
+                }
+            }
+        }
+        if (messageCompressor != null && body.length >= compressionThreshold) {
+            byte[] compressed = messageCompressor.compress(body);
+            if (compressed.length < body.length) {
+                messageBuilder.addProperty(RocketMQHeaders.COMPRESSION, messageCompressor.name());
+                return compressed;
+            }
+        }
+        return body;
+    }
+
+    // endregion
+
+    @Override
+    public void destroy() {
+        if (Objects.nonNull(messageCompactor)) {
+            messageCompactor.close();
+        }
+        if (Objects.nonNull(messagePacker)) {
+            messagePacker.close();
+        }
+        if (Objects.nonNull(spoolReplayer)) {
+            spoolReplayer.close();
+        }
+        // 缓冲的消息刚刚发出，等在途的发送完成后再关闭生产者、重试和预写日志，避免失败的发送无法重试或写入日志
+        awaitPendingAsyncSends();
+        if (Objects.nonNull(hedgedSender)) {
+            hedgedSender.close();
+        }
+        if (Objects.nonNull(producerPool)) {
+            producerPool.close();
+        }
+        if (Objects.nonNull(producer)) {
+            try {
+                producer.close();
+            } catch (IOException e) {
+                log.warn("Destroy Producer occupy exception", e);
+                // ignore
+            }
+        }
+        if (Objects.nonNull(retryPolicy)) {
+            retryPolicy.close();
+        }
+        if (Objects.nonNull(messageSpool)) {
+            messageSpool.close();
+        }
+        if (callbackExecutor instanceof ExecutorService) {
+            ((ExecutorService) callbackExecutor).shutdown();
+        }
+        if (Objects.nonNull(asyncSendThreadPoolTaskExecutor)) {
+            asyncSendThreadPoolTaskExecutor.destroy();
+        }
+    }
+
+    /**
+     * 等待在途的异步发送完成，最多等待{@linkplain #closeTimeoutMs}
+     */
+    private void awaitPendingAsyncSends() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(closeTimeoutMs);
+        while (pendingAsyncSends.get() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                log.warn("{} async sends still pending after {}ms, close anyway", pendingAsyncSends.get(), closeTimeoutMs);
+                return;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
     }
 
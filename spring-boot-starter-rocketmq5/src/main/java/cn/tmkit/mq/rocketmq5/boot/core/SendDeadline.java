@@ -0,0 +1,126 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的发送截止时间，用于把入站请求（如HTTP请求）剩余的时间传递给其中的同步发送
+ * <p>
+ * 截止时间基于{@linkplain System#nanoTime()}，嵌套设置时取更早的截止时间，离开作用域后恢复外层的截止时间。
+ * {@linkplain SendRequest#deadlineNanos}与当前线程的截止时间同时存在时同样取更早的一个
+ * </p>
+ * <pre>{@code
+ * try (SendDeadline.Scope ignored = SendDeadline.within(Duration.ofMillis(200))) {
+ *     rocketMQTemplate.send("topic", "tag", body);
+ * }
+ * }</pre>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-01
+ */
+public final class SendDeadline {
+
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<>();
+
+    private SendDeadline() {
+    }
+
+    /**
+     * 在当前线程上设置从现在开始的超时时间
+     *
+     * @param timeout 超时时间
+     * @return 作用域，关闭后恢复外层的截止时间
+     */
+    public static Scope within(@NotNull Duration timeout) {
+        return at(deadlineAfter(timeout));
+    }
+
+    /**
+     * 在当前线程上设置截止时间
+     *
+     * @param deadlineNanos 基于{@linkplain System#nanoTime()}的截止时间
+     * @return 作用域，关闭后恢复外层的截止时间
+     */
+    public static Scope at(long deadlineNanos) {
+        long[] previous = CURRENT.get();
+        long deadline = previous == null ? deadlineNanos : earlier(previous[0], deadlineNanos);
+        CURRENT.set(new long[]{deadline});
+        return new Scope(previous);
+    }
+
+    /**
+     * 在截止时间内执行
+     *
+     * @param timeout  超时时间
+     * @param supplier 执行的逻辑
+     * @param <T>      返回值的类型
+     * @return 执行的结果
+     */
+    public static <T> T call(@NotNull Duration timeout, @NotNull Supplier<T> supplier) {
+        try (Scope ignored = within(timeout)) {
+            return supplier.get();
+        }
+    }
+
+    /**
+     * @return 当前线程的截止时间，没有设置时返回0
+     */
+    public static long current() {
+        long[] deadline = CURRENT.get();
+        return deadline == null ? 0L : deadline[0];
+    }
+
+    /**
+     * 计算从现在开始的截止时间
+     *
+     * @param timeout 超时时间
+     * @return 基于{@linkplain System#nanoTime()}的截止时间，不会为0
+     */
+    static long deadlineAfter(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        return deadline == 0L ? 1L : deadline;
+    }
+
+    /**
+     * 取更早的截止时间，0表示没有截止时间
+     *
+     * @param a 截止时间
+     * @param b 截止时间
+     * @return 更早的截止时间
+     */
+    static long earlier(long a, long b) {
+        if (a == 0L) {
+            return b;
+        }
+        if (b == 0L) {
+            return a;
+        }
+        return a - b <= 0 ? a : b;
+    }
+
+    /**
+     * 截止时间的作用域
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final long[] previous;
+
+        private Scope(long[] previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+/**
+ * 同步发送在截止时间内没有收到回执，消息可能仍会发送成功
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-01
+ */
+public class SendDeadlineExceededException extends MessageException {
+
+    /**
+     * Constructs a new {@link SendDeadlineExceededException} instance.
+     *
+     * @param topic 主题
+     */
+    public SendDeadlineExceededException(String topic) {
+        super("Send to " + topic + " exceeded the deadline");
+    }
+
+}
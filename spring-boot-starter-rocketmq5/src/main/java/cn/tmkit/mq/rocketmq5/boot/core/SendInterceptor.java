@@ -0,0 +1,63 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 发送拦截器，用于在消息中写入链路ID、租户ID等属性，或记录发送的耗时和结果
+ * <p>
+ * 容器中的拦截器按{@linkplain org.springframework.core.Ordered}排序后注册到{@linkplain RocketMQTemplate}，
+ * 没有拦截器时发送路径上只有一次数组长度的判断。{@linkplain #beforeSerialize}和{@linkplain #beforeSend}抛出异常时消息不发送；
+ * {@linkplain #onReceipt}和{@linkplain #onError}可能在客户端的回调线程上执行，不能阻塞，抛出的异常只记录日志
+ * </p>
+ * <p>
+ * 事务消息的{@linkplain #onReceipt}和{@linkplain #onError}对应半消息的发送结果；单向发送不回调{@linkplain #onReceipt}和{@linkplain #onError}。
+ * 打包发送{@code RocketMQTemplate#packedSend}配置了打包器时不经过拦截器，逻辑消息只有序列化后的消息体，打包的物理消息也不回调
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-29
+ */
+public interface SendInterceptor {
+
+    /**
+     * 序列化消息体之前调用，可以修改请求，如通过{@linkplain SendRequest#property(String, String)}添加属性
+     *
+     * @param request 发送请求
+     */
+    default void beforeSerialize(@NotNull SendRequest request) {
+    }
+
+    /**
+     * 构建消息之前调用，消息体已经编码，可以继续添加属性
+     *
+     * @param messageBuilder 消息构建器
+     * @param request        发送请求
+     */
+    default void beforeSend(@NotNull MessageBuilder messageBuilder, @NotNull SendRequest request) {
+    }
+
+    /**
+     * 发送成功后调用
+     *
+     * @param message       消息
+     * @param sendResult    发送结果
+     * @param durationNanos 从创建消息到收到回执的耗时，单位纳秒
+     */
+    default void onReceipt(@NotNull Message message, @NotNull SendResult sendResult, long durationNanos) {
+    }
+
+    /**
+     * 发送失败后调用
+     *
+     * @param message       消息，创建消息失败时为{@code null}
+     * @param throwable     异常
+     * @param durationNanos 从创建消息到失败的耗时，单位纳秒
+     */
+    default void onError(@Nullable Message message, @NotNull Throwable throwable, long durationNanos) {
+    }
+
+}
@@ -0,0 +1,53 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 发送指标的记录器，{@linkplain RocketMQTemplate}在发送路径上调用，没有配置时不做任何计时
+ * <p>
+ * 方法在发送线程或客户端的回调线程上执行，实现应缓存指标对象，不能阻塞
+ * </p>
+ * <p>
+ * 事务消息记录半消息的发送结果；打包发送按逻辑消息记录序列化，按打包的物理消息记录发送结果；单向发送只记录序列化
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-30
+ */
+public interface SendMetrics {
+
+    /**
+     * 记录一次消息的创建
+     *
+     * @param topic              主题
+     * @param serializationNanos 序列化的耗时，单位纳秒
+     * @param bodySize           编码后的消息体字节数
+     */
+    default void recordSerialization(@NotNull String topic, long serializationNanos, int bodySize) {
+    }
+
+    /**
+     * 记录一次发送的结果
+     *
+     * @param topic         主题
+     * @param tag           标签
+     * @param async         是否异步发送
+     * @param durationNanos 从创建消息到完成的耗时，单位纳秒
+     * @param sendResult    发送结果，失败时为{@code null}
+     * @param throwable     异常，成功时为{@code null}
+     */
+    default void recordSend(@NotNull String topic, @Nullable String tag, boolean async, long durationNanos,
+                            @Nullable SendResult sendResult, @Nullable Throwable throwable) {
+    }
+
+    /**
+     * 绑定消息模板，用于采集线程池、重试、熔断等组件的状态；在模板配置完成后调用
+     *
+     * @param rocketMQTemplate 消息模板
+     */
+    default void bindTo(@NotNull RocketMQTemplate rocketMQTemplate) {
+    }
+
+}
@@ -0,0 +1,278 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 发送请求：以构建器的方式描述一条待发送的消息，替代{@linkplain RocketMQTemplate}中参数组合的重载方法
+ * <p>
+ * 对象可以在同一线程内重复使用：发送完成后调用{@linkplain #reset()}清空后再设置下一条消息，
+ * 自定义属性的{@linkplain Map}在重置时只清空不重新创建。对象不是线程安全的
+ * </p>
+ * <pre>{@code
+ * SendRequest request = SendRequest.of("topic", "tag", body).key(orderNo).property("source", "app");
+ * SendResult sendResult = rocketMQTemplate.send(request);
+ * }</pre>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-15
+ */
+@Getter
+@ToString(exclude = "body")
+public class SendRequest {
+
+    private static final String[] EMPTY_KEYS = new String[0];
+
+    /**
+     * 主题，为空时普通消息使用默认普通主题，定时消息使用默认延时主题
+     */
+    private String topic;
+
+    /**
+     * 消息标签
+     */
+    private String tag;
+
+    /**
+     * 消息内容
+     */
+    private Object body;
+
+    /**
+     * 自定义属性
+     */
+    private Map<String, String> properties;
+
+    /**
+     * 自定义属性是否由当前对象创建，只有自己创建的才会在重置时复用
+     */
+    @Getter(lombok.AccessLevel.NONE)
+    private boolean ownProperties;
+
+    /**
+     * 消息标识
+     */
+    private String[] keys = EMPTY_KEYS;
+
+    /**
+     * 分发的时间戳，单位毫秒，小于等于0表示立即分发
+     */
+    private long deliveryTimestamp;
+
+    /**
+     * 消息组，FIFO主题上同一消息组的消息按发送顺序投递；不能与分发时间同时设置
+     */
+    private String messageGroup;
+
+    /**
+     * 同步发送的截止时间，基于{@linkplain System#nanoTime()}，0表示只受生产者请求超时时间的限制
+     */
+    private long deadlineNanos;
+
+    /**
+     * 创建发送请求，发送到默认主题上
+     *
+     * @param tag  消息标签
+     * @param body 消息内容
+     * @return {@linkplain SendRequest}
+     */
+    public static SendRequest of(String tag, @NotNull Object body) {
+        return new SendRequest().tag(tag).body(body);
+    }
+
+    /**
+     * 创建发送请求
+     *
+     * @param topic 主题
+     * @param tag   消息标签
+     * @param body  消息内容
+     * @return {@linkplain SendRequest}
+     */
+    public static SendRequest of(@Nullable String topic, String tag, @NotNull Object body) {
+        return new SendRequest().topic(topic).tag(tag).body(body);
+    }
+
+    public SendRequest topic(@Nullable String topic) {
+        this.topic = topic;
+        return this;
+    }
+
+    public SendRequest tag(String tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    public SendRequest body(@NotNull Object body) {
+        this.body = body;
+        return this;
+    }
+
+    /**
+     * 添加一个自定义属性
+     *
+     * @param name  属性名
+     * @param value 属性值
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest property(@NotNull String name, @NotNull String value) {
+        if (!ownProperties) {
+            Map<String, String> external = properties;
+            properties = new HashMap<>(8);
+            ownProperties = true;
+            if (external != null) {
+                properties.putAll(external);
+            }
+        }
+        properties.put(name, value);
+        return this;
+    }
+
+    /**
+     * 设置自定义属性，直接引用给定的{@linkplain Map}，不会复制
+     *
+     * @param properties 自定义属性
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest properties(@Nullable Map<String, String> properties) {
+        this.properties = properties;
+        this.ownProperties = false;
+        return this;
+    }
+
+    /**
+     * 设置单个消息标识
+     *
+     * @param key 消息标识
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest key(@Nullable String key) {
+        this.keys = key == null ? EMPTY_KEYS : new String[]{key};
+        return this;
+    }
+
+    /**
+     * 设置消息标识，直接引用给定的数组，不会复制
+     *
+     * @param keys 消息标识
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest keys(@Nullable String... keys) {
+        this.keys = keys == null ? EMPTY_KEYS : keys;
+        return this;
+    }
+
+    /**
+     * 设置消息标识
+     *
+     * @param keys 消息标识
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest keys(@Nullable Collection<String> keys) {
+        this.keys = keys == null || keys.isEmpty() ? EMPTY_KEYS : keys.toArray(EMPTY_KEYS);
+        return this;
+    }
+
+    /**
+     * 设置分发的时间戳
+     *
+     * @param deliveryTimestamp 分发的时间戳，单位毫秒
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest deliveryTimestamp(long deliveryTimestamp) {
+        this.deliveryTimestamp = deliveryTimestamp;
+        return this;
+    }
+
+    /**
+     * 设置分发的时间
+     *
+     * @param deliveryTime 分发的时间
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest deliveryTime(@NotNull Instant deliveryTime) {
+        return deliveryTimestamp(deliveryTime.toEpochMilli());
+    }
+
+    /**
+     * 设置延迟时长，从当前时间开始计算
+     *
+     * @param delay 延迟时长，最大为24小时
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest delay(@NotNull Duration delay) {
+        return deliveryTimestamp(System.currentTimeMillis() + delay.toMillis());
+    }
+
+    /**
+     * 设置消息组，用于FIFO主题上的顺序消息
+     *
+     * @param messageGroup 消息组，如订单号
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest messageGroup(@Nullable String messageGroup) {
+        this.messageGroup = messageGroup;
+        return this;
+    }
+
+    /**
+     * 设置同步发送的超时时间，从当前时间开始计算，超时后抛出{@linkplain SendDeadlineExceededException}
+     *
+     * @param timeout 超时时间
+     * @return {@linkplain SendRequest}
+     * @see SendDeadline
+     */
+    public SendRequest timeout(@NotNull Duration timeout) {
+        return deadlineNanos(SendDeadline.deadlineAfter(timeout));
+    }
+
+    /**
+     * 设置同步发送的截止时间
+     *
+     * @param deadlineNanos 基于{@linkplain System#nanoTime()}的截止时间，0表示不设置
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest deadlineNanos(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        return this;
+    }
+
+    /**
+     * 是否为定时/延时消息
+     *
+     * @return 设置了分发时间时返回{@code true}
+     */
+    public boolean isScheduled() {
+        return deliveryTimestamp > 0;
+    }
+
+    /**
+     * 清空当前请求以便复用
+     *
+     * @return {@linkplain SendRequest}
+     */
+    public SendRequest reset() {
+        topic = null;
+        tag = null;
+        body = null;
+        if (ownProperties) {
+            properties.clear();
+        } else {
+            properties = null;
+        }
+        keys = EMPTY_KEYS;
+        deliveryTimestamp = 0;
+        messageGroup = null;
+        deadlineNanos = 0;
+        return this;
+    }
+
+}
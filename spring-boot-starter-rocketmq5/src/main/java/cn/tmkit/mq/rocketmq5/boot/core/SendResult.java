@@ -13,17 +13,19 @@ import org.apache.rocketmq.client.java.route.MessageQueueImpl;
  * @date 2023-12-18
  */
 @Getter
-@ToString(exclude = "messageId")
+@ToString
 public class SendResult {
 
     /**
-     * 发送消息的唯一标识
+     * 发送消息的唯一标识，首次获取时才由{@linkplain #messageId}格式化
      */
-    private final String msgId;
+    @ToString.Exclude
+    private String msgId;
 
     /**
      * 发送消息的唯一标识
      */
+    @ToString.Exclude
     private final MessageId messageId;
 
     /**
@@ -41,14 +43,46 @@ public class SendResult {
      */
     private final long offset;
 
+    /**
+     * 是否写入了本地预写日志，为{@code true}时消息尚未发送到服务端，没有消息标识
+     */
+    private final boolean spooled;
+
     public SendResult(final MessageId messageId, final String transactionId, final MessageQueueImpl messageQueue, final long offset) {
+        this(messageId, transactionId, messageQueue, offset, false);
+    }
+
+    private SendResult(final MessageId messageId, final String transactionId, final MessageQueueImpl messageQueue,
+                       final long offset, final boolean spooled) {
         this.messageId = messageId;
-        this.msgId = messageId.toString();
         this.transactionId = transactionId;
         this.messageQueue = messageQueue;
         this.offset = offset;
+        this.spooled = spooled;
     }
 
+    /**
+     * 写入本地预写日志的发送结果
+     *
+     * @return {@linkplain SendResult}
+     */
+    public static SendResult spooled() {
+        return new SendResult(null, null, null, -1, true);
+    }
 
+    /**
+     * 发送消息的唯一标识
+     *
+     * @return 消息的唯一标识
+     */
+    @ToString.Include(name = "msgId", rank = 1)
+    public String getMsgId() {
+        String msgId = this.msgId;
+        if (msgId == null && messageId != null) {
+            msgId = messageId.toString();
+            this.msgId = msgId;
+        }
+        return msgId;
+    }
 
 }
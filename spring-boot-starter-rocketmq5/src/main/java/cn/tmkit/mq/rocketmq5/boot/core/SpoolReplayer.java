@@ -0,0 +1,170 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.spool.MessageSpool;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地预写日志的重放线程：按顺序读取{@linkplain MessageSpool}中的消息，以批次为单位流水线地异步发送，
+ * 整批发送成功后才移动已发送的位置；发送失败时按指数退避等待后从同一位置重试，因此消息可能重复发送
+ * <p>
+ * 没有消息组的消息在批次内并发发送；同一消息组的消息按写入顺序逐条发送，前一条成功后才发送下一条，保证FIFO主题上的顺序
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-25
+ */
+@Slf4j
+public class SpoolReplayer implements Closeable {
+
+    private final RocketMQTemplate rocketMQTemplate;
+
+    private final MessageSpool messageSpool;
+
+    /**
+     * 每批发送的最大消息数
+     */
+    @Getter
+    private final int batchSize;
+
+    /**
+     * 检查日志的间隔，单位毫秒
+     */
+    @Getter
+    private final long intervalMs;
+
+    /**
+     * 发送失败后最长的退避时间，单位毫秒
+     */
+    @Getter
+    private final long maxBackoffMs;
+
+    /**
+     * 每批等待发送结果的超时时间，单位毫秒
+     */
+    @Getter
+    private final long batchTimeoutMs;
+
+    private final ScheduledExecutorService scheduler;
+
+    private long backoffMs;
+
+    private long nextAttemptTime;
+
+    private volatile boolean closed;
+
+    /**
+     * @param rocketMQTemplate 消息模板，用于发送消息
+     * @param messageSpool     本地预写日志
+     * @param batchSize        每批发送的最大消息数
+     * @param intervalMs       检查日志的间隔，单位毫秒
+     * @param maxBackoffMs     发送失败后最长的退避时间，单位毫秒
+     * @param batchTimeoutMs   每批等待发送结果的超时时间，单位毫秒
+     */
+    public SpoolReplayer(@NotNull RocketMQTemplate rocketMQTemplate, @NotNull MessageSpool messageSpool, int batchSize,
+                         long intervalMs, long maxBackoffMs, long batchTimeoutMs) {
+        if (batchSize <= 0 || intervalMs <= 0 || batchTimeoutMs <= 0) {
+            throw new IllegalArgumentException("batchSize, intervalMs and batchTimeoutMs must be greater than 0");
+        }
+        this.rocketMQTemplate = rocketMQTemplate;
+        this.messageSpool = messageSpool;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.maxBackoffMs = Math.max(maxBackoffMs, intervalMs);
+        this.batchTimeoutMs = batchTimeoutMs;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("rocketmq-spool-replayer-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::replay, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 重放日志中的消息，直到日志为空或发送失败
+     */
+    void replay() {
+        if (closed || System.currentTimeMillis() < nextAttemptTime) {
+            return;
+        }
+        try {
+            while (!closed && !messageSpool.isEmpty()) {
+                MessageSpool.Batch batch = messageSpool.read(batchSize);
+                if (batch.isEmpty()) {
+                    return;
+                }
+                send(batch.getMessages());
+                messageSpool.commit(batch);
+                backoffMs = 0;
+            }
+        } catch (Exception e) {
+            backoffMs = backoffMs == 0 ? intervalMs : Math.min(backoffMs * 2, maxBackoffMs);
+            nextAttemptTime = System.currentTimeMillis() + backoffMs;
+            log.warn("Replay message spool failed, pending = {} ,retry after {}ms", messageSpool.getPendingCount(),
+                    backoffMs, e);
+        }
+    }
+
+    /**
+     * 发送一批消息，同一消息组的消息分轮发送，每轮每个消息组只有一条在途
+     *
+     * @param messages 消息
+     * @throws Exception 发送失败或超时
+     */
+    private void send(List<Message> messages) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeoutMs);
+        List<CompletableFuture<?>> futures = new ArrayList<>(messages.size());
+        Map<String, Deque<Message>> groups = new LinkedHashMap<>();
+        for (Message message : messages) {
+            String messageGroup = message.getMessageGroup().orElse(null);
+            if (messageGroup == null) {
+                futures.add(rocketMQTemplate.doAsyncSendDirect(message));
+            } else {
+                groups.computeIfAbsent(messageGroup, key -> new ArrayDeque<>()).add(message);
+            }
+        }
+        while (true) {
+            for (Deque<Message> queue : groups.values()) {
+                Message message = queue.poll();
+                if (message != null) {
+                    futures.add(rocketMQTemplate.doAsyncSendDirect(message));
+                }
+            }
+            if (futures.isEmpty()) {
+                return;
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            futures.clear();
+        }
+    }
+
+    /**
+     * 停止重放，未发送的消息保留在日志中，下次启动后继续发送
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(batchTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+
+/**
+ * 事务消息的发送结果
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-24
+ */
+@Getter
+@ToString(callSuper = true)
+public class TransactionSendResult extends SendResult {
+
+    /**
+     * 本地事务的执行结果
+     */
+    private final TransactionResolution transactionResolution;
+
+    public TransactionSendResult(final SendResult sendResult, final TransactionResolution transactionResolution) {
+        super(sendResult.getMessageId(), sendResult.getTransactionId(), sendResult.getMessageQueue(), sendResult.getOffset());
+        this.transactionResolution = transactionResolution;
+    }
+
+}
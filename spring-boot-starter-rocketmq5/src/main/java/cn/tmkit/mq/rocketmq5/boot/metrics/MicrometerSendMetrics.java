@@ -0,0 +1,240 @@
+package cn.tmkit.mq.rocketmq5.boot.metrics;
+
+import cn.tmkit.mq.rocketmq5.boot.core.CircuitBreaker;
+import cn.tmkit.mq.rocketmq5.boot.core.CircuitBreakerRegistry;
+import cn.tmkit.mq.rocketmq5.boot.core.HedgedSender;
+import cn.tmkit.mq.rocketmq5.boot.core.MessageCompactor;
+import cn.tmkit.mq.rocketmq5.boot.core.RetryPolicy;
+import cn.tmkit.mq.rocketmq5.boot.core.RocketMQTemplate;
+import cn.tmkit.mq.rocketmq5.boot.core.SendMetrics;
+import cn.tmkit.mq.rocketmq5.boot.core.SendResult;
+import cn.tmkit.mq.rocketmq5.boot.spool.MessageSpool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Micrometer的发送指标
+ * <ul>
+ *     <li>{@code rocketmq.producer.send}：发送耗时，标签为topic、tag、mode（sync/async）、outcome（success/spooled/failure）</li>
+ *     <li>{@code rocketmq.producer.send.failures}：发送失败数，标签为topic、tag、exception</li>
+ *     <li>{@code rocketmq.producer.serialization}：序列化耗时，标签为topic</li>
+ *     <li>{@code rocketmq.producer.body.size}：编码后的消息体大小，标签为topic</li>
+ *     <li>{@code rocketmq.producer.oneway.failures}、{@code rocketmq.producer.oneway.rejected}：单向发送的失败数和拒绝数</li>
+ *     <li>异步发送线程池的队列长度和活跃线程数，重试、对冲、熔断、压缩和本地预写日志的状态</li>
+ * </ul>
+ * 指标对象按主题和标签缓存，同一主题和标签的所有指标在首次发送时一次性注册，之后的记录只查两次{@linkplain ConcurrentHashMap}。
+ * 每个主题最多记录{@value #MAX_TAGS_PER_TOPIC}个标签，超过的标签记为{@code other}，避免标签的基数失控。
+ * 耗时的直方图通过{@code management.metrics.distribution.percentiles-histogram.rocketmq.producer.send}开启
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-30
+ */
+public class MicrometerSendMetrics implements SendMetrics {
+
+    /**
+     * 每个主题最多记录的标签数
+     */
+    public static final int MAX_TAGS_PER_TOPIC = 64;
+
+    private static final String NONE = "none";
+
+    private static final String OTHER = "other";
+
+    private static final String[] OUTCOMES = {"success", "spooled", "failure"};
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, TopicMeters> topics = new ConcurrentHashMap<>();
+
+    private volatile CircuitBreakerRegistry circuitBreakerRegistry;
+
+    /**
+     * @param meterRegistry 指标的注册表
+     */
+    public MicrometerSendMetrics(@NotNull MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void recordSerialization(@NotNull String topic, long serializationNanos, int bodySize) {
+        TopicMeters topicMeters = topic(topic);
+        topicMeters.serialization.record(serializationNanos, TimeUnit.NANOSECONDS);
+        topicMeters.bodySize.record(bodySize);
+    }
+
+    @Override
+    public void recordSend(@NotNull String topic, @Nullable String tag, boolean async, long durationNanos,
+                           @Nullable SendResult sendResult, @Nullable Throwable throwable) {
+        TagMeters tagMeters = topic(topic).tag(tag == null ? NONE : tag);
+        int outcome = throwable != null ? 2 : sendResult != null && sendResult.isSpooled() ? 1 : 0;
+        tagMeters.timers[async ? 1 : 0][outcome].record(durationNanos, TimeUnit.NANOSECONDS);
+        if (throwable != null) {
+            tagMeters.failures.computeIfAbsent(throwable.getClass(), type -> Counter.builder("rocketmq.producer.send.failures")
+                    .description("The number of failed sends")
+                    .tags(tagMeters.tags)
+                    .tag("exception", type.getSimpleName())
+                    .register(meterRegistry)).increment();
+        }
+    }
+
+    @Override
+    public void bindTo(@NotNull RocketMQTemplate rocketMQTemplate) {
+        this.circuitBreakerRegistry = rocketMQTemplate.getCircuitBreakerRegistry();
+        ThreadPoolTaskExecutor executor = rocketMQTemplate.getAsyncSendThreadPoolTaskExecutor();
+        if (executor != null) {
+            Gauge.builder("rocketmq.producer.executor.queued", executor, MicrometerSendMetrics::queueSize)
+                    .description("The number of callbacks waiting in the async send executor")
+                    .register(meterRegistry);
+            Gauge.builder("rocketmq.producer.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                    .description("The number of active threads in the async send executor")
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("rocketmq.producer.oneway.failures", rocketMQTemplate, RocketMQTemplate::getOnewayFailureCount)
+                .description("The number of failed oneway sends")
+                .register(meterRegistry);
+        FunctionCounter.builder("rocketmq.producer.oneway.rejected", rocketMQTemplate, RocketMQTemplate::getOnewayRejectedCount)
+                .description("The number of oneway sends rejected by rate limiting or the circuit breaker")
+                .register(meterRegistry);
+        RetryPolicy retryPolicy = rocketMQTemplate.getRetryPolicy();
+        if (retryPolicy != null) {
+            FunctionCounter.builder("rocketmq.producer.retries", retryPolicy, RetryPolicy::getRetryCount)
+                    .description("The number of send retries")
+                    .register(meterRegistry);
+            FunctionCounter.builder("rocketmq.producer.retries.exhausted", retryPolicy, RetryPolicy::getExhaustedCount)
+                    .description("The number of retries rejected by the retry budget")
+                    .register(meterRegistry);
+        }
+        HedgedSender hedgedSender = rocketMQTemplate.getHedgedSender();
+        if (hedgedSender != null) {
+            FunctionCounter.builder("rocketmq.producer.hedged", hedgedSender, HedgedSender::getHedgedCount)
+                    .description("The number of sends hedged to the secondary cluster")
+                    .register(meterRegistry);
+            FunctionCounter.builder("rocketmq.producer.hedged.secondary.wins", hedgedSender, HedgedSender::getSecondaryWinCount)
+                    .description("The number of hedged sends completed by the secondary cluster")
+                    .register(meterRegistry);
+        }
+        MessageCompactor messageCompactor = rocketMQTemplate.getMessageCompactor();
+        if (messageCompactor != null) {
+            FunctionCounter.builder("rocketmq.producer.compacted", messageCompactor, MessageCompactor::getCompactedCount)
+                    .description("The number of messages superseded in the compaction window")
+                    .register(meterRegistry);
+        }
+        MessageSpool messageSpool = rocketMQTemplate.getMessageSpool();
+        if (messageSpool != null) {
+            Gauge.builder("rocketmq.producer.spool.pending", messageSpool, MessageSpool::getPendingCount)
+                    .description("The number of messages waiting in the local spool")
+                    .register(meterRegistry);
+        }
+    }
+
+    private TopicMeters topic(String topic) {
+        TopicMeters topicMeters = topics.get(topic);
+        if (topicMeters != null) {
+            return topicMeters;
+        }
+        return topics.computeIfAbsent(topic, TopicMeters::new);
+    }
+
+    private static double queueSize(ThreadPoolTaskExecutor executor) {
+        try {
+            ThreadPoolExecutor threadPoolExecutor = executor.getThreadPoolExecutor();
+            return threadPoolExecutor.getQueue().size();
+        } catch (IllegalStateException e) {
+            // 线程池尚未初始化或已关闭
+            return 0;
+        }
+    }
+
+    /**
+     * 单个主题的指标
+     */
+    private class TopicMeters {
+
+        private final String topic;
+
+        private final Timer serialization;
+
+        private final DistributionSummary bodySize;
+
+        private final ConcurrentMap<String, TagMeters> tags = new ConcurrentHashMap<>();
+
+        TopicMeters(String topic) {
+            this.topic = topic;
+            this.serialization = Timer.builder("rocketmq.producer.serialization")
+                    .description("Time spent serializing message bodies")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            this.bodySize = DistributionSummary.builder("rocketmq.producer.body.size")
+                    .description("Encoded message body size")
+                    .baseUnit("bytes")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            CircuitBreakerRegistry circuitBreakerRegistry = MicrometerSendMetrics.this.circuitBreakerRegistry;
+            if (circuitBreakerRegistry != null) {
+                CircuitBreaker circuitBreaker = circuitBreakerRegistry.get(topic);
+                Gauge.builder("rocketmq.producer.circuit.breaker.state", circuitBreaker, cb -> cb.getState().ordinal())
+                        .description("The circuit breaker state of the topic, 0 closed, 1 open, 2 half open")
+                        .tag("topic", topic)
+                        .register(meterRegistry);
+                Gauge.builder("rocketmq.producer.circuit.breaker.failure.rate", circuitBreaker, CircuitBreaker::getFailureRate)
+                        .description("The failure rate of the topic in percentage")
+                        .tag("topic", topic)
+                        .register(meterRegistry);
+            }
+        }
+
+        TagMeters tag(String tag) {
+            TagMeters tagMeters = tags.get(tag);
+            if (tagMeters != null) {
+                return tagMeters;
+            }
+            if (tags.size() >= MAX_TAGS_PER_TOPIC) {
+                return tags.computeIfAbsent(OTHER, key -> new TagMeters(topic, key));
+            }
+            return tags.computeIfAbsent(tag, key -> new TagMeters(topic, key));
+        }
+
+    }
+
+    /**
+     * 单个主题和标签的指标，两种发送方式和三种结果的耗时在创建时一次性注册
+     */
+    private class TagMeters {
+
+        private final Tags tags;
+
+        private final Timer[][] timers = new Timer[2][OUTCOMES.length];
+
+        private final ConcurrentMap<Class<?>, Counter> failures = new ConcurrentHashMap<>();
+
+        TagMeters(String topic, String tag) {
+            this.tags = Tags.of("topic", topic, "tag", tag);
+            for (int mode = 0; mode < 2; mode++) {
+                for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+                    timers[mode][outcome] = Timer.builder("rocketmq.producer.send")
+                            .description("Time from creating the message to receiving the send result")
+                            .tags(tags)
+                            .tag("mode", mode == 0 ? "sync" : "async")
+                            .tag("outcome", OUTCOMES[outcome])
+                            .register(meterRegistry);
+                }
+            }
+        }
+
+    }
+
+}
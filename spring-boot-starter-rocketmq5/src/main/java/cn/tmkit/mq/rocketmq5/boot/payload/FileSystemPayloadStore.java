@@ -0,0 +1,110 @@
+package cn.tmkit.mq.rocketmq5.boot.payload;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * 基于本地文件系统的{@linkplain PayloadStore}，每个消息体一个文件，按主题分目录存放，读取时使用内存映射
+ * <p>
+ * 引用为相对于根目录的路径，如：{@code order-topic/3f2c...}；多个应用共享时根目录应挂载到同一个网络文件系统上
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-23
+ */
+public class FileSystemPayloadStore implements PayloadStore {
+
+    /**
+     * 根目录
+     */
+    @Getter
+    private final Path directory;
+
+    /**
+     * @param directory 根目录，不存在时自动创建
+     */
+    public FileSystemPayloadStore(@NotNull Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new PayloadStoreException("Create payload directory " + this.directory + " failed", e);
+        }
+    }
+
+    @Override
+    public String store(@NotNull String topic, @NotNull byte[] data) {
+        String reference = topic + "/" + UUID.randomUUID();
+        Path file = resolve(reference);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            // 写完后再改名，消费者不会读到写了一半的文件
+            Files.move(tmp, file);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignore) {
+                // ignore
+            }
+            throw new PayloadStoreException("Store payload " + reference + " failed", e);
+        }
+        return reference;
+    }
+
+    @Override
+    public byte[] load(@NotNull String reference) {
+        try (FileChannel channel = FileChannel.open(resolve(reference), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new PayloadStoreException("Payload " + reference + " is too large: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] data = new byte[(int) size];
+            buffer.get(data);
+            return data;
+        } catch (IOException e) {
+            throw new PayloadStoreException("Load payload " + reference + " failed", e);
+        }
+    }
+
+    @Override
+    public void delete(@NotNull String reference) {
+        try {
+            Files.deleteIfExists(resolve(reference));
+        } catch (IOException e) {
+            throw new PayloadStoreException("Delete payload " + reference + " failed", e);
+        }
+    }
+
+    /**
+     * 解析引用对应的文件，引用不能指向根目录之外
+     *
+     * @param reference 消息体的引用
+     * @return 文件路径
+     */
+    private Path resolve(String reference) {
+        Path file = directory.resolve(reference).normalize();
+        if (!file.startsWith(directory) || file.equals(directory)) {
+            throw new PayloadStoreException("Illegal payload reference: " + reference);
+        }
+        return file;
+    }
+
+}
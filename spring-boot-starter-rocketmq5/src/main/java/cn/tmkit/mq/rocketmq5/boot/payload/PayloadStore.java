@@ -0,0 +1,42 @@
+package cn.tmkit.mq.rocketmq5.boot.payload;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 消息体的外部存储，用于Claim-Check模式：大消息体写入外部存储，消息中只携带引用，消费者按引用读取
+ * <p>
+ * 生产者和消费者必须能访问同一个存储，例如共享的文件系统或对象存储
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-23
+ */
+public interface PayloadStore {
+
+    /**
+     * 写入消息体
+     *
+     * @param topic 主题
+     * @param data  消息体
+     * @return 消息体的引用
+     */
+    String store(@NotNull String topic, @NotNull byte[] data);
+
+    /**
+     * 读取消息体
+     *
+     * @param reference 消息体的引用
+     * @return 消息体
+     */
+    byte[] load(@NotNull String reference);
+
+    /**
+     * 删除消息体，默认不删除，由存储自身的过期策略清理
+     *
+     * @param reference 消息体的引用
+     */
+    default void delete(@NotNull String reference) {
+    }
+
+}
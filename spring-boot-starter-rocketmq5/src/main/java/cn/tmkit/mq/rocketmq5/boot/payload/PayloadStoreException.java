@@ -0,0 +1,33 @@
+package cn.tmkit.mq.rocketmq5.boot.payload;
+
+import cn.tmkit.core.exception.GenericRuntimeException;
+
+/**
+ * 外部存储读写异常
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-23
+ */
+public class PayloadStoreException extends GenericRuntimeException {
+
+    /**
+     * Constructs a new {@link PayloadStoreException} instance.
+     *
+     * @param msg 错误的详细信息
+     */
+    public PayloadStoreException(String msg) {
+        super(msg);
+    }
+
+    /**
+     * Constructs a new {@link PayloadStoreException} instance.
+     *
+     * @param msg   错误的详细信息
+     * @param cause 内部异常
+     */
+    public PayloadStoreException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+}
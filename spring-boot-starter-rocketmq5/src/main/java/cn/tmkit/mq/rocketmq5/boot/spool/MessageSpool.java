@@ -0,0 +1,555 @@
+package cn.tmkit.mq.rocketmq5.boot.spool;
+
+import cn.tmkit.mq.rocketmq5.boot.core.MessageException;
+import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 发送消息的本地预写日志：服务端不可用时消息先追加到本地，恢复后由重放线程按顺序发送
+ * <p>
+ * 日志由固定大小的段文件组成，文件名为段的序号，通过内存映射追加写入。每条记录的格式为
+ * {@code [长度 int][CRC32 int][内容]}，记录不跨段，段的剩余空间不足时写入长度0作为结束标记并切换到新段。
+ * 已发送的位置记录在{@code checkpoint}文件中，重启后从该位置继续重放；整段发送完成后删除段文件
+ * </p>
+ * <p>
+ * 内存映射的写入在进程崩溃后仍然保留，操作系统崩溃时未刷盘的内容会丢失，需要更强的保证时开启{@code syncWrite}
+ * </p>
+ * <p>
+ * 打开时对{@code checkpoint}文件加排他锁，同一目录只能被一个进程使用，已被占用时启动失败
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-25
+ */
+@Slf4j
+public class MessageSpool implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * 根目录
+     */
+    @Getter
+    private final Path directory;
+
+    /**
+     * 段文件的大小，单位字节
+     */
+    @Getter
+    private final int segmentSize;
+
+    /**
+     * 是否每次写入后刷盘
+     */
+    @Getter
+    private final boolean syncWrite;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private final FileChannel checkpointChannel;
+
+    /**
+     * 目录的排他锁，关闭{@linkplain #checkpointChannel}时释放
+     */
+    private final FileLock directoryLock;
+
+    private Segment writeSegment;
+
+    private long readSequence;
+
+    private int readPosition;
+
+    /**
+     * 未发送的记录数，重启时按日志内容重新统计
+     */
+    private long pendingCount;
+
+    /**
+     * 是否已关闭，关闭后段文件已解除映射，不能再追加
+     */
+    private boolean closed;
+
+    /**
+     * @param directory   根目录，不存在时自动创建
+     * @param segmentSize 段文件的大小，单位字节
+     * @param syncWrite   是否每次写入后刷盘
+     */
+    public MessageSpool(@NotNull Path directory, int segmentSize, boolean syncWrite) {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize is too small: " + segmentSize);
+        }
+        this.directory = directory.toAbsolutePath().normalize();
+        this.segmentSize = segmentSize;
+        this.syncWrite = syncWrite;
+        try {
+            Files.createDirectories(this.directory);
+            this.checkpointChannel = FileChannel.open(this.directory.resolve(CHECKPOINT_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new MessageException("Open message spool " + this.directory + " failed", e);
+        }
+        try {
+            this.directoryLock = lockDirectory();
+            recover();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(checkpointChannel);
+            if (e instanceof MessageException) {
+                throw (MessageException) e;
+            }
+            throw new MessageException("Open message spool " + this.directory + " failed", e);
+        }
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param message 消息
+     */
+    public void append(@NotNull Message message) {
+        byte[] record = encode(message);
+        if (record.length + RECORD_HEADER_SIZE > segmentSize - 4) {
+            throw new MessageException("Message is too large to spool: " + record.length + " bytes");
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(record, 0, record.length);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new MessageException("Message spool " + directory + " already closed");
+            }
+            MappedByteBuffer buffer = writeSegment.buffer;
+            if (buffer.remaining() < record.length + RECORD_HEADER_SIZE + 4) {
+                writeSegment.limit = buffer.position();
+                buffer.putInt(0);
+                writeSegment.force();
+                writeSegment = createSegment(writeSegment.sequence + 1);
+                buffer = writeSegment.buffer;
+            }
+            buffer.putInt(record.length).putInt((int) crc32.getValue()).put(record);
+            if (syncWrite) {
+                writeSegment.force();
+            }
+            pendingCount++;
+        } catch (IOException e) {
+            throw new MessageException("Append to message spool failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 是否没有待发送的消息
+     */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return pendingCount == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 待发送的消息数
+     */
+    public long getPendingCount() {
+        lock.lock();
+        try {
+            return pendingCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从已发送的位置开始读取一批消息，不移动已发送的位置
+     *
+     * @param maxMessages 最大的消息数
+     * @return 读取的批次
+     */
+    public Batch read(int maxMessages) {
+        lock.lock();
+        try {
+            List<Message> messages = new ArrayList<>(Math.min(maxMessages, (int) Math.min(pendingCount, 1024)));
+            long sequence = readSequence;
+            int position = readPosition;
+            while (messages.size() < maxMessages) {
+                Segment segment = segments.get(sequence);
+                if (segment == null) {
+                    break;
+                }
+                ByteBuffer view = segment.readView();
+                int limit = segment == writeSegment ? segment.buffer.position() : segment.limit;
+                if (position >= limit) {
+                    if (segment == writeSegment) {
+                        break;
+                    }
+                    sequence++;
+                    position = 0;
+                    continue;
+                }
+                int length = view.getInt(position);
+                byte[] record = new byte[length];
+                view.position(position + RECORD_HEADER_SIZE);
+                view.get(record);
+                messages.add(decode(record));
+                position += RECORD_HEADER_SIZE + length;
+            }
+            return new Batch(messages, sequence, position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 确认批次已发送，移动已发送的位置并删除发送完的段文件
+     *
+     * @param batch 已发送的批次
+     */
+    public void commit(@NotNull Batch batch) {
+        lock.lock();
+        try {
+            readSequence = batch.sequence;
+            readPosition = batch.position;
+            pendingCount -= batch.messages.size();
+            writeCheckpoint();
+            while (!segments.isEmpty() && segments.firstKey() < readSequence) {
+                segments.pollFirstEntry().getValue().delete();
+            }
+        } catch (IOException e) {
+            throw new MessageException("Commit message spool failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            checkpointChannel.close();
+        } catch (IOException e) {
+            log.warn("Close message spool failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 对{@code checkpoint}文件加排他锁，两个进程共用同一目录会互相覆盖记录并重复重放
+     *
+     * @return 排他锁
+     * @throws IOException 加锁失败
+     */
+    private FileLock lockDirectory() throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = checkpointChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            throw new MessageException("Message spool " + directory + " is already in use by another process");
+        }
+        return fileLock;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Close message spool checkpoint failed", e);
+        }
+    }
+
+    // region 恢复
+
+    private void recover() throws IOException {
+        ByteBuffer checkpoint = ByteBuffer.allocate(12);
+        if (checkpointChannel.read(checkpoint, 0) == 12) {
+            checkpoint.flip();
+            readSequence = checkpoint.getLong();
+            readPosition = checkpoint.getInt();
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                long sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                if (sequence < readSequence) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                segments.put(sequence, openSegment(sequence, file));
+            }
+        }
+        if (segments.isEmpty()) {
+            readPosition = 0;
+            writeSegment = createSegment(readSequence);
+            return;
+        }
+        if (segments.firstKey() > readSequence) {
+            readSequence = segments.firstKey();
+            readPosition = 0;
+        }
+        // 统计未发送的记录，并定位最后一个段的写入位置
+        for (Segment segment : segments.values()) {
+            int position = segment.sequence == readSequence ? readPosition : 0;
+            position = scan(segment, position);
+            segment.limit = position;
+            segment.buffer.position(position);
+        }
+        writeSegment = segments.lastEntry().getValue();
+        log.info("Message spool recovered, directory = {} ,segments = {} ,pending = {}", directory, segments.size(), pendingCount);
+    }
+
+    /**
+     * 从指定位置扫描段中完整的记录，遇到结束标记或损坏的记录停止
+     *
+     * @param segment  段
+     * @param position 开始的位置
+     * @return 最后一条完整记录之后的位置
+     */
+    private int scan(Segment segment, int position) {
+        ByteBuffer view = segment.readView();
+        CRC32 crc32 = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= segmentSize) {
+            int length = view.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            byte[] record = new byte[length];
+            view.position(position + RECORD_HEADER_SIZE);
+            view.get(record);
+            crc32.reset();
+            crc32.update(record, 0, length);
+            if ((int) crc32.getValue() != view.getInt(position + 4)) {
+                log.warn("Corrupted record in message spool, segment = {} ,position = {}", segment.sequence, position);
+                break;
+            }
+            pendingCount++;
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    // endregion
+
+    // region 段文件
+
+    private Segment createSegment(long sequence) throws IOException {
+        Segment segment = openSegment(sequence, directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX)));
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    private Segment openSegment(long sequence, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return new Segment(sequence, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        ByteBuffer checkpoint = ByteBuffer.allocate(12);
+        checkpoint.putLong(readSequence).putInt(readPosition).flip();
+        while (checkpoint.hasRemaining()) {
+            checkpointChannel.write(checkpoint, checkpoint.position());
+        }
+        if (syncWrite) {
+            checkpointChannel.force(false);
+        }
+    }
+
+    private static class Segment {
+
+        private final long sequence;
+
+        private final Path file;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * 已写入的有效内容的结束位置，仅对已写满的段有效
+         */
+        private int limit;
+
+        Segment(long sequence, Path file, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        ByteBuffer readView() {
+            return buffer.duplicate();
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void close() {
+            buffer.force();
+        }
+
+        void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+
+    }
+
+    // endregion
+
+    // region 编解码
+
+    private static byte[] encode(Message message) {
+        Collection<String> keys = message.getKeys();
+        Map<String, String> properties = message.getProperties();
+        List<byte[]> strings = new ArrayList<>(4 + keys.size() + properties.size() * 2);
+        strings.add(bytes(message.getTopic()));
+        strings.add(bytes(message.getTag().orElse(null)));
+        strings.add(bytes(message.getMessageGroup().orElse(null)));
+        for (String key : keys) {
+            strings.add(bytes(key));
+        }
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            strings.add(bytes(entry.getKey()));
+            strings.add(bytes(entry.getValue()));
+        }
+        ByteBuffer body = message.getBody();
+        int size = 8 + 4 + 4 + 4 + body.remaining();
+        for (byte[] string : strings) {
+            size += 4 + (string == null ? 0 : string.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(message.getDeliveryTimestamp().orElse(0L));
+        buffer.putInt(keys.size()).putInt(properties.size());
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length).put(string);
+            }
+        }
+        buffer.putInt(body.remaining()).put(body.duplicate());
+        return buffer.array();
+    }
+
+    private static Message decode(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        long deliveryTimestamp = buffer.getLong();
+        int keyCount = buffer.getInt();
+        int propertyCount = buffer.getInt();
+        MessageBuilder messageBuilder = RocketMQUtils.getClientServiceProvider().newMessageBuilder()
+                .setTopic(string(buffer));
+        String tag = string(buffer);
+        if (tag != null) {
+            messageBuilder.setTag(tag);
+        }
+        String messageGroup = string(buffer);
+        if (messageGroup != null) {
+            messageBuilder.setMessageGroup(messageGroup);
+        }
+        if (keyCount > 0) {
+            String[] keys = new String[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = string(buffer);
+            }
+            messageBuilder.setKeys(keys);
+        }
+        for (int i = 0; i < propertyCount; i++) {
+            messageBuilder.addProperty(string(buffer), string(buffer));
+        }
+        if (deliveryTimestamp > 0) {
+            messageBuilder.setDeliveryTimestamp(deliveryTimestamp);
+        }
+        byte[] body = new byte[buffer.getInt()];
+        buffer.get(body);
+        return messageBuilder.setBody(body).build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    // endregion
+
+    /**
+     * 读取的批次
+     */
+    public static final class Batch {
+
+        /**
+         * 批次中的消息
+         */
+        @Getter
+        private final List<Message> messages;
+
+        private final long sequence;
+
+        private final int position;
+
+        Batch(List<Message> messages, long sequence, int position) {
+            this.messages = messages;
+            this.sequence = sequence;
+            this.position = position;
+        }
+
+        /**
+         * @return 是否没有消息
+         */
+        public boolean isEmpty() {
+            return messages.isEmpty();
+        }
+
+    }
+
+}
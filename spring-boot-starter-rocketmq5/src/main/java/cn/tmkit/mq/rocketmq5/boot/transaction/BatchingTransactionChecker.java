@@ -0,0 +1,277 @@
+package cn.tmkit.mq.rocketmq5.boot.transaction;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.message.MessageId;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.apache.rocketmq.client.apis.producer.TransactionChecker;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 批量回查的{@linkplain TransactionChecker}
+ * <p>
+ * 客户端在单个线程上逐条处理服务端的回查请求，逐条查询数据库会成为瓶颈。本类不在回查线程上查询：
+ * 未知状态的消息先进入队列，第一条消息入队后攒批{@code lingerMs}，或积累满{@code maxBatchSize}条时，后台线程把队列中的消息按批交给
+ * {@linkplain TransactionStateResolver}。回查线程在共享的批次结果上等待，{@linkplain TransactionStateResolver}在批次开始后的
+ * {@code lingerMs}内返回时直接返回结果，否则返回{@linkplain TransactionResolution#UNKNOWN}，结果缓存起来供服务端下一次回查时返回。
+ * 缓存的结果在{@code resolutionExpireMs}后过期，该值应大于服务端的回查间隔
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-24
+ */
+@Slf4j
+public class BatchingTransactionChecker implements TransactionChecker, Closeable {
+
+    private final TransactionStateResolver transactionStateResolver;
+
+    /**
+     * 每批回查的最大消息数
+     */
+    @Getter
+    private final int maxBatchSize;
+
+    /**
+     * 批量回查的攒批时间，单位毫秒
+     */
+    @Getter
+    private final long lingerMs;
+
+    /**
+     * 回查结果的缓存时间，单位毫秒
+     */
+    @Getter
+    private final long resolutionExpireMs;
+
+    private final Queue<MessageView> pending = new ConcurrentLinkedQueue<>();
+
+    private final Map<MessageId, Boolean> queued = new ConcurrentHashMap<>();
+
+    private final Map<MessageId, Resolution> resolutions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 正在攒批的一批回查，没有等待回查的消息时为{@code null}
+     */
+    private Round round;
+
+    /**
+     * @param transactionStateResolver 批量回查本地事务的状态
+     * @param maxBatchSize             每批回查的最大消息数
+     * @param lingerMs                 批量回查的攒批时间，单位毫秒
+     * @param resolutionExpireMs       回查结果的缓存时间，单位毫秒
+     */
+    public BatchingTransactionChecker(@NotNull TransactionStateResolver transactionStateResolver, int maxBatchSize,
+                                      long lingerMs, long resolutionExpireMs) {
+        if (maxBatchSize <= 0 || lingerMs <= 0 || resolutionExpireMs <= 0) {
+            throw new IllegalArgumentException("maxBatchSize, lingerMs and resolutionExpireMs must be greater than 0");
+        }
+        this.transactionStateResolver = transactionStateResolver;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+        this.resolutionExpireMs = resolutionExpireMs;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("rocketmq-transaction-checker-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long evictIntervalMs = Math.min(resolutionExpireMs, 1000L);
+        this.scheduler.scheduleWithFixedDelay(this::evictExpired, evictIntervalMs, evictIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public TransactionResolution check(MessageView messageView) {
+        MessageId messageId = messageView.getMessageId();
+        Resolution resolution = resolutions.remove(messageId);
+        if (resolution != null && !resolution.isExpired(System.currentTimeMillis())) {
+            return resolution.transactionResolution;
+        }
+        if (queued.putIfAbsent(messageId, Boolean.TRUE) == null) {
+            pending.offer(messageView);
+            if (pending.size() >= maxBatchSize) {
+                resolveNow();
+            }
+        }
+        // 入队后再取批次，保证等待的批次不早于消息入队
+        Round current = currentRound();
+        try {
+            current.future.get(Math.max(0, current.flushNanos + TimeUnit.MILLISECONDS.toNanos(lingerMs)
+                    - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return TransactionResolution.UNKNOWN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return TransactionResolution.UNKNOWN;
+        }
+        resolution = resolutions.remove(messageId);
+        return resolution == null ? TransactionResolution.UNKNOWN : resolution.transactionResolution;
+    }
+
+    /**
+     * 返回正在攒批的一批回查，没有时开始新的一批，在{@code lingerMs}后回查
+     *
+     * @return 正在攒批的一批回查
+     */
+    private synchronized Round currentRound() {
+        if (round == null) {
+            round = new Round(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs));
+            try {
+                scheduler.schedule(this::resolvePending, lingerMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 已关闭
+                round.future.complete(null);
+            }
+        }
+        return round;
+    }
+
+    /**
+     * 取出正在攒批的一批回查，之后入队的消息进入新的一批
+     *
+     * @return 正在攒批的一批回查，没有时返回{@code null}
+     */
+    private synchronized Round takeRound() {
+        Round current = round;
+        round = null;
+        return current;
+    }
+
+    /**
+     * 积累满一批时立即回查，不再等待攒批的时间
+     */
+    private void resolveNow() {
+        try {
+            scheduler.execute(this::resolvePending);
+        } catch (RejectedExecutionException e) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 批量回查队列中的消息
+     */
+    void resolvePending() {
+        // 先取出当前的批次，之后入队的消息等待下一批
+        Round current = takeRound();
+        try {
+            List<MessageView> batch;
+            while (!(batch = drain()).isEmpty()) {
+                resolve(batch);
+            }
+        } catch (Throwable e) {
+            // 不能让异常终止调度线程
+            log.error("Resolve pending transactions failed", e);
+        } finally {
+            if (current != null) {
+                current.future.complete(null);
+            }
+        }
+    }
+
+    private List<MessageView> drain() {
+        List<MessageView> batch = new ArrayList<>(Math.min(maxBatchSize, pending.size()));
+        MessageView messageView;
+        while (batch.size() < maxBatchSize && (messageView = pending.poll()) != null) {
+            batch.add(messageView);
+        }
+        return batch;
+    }
+
+    private void resolve(List<MessageView> batch) {
+        Map<MessageId, TransactionResolution> result = null;
+        try {
+            result = transactionStateResolver.resolve(batch);
+        } catch (Exception e) {
+            log.warn("Resolve {} transactions failed, wait for next check", batch.size(), e);
+        }
+        long now = System.currentTimeMillis();
+        for (MessageView messageView : batch) {
+            MessageId messageId = messageView.getMessageId();
+            queued.remove(messageId);
+            TransactionResolution transactionResolution = result == null ? null : result.get(messageId);
+            if (transactionResolution != null && transactionResolution != TransactionResolution.UNKNOWN) {
+                resolutions.put(messageId, new Resolution(transactionResolution, now + resolutionExpireMs));
+            }
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Resolution> iterator = resolutions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return 等待回查的消息数
+     */
+    public int getPendingCount() {
+        return queued.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        Round current = takeRound();
+        if (current != null) {
+            current.future.complete(null);
+        }
+    }
+
+    /**
+     * 一批回查，完成后等待的回查线程从缓存中读取结果
+     */
+    private static class Round {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        /**
+         * 计划回查的时间，基于{@linkplain System#nanoTime()}
+         */
+        private final long flushNanos;
+
+        Round(long flushNanos) {
+            this.flushNanos = flushNanos;
+        }
+
+    }
+
+    private static class Resolution {
+
+        private final TransactionResolution transactionResolution;
+
+        private final long expireTime;
+
+        Resolution(TransactionResolution transactionResolution, long expireTime) {
+            this.transactionResolution = transactionResolution;
+            this.expireTime = expireTime;
+        }
+
+        boolean isExpired(long now) {
+            return now > expireTime;
+        }
+
+    }
+
+}
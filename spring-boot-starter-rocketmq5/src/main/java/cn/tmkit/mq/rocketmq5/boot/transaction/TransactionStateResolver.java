@@ -0,0 +1,29 @@
+package cn.tmkit.mq.rocketmq5.boot.transaction;
+
+import org.apache.rocketmq.client.apis.message.MessageId;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量回查本地事务的状态，例如按消息标识一次查询数据库中的多条业务记录
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-01-24
+ */
+@FunctionalInterface
+public interface TransactionStateResolver {
+
+    /**
+     * 批量回查本地事务的状态
+     *
+     * @param messages 待回查的半消息
+     * @return 消息ID到事务状态的映射，未包含的消息视为{@linkplain TransactionResolution#UNKNOWN}
+     * @throws Exception 回查失败，本批消息等待服务端下次回查
+     */
+    Map<MessageId, TransactionResolution> resolve(List<MessageView> messages) throws Exception;
+
+}
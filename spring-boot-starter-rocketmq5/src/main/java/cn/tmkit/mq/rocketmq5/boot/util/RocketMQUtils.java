@@ -4,11 +4,15 @@ import cn.tmkit.core.lang.Strings;
 import cn.tmkit.core.lang.reflect.Singletons;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientConfigurationBuilder;
+import org.apache.rocketmq.client.apis.ClientException;
 import org.apache.rocketmq.client.apis.ClientServiceProvider;
 import org.apache.rocketmq.client.apis.StaticSessionCredentialsProvider;
+import org.apache.rocketmq.client.java.exception.*;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 工具类
@@ -53,4 +57,27 @@ public class RocketMQUtils {
         return clientConfigurationBuilder.build();
     }
 
+    /**
+     * 判断发送失败是否由服务端不可用引起，如网络异常、超时、限流、服务端内部错误；
+     * 请求本身有误（如参数错误、无权限、主题不存在、消息过大）时返回{@code false}，重试也不会成功
+     *
+     * @param e 发送失败的异常
+     * @return 服务端不可用时返回{@code true}
+     */
+    public static boolean isUnavailable(Throwable e) {
+        boolean unavailable = false;
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof BadRequestException || cause instanceof ForbiddenException
+                    || cause instanceof UnauthorizedException || cause instanceof NotFoundException
+                    || cause instanceof PayloadTooLargeException || cause instanceof PaymentRequiredException
+                    || cause instanceof RequestHeaderFieldsTooLargeException || cause instanceof UnsupportedException) {
+                return false;
+            }
+            if (cause instanceof ClientException || cause instanceof TimeoutException || cause instanceof IOException) {
+                unavailable = true;
+            }
+        }
+        return unavailable;
+    }
+
 }
@@ -0,0 +1,43 @@
+package cn.tmkit.mq.rocketmq5.boot.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 虚拟线程的工具类
+ * <p>
+ * 当前为Java 8的实现，不支持虚拟线程。在JDK 21及以上构建时，多版本jar中的
+ * {@code META-INF/versions/21}会提供基于虚拟线程的实现，在Java 21及以上运行时自动生效
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-02
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程
+     *
+     * @return 支持时返回{@code true}
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器
+     *
+     * @param namePrefix 线程名的前缀
+     * @return {@linkplain ExecutorService}
+     * @throws UnsupportedOperationException 当前运行时不支持虚拟线程
+     */
+    public static ExecutorService newThreadPerTaskExecutor(@NotNull String namePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+
+}
@@ -0,0 +1,80 @@
+package cn.tmkit.mq.rocketmq5.boot.web;
+
+import cn.tmkit.mq.rocketmq5.boot.core.SendDeadline;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * 从入站请求设置{@linkplain SendDeadline}，请求处理线程上的同步发送不超过请求剩余的时间
+ * <p>
+ * 截止时间绑定在处理请求的线程上，异步发送和切换线程后的发送不受影响。请求头的值为剩余的超时时间，单位毫秒，
+ * 不大于0时视为已超时，无法解析时按默认超时时间处理
+ * </p>
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+@Slf4j
+public class SendDeadlineFilter implements Filter {
+
+    /**
+     * 携带剩余超时时间的请求头
+     */
+    private final String header;
+
+    /**
+     * 请求头缺失时的默认超时时间，单位毫秒，不大于0时不设置截止时间
+     */
+    private final long defaultTimeoutMs;
+
+    /**
+     * @param header           携带剩余超时时间的请求头
+     * @param defaultTimeoutMs 请求头缺失时的默认超时时间，单位毫秒，不大于0时不设置截止时间
+     */
+    public SendDeadlineFilter(@NotNull String header, long defaultTimeoutMs) {
+        this.header = header;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        Duration timeout = request instanceof HttpServletRequest ? timeout((HttpServletRequest) request) : null;
+        if (timeout == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try (SendDeadline.Scope ignored = SendDeadline.within(timeout)) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    /**
+     * 解析请求剩余的超时时间
+     *
+     * @param request 请求
+     * @return 超时时间，没有截止时间时返回{@code null}
+     */
+    private Duration timeout(HttpServletRequest request) {
+        String value = request.getHeader(header);
+        if (value != null) {
+            try {
+                return Duration.ofMillis(Math.max(0, Long.parseLong(value.trim())));
+            } catch (NumberFormatException e) {
+                log.debug("Ignore invalid send deadline header, {} = {}", header, value);
+            }
+        }
+        return defaultTimeoutMs > 0 ? Duration.ofMillis(defaultTimeoutMs) : null;
+    }
+
+}
@@ -0,0 +1,39 @@
+package cn.tmkit.mq.rocketmq5.boot.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程的工具类，Java 21及以上的实现
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-02
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程
+     *
+     * @return 支持时返回{@code true}
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器
+     *
+     * @param namePrefix 线程名的前缀
+     * @return {@linkplain ExecutorService}
+     */
+    public static ExecutorService newThreadPerTaskExecutor(@NotNull String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+
+}
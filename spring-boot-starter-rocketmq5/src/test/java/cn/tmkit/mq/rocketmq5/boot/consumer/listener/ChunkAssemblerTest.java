@@ -0,0 +1,51 @@
+package cn.tmkit.mq.rocketmq5.boot.consumer.listener;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain ChunkAssembler}缓存分片直到完整的消息消费成功
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class ChunkAssemblerTest {
+
+    @Test
+    void keepsAssembledMessageUntilConsumed() {
+        ChunkAssembler assembler = new ChunkAssembler(1024, 60000);
+        assertSame(ChunkAssembler.Result.PENDING, assembler.offer("id", 1, 2, bytes("world")));
+        ChunkAssembler.Result result = assembler.offer("id", 0, 2, bytes("hello "));
+        assertTrue(result.isComplete());
+        assertArrayEquals(bytes("hello world"), result.getBody());
+        // 消费失败后最后一个分片重新投递，再次得到完整的消息
+        ChunkAssembler.Result redelivered = assembler.offer("id", 0, 2, bytes("hello "));
+        assertArrayEquals(bytes("hello world"), redelivered.getBody());
+        // 已确认的分片重复投递时不再重组
+        assertSame(ChunkAssembler.Result.PENDING, assembler.offer("id", 1, 2, bytes("world")));
+        assembler.markConsumed("id");
+        assertEquals(0, assembler.getBufferedBytes());
+        assertSame(ChunkAssembler.Result.CONSUMED, assembler.offer("id", 0, 2, bytes("hello ")));
+    }
+
+    @Test
+    void rejectsChunksBeyondBuffer() {
+        ChunkAssembler assembler = new ChunkAssembler(8, 60000);
+        assertSame(ChunkAssembler.Result.PENDING, assembler.offer("a", 0, 2, bytes("12345")));
+        assertSame(ChunkAssembler.Result.REJECTED, assembler.offer("b", 0, 2, bytes("12345")));
+        // 最后一个分片不受上限限制，已缓存的消息可以完成
+        assertTrue(assembler.offer("a", 1, 2, bytes("67890")).isComplete());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
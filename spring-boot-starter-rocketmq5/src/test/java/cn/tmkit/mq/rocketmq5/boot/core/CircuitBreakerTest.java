@@ -0,0 +1,84 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain CircuitBreaker}的状态转换
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void opensWhenFailureRateExceedsThreshold() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(1000);
+        circuitBreaker.onSuccess(FAST);
+        circuitBreaker.onSuccess(FAST);
+        circuitBreaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onError(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulProbes() throws Exception {
+        CircuitBreaker circuitBreaker = openCircuitBreaker();
+        Thread.sleep(60);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+        // 半开状态只放行配置数量的探测调用
+        assertFalse(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess(FAST);
+        circuitBreaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenReopensAfterFailedProbes() throws Exception {
+        CircuitBreaker circuitBreaker = openCircuitBreaker();
+        Thread.sleep(60);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onError(FAST);
+        circuitBreaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void slowCallsOpenCircuit() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(1000);
+        long slow = TimeUnit.MILLISECONDS.toNanos(200);
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onSuccess(slow);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    private static CircuitBreaker openCircuitBreaker() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker(50);
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onError(FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        return circuitBreaker;
+    }
+
+    private static CircuitBreaker newCircuitBreaker(long waitDurationInOpenMs) {
+        return new CircuitBreaker("topic", 4, 4, 50, 100, 100, waitDurationInOpenMs, 2);
+    }
+
+}
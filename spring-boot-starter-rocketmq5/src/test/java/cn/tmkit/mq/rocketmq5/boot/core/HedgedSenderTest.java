@@ -0,0 +1,97 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain HedgedSender}的对冲时机和备集群没有许可时的处理
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class HedgedSenderTest {
+
+    private static final long DELAY_MS = 100;
+
+    private HedgedSender hedgedSender;
+
+    @BeforeEach
+    void setUp() {
+        Producer secondary = (Producer) Proxy.newProxyInstance(Producer.class.getClassLoader(),
+                new Class<?>[]{Producer.class}, (proxy, method, args) -> null);
+        hedgedSender = new HedgedSender(secondary, Collections.singleton("topic"), 0.95, DELAY_MS, DELAY_MS, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedgedSender.close();
+    }
+
+    @Test
+    void hedgesAfterDelayWhenPrimaryIsSlow() throws Exception {
+        SendResult secondaryResult = SendResult.spooled();
+        AtomicLong secondaryAt = new AtomicLong();
+        long start = System.nanoTime();
+        CompletableFuture<SendResult> result = hedgedSender.send(message(), CompletableFuture::new, () -> {
+            secondaryAt.set(System.nanoTime());
+            return CompletableFuture.completedFuture(secondaryResult);
+        });
+        assertSame(secondaryResult, result.get(5, TimeUnit.SECONDS));
+        assertTrue(secondaryAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(DELAY_MS - 10));
+        assertEquals(1, hedgedSender.getHedgedCount());
+    }
+
+    @Test
+    void doesNotHedgeWhenPrimaryIsFast() throws Exception {
+        SendResult primaryResult = SendResult.spooled();
+        CompletableFuture<SendResult> result = hedgedSender.send(message(),
+                () -> CompletableFuture.completedFuture(primaryResult), () -> {
+                    throw new AssertionError("secondary must not be sent");
+                });
+        assertSame(primaryResult, result.get(5, TimeUnit.SECONDS));
+        Thread.sleep(DELAY_MS * 2);
+        assertEquals(0, hedgedSender.getHedgedCount());
+    }
+
+    @Test
+    void rejectedSecondaryFallsBackToPrimary() throws Exception {
+        CompletableFuture<SendResult> primary = new CompletableFuture<>();
+        CompletableFuture<SendResult> result = hedgedSender.send(message(), () -> primary, () -> {
+            CompletableFuture<SendResult> future = new CompletableFuture<>();
+            future.completeExceptionally(new RateLimitedException("topic"));
+            return future;
+        });
+        Thread.sleep(DELAY_MS * 2);
+        assertFalse(result.isDone());
+        SendResult primaryResult = SendResult.spooled();
+        primary.complete(primaryResult);
+        assertSame(primaryResult, result.get(5, TimeUnit.SECONDS));
+        assertEquals(0, hedgedSender.getSecondaryWinCount());
+    }
+
+    private static Message message() {
+        return ClientServiceProvider.loadService().newMessageBuilder()
+                .setTopic("topic")
+                .setBody("body".getBytes(StandardCharsets.UTF_8))
+                .addProperty(RocketMQHeaders.DEDUP_KEY, "key")
+                .build();
+    }
+
+}
@@ -0,0 +1,78 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain InFlightLimiter}在各策略下的行为
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class InFlightLimiterTest {
+
+    @Test
+    void rejectFailsImmediately() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(1, 0, InFlightPolicy.REJECT, 1000);
+        inFlightLimiter.acquire(10);
+        long start = System.nanoTime();
+        assertThrows(MessageException.class, () -> inFlightLimiter.acquire(10));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        inFlightLimiter.release(10);
+        inFlightLimiter.acquire(10);
+        assertEquals(1, inFlightLimiter.getInFlightMessages());
+        assertEquals(-1, inFlightLimiter.getInFlightBytes());
+    }
+
+    @Test
+    void timeoutWaitsThenFails() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(1, 0, InFlightPolicy.TIMEOUT, 100);
+        inFlightLimiter.acquire(10);
+        long start = System.nanoTime();
+        assertThrows(MessageException.class, () -> inFlightLimiter.acquire(10));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    void blockWaitsForRelease() throws Exception {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(1, 0, InFlightPolicy.BLOCK, 0);
+        inFlightLimiter.acquire(10);
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> inFlightLimiter.acquire(10));
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+        inFlightLimiter.release(10);
+        waiting.get(1, TimeUnit.SECONDS);
+        assertEquals(1, inFlightLimiter.getInFlightMessages());
+    }
+
+    @Test
+    void bytesLimitReleasesMessagePermitOnFailure() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(10, 100, InFlightPolicy.REJECT, 0);
+        inFlightLimiter.acquire(80);
+        assertThrows(MessageException.class, () -> inFlightLimiter.acquire(30));
+        assertEquals(1, inFlightLimiter.getInFlightMessages());
+        assertEquals(80, inFlightLimiter.getInFlightBytes());
+        inFlightLimiter.release(80);
+        // 超过上限的单条消息按上限计算
+        inFlightLimiter.acquire(1000);
+        assertEquals(100, inFlightLimiter.getInFlightBytes());
+    }
+
+    @Test
+    void tryAcquireNeverWaits() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(1, 0, InFlightPolicy.BLOCK, 0);
+        assertTrue(inFlightLimiter.tryAcquire(10));
+        assertFalse(inFlightLimiter.tryAcquire(10));
+        inFlightLimiter.release(10);
+        assertTrue(inFlightLimiter.tryAcquire(10));
+    }
+
+}
@@ -0,0 +1,86 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.consumer.listener.ChunkAssembler;
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain MessageChunking}拆分后经{@linkplain ChunkAssembler}重组
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class MessageChunkingTest {
+
+    @Test
+    void splitAndAssembleOutOfOrder() {
+        byte[] body = new byte[1000];
+        ThreadLocalRandom.current().nextBytes(body);
+        Message message = ClientServiceProvider.loadService().newMessageBuilder()
+                .setTopic("topic")
+                .setTag("tag")
+                .setKeys("key")
+                .addProperty("custom", "value")
+                .setBody(body)
+                .build();
+        List<Message> chunks = MessageChunking.split(message, 300, true);
+        assertEquals(4, chunks.size());
+        String chunkId = chunks.get(0).getProperties().get(RocketMQHeaders.CHUNK_ID);
+        for (Message chunk : chunks) {
+            Map<String, String> properties = chunk.getProperties();
+            assertEquals(chunkId, properties.get(RocketMQHeaders.CHUNK_ID));
+            assertEquals("4", properties.get(RocketMQHeaders.CHUNK_COUNT));
+            assertEquals("1000", properties.get(RocketMQHeaders.CHUNK_TOTAL_SIZE));
+            assertEquals("value", properties.get("custom"));
+            assertEquals(chunkId, chunk.getMessageGroup().orElse(null));
+            assertEquals(Collections.singletonList("key"), new ArrayList<>(chunk.getKeys()));
+        }
+
+        ChunkAssembler chunkAssembler = new ChunkAssembler(10_000, 60_000);
+        int[] order = {2, 0, 3, 1};
+        ChunkAssembler.Result result = null;
+        for (int index : order) {
+            Message chunk = chunks.get(index);
+            assertEquals(String.valueOf(index), chunk.getProperties().get(RocketMQHeaders.CHUNK_INDEX));
+            result = chunkAssembler.offer(chunkId, index, chunks.size(), toBytes(chunk));
+        }
+        assertTrue(result.isComplete());
+        assertArrayEquals(body, result.getBody());
+    }
+
+    @Test
+    void scheduledMessageKeepsNoMessageGroup() {
+        long deliveryTimestamp = System.currentTimeMillis() + 60_000;
+        Message message = ClientServiceProvider.loadService().newMessageBuilder()
+                .setTopic("topic")
+                .setDeliveryTimestamp(deliveryTimestamp)
+                .setBody(new byte[10])
+                .build();
+        List<Message> chunks = MessageChunking.split(message, 4, true);
+        assertEquals(3, chunks.size());
+        for (Message chunk : chunks) {
+            assertFalse(chunk.getMessageGroup().isPresent());
+            assertEquals(deliveryTimestamp, chunk.getDeliveryTimestamp().orElse(0L));
+        }
+    }
+
+    private static byte[] toBytes(Message message) {
+        byte[] bytes = new byte[message.getBody().remaining()];
+        message.getBody().duplicate().get(bytes);
+        return bytes;
+    }
+
+}
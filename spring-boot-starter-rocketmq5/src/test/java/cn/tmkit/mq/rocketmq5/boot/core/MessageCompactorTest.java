@@ -0,0 +1,93 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain MessageCompactor}的测试
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-05
+ */
+class MessageCompactorTest {
+
+    private final List<String> sent = new ArrayList<>();
+
+    private final List<CompletableFuture<SendResult>> sendFutures = new ArrayList<>();
+
+    private final RocketMQTemplate rocketMQTemplate = new RocketMQTemplate() {
+        @Override
+        CompletableFuture<SendResult> doAsyncSend(Message message) {
+            sent.add(StandardCharsets.UTF_8.decode(message.getBody()).toString());
+            CompletableFuture<SendResult> future = new CompletableFuture<>();
+            sendFutures.add(future);
+            return future;
+        }
+    };
+
+    @Test
+    void keepOneSendInFlightPerKey() {
+        try (MessageCompactor compactor = new MessageCompactor(rocketMQTemplate, 60000, 100)) {
+            CompletableFuture<SendResult> first = compactor.append(message("v1"), "order-1");
+            compactor.flushAll();
+            assertEquals(1, sent.size());
+
+            CompletableFuture<SendResult> second = compactor.append(message("v2"), "order-1");
+            CompletableFuture<SendResult> third = compactor.append(message("v3"), "order-1");
+            compactor.flushAll();
+            assertEquals(1, sent.size(), "the next value must wait for the send in flight");
+
+            SendResult firstResult = new SendResult(null, null, null, 0);
+            sendFutures.get(0).complete(firstResult);
+            assertSame(firstResult, first.join());
+            assertFalse(second.isDone());
+
+            compactor.flushAll();
+            assertEquals(2, sent.size());
+            assertEquals("v3", sent.get(1));
+            SendResult lastResult = new SendResult(null, null, null, 0);
+            sendFutures.get(1).complete(lastResult);
+            assertSame(lastResult, second.join());
+            assertSame(lastResult, third.join());
+            assertEquals(1, compactor.getCompactedCount());
+            assertEquals(0, compactor.getPendingCount());
+        }
+    }
+
+    @Test
+    void sendCompactedValueAfterCloseWhenPreviousCompletes() {
+        MessageCompactor compactor = new MessageCompactor(rocketMQTemplate, 60000, 100);
+        compactor.append(message("v1"), "order-1");
+        compactor.flushAll();
+        CompletableFuture<SendResult> second = compactor.append(message("v2"), "order-1");
+        compactor.close();
+        assertEquals(1, sent.size());
+
+        sendFutures.get(0).complete(new SendResult(null, null, null, 0));
+        assertEquals(2, sent.size());
+        assertEquals("v2", sent.get(1));
+        sendFutures.get(1).complete(new SendResult(null, null, null, 0));
+        assertTrue(second.isDone());
+    }
+
+    private static Message message(String body) {
+        return RocketMQUtils.getClientServiceProvider().newMessageBuilder()
+                .setTopic("compaction-test")
+                .setTag("state")
+                .setBody(body.getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+
+}
@@ -0,0 +1,42 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@linkplain MessagePacking}打包和解包
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class MessagePackingTest {
+
+    @Test
+    void roundTrip() {
+        List<byte[]> frames = Arrays.asList("first".getBytes(StandardCharsets.UTF_8), new byte[0],
+                "third".getBytes(StandardCharsets.UTF_8));
+        byte[] envelope = MessagePacking.pack(frames, 10);
+        assertEquals(4 + 10 + MessagePacking.FRAME_OVERHEAD * 3, envelope.length);
+        List<byte[]> unpacked = MessagePacking.unpack(envelope);
+        assertEquals(3, unpacked.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertArrayEquals(frames.get(i), unpacked.get(i));
+        }
+    }
+
+    @Test
+    void rejectsTruncatedEnvelope() {
+        byte[] envelope = MessagePacking.pack(Arrays.asList(new byte[8], new byte[8]), 16);
+        assertThrows(MessageException.class, () -> MessagePacking.unpack(Arrays.copyOf(envelope, envelope.length - 1)));
+        assertThrows(MessageException.class, () -> MessagePacking.unpack(new byte[2]));
+    }
+
+}
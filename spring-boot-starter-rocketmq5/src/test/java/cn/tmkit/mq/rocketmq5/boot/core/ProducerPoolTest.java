@@ -0,0 +1,123 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain ProducerPool}的选择策略和剔除
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class ProducerPoolTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    void roundRobinVisitsEveryProducer() {
+        ProducerPool producerPool = newProducerPool(3, ProducerSelectStrategy.ROUND_ROBIN);
+        Set<Integer> selected = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            int index = producerPool.select("topic");
+            selected.add(index);
+            producerPool.release(index);
+        }
+        assertEquals(3, selected.size());
+    }
+
+    @Test
+    void topicHashIsStable() {
+        ProducerPool producerPool = newProducerPool(3, ProducerSelectStrategy.TOPIC_HASH);
+        int index = producerPool.select("topic");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(index, producerPool.select("topic"));
+        }
+        assertEquals(11, producerPool.getInFlight(index));
+    }
+
+    @Test
+    void leastInFlightAvoidsBusyProducer() {
+        ProducerPool producerPool = newProducerPool(2, ProducerSelectStrategy.LEAST_IN_FLIGHT);
+        int busy = producerPool.select("topic");
+        for (int i = 0; i < 5; i++) {
+            int index = producerPool.select("topic");
+            assertNotEquals(busy, index);
+            producerPool.release(index);
+        }
+        producerPool.release(busy);
+        assertEquals(0, producerPool.getInFlight(busy));
+    }
+
+    @Test
+    void ejectsAfterConsecutiveErrorsAndKeepsLastProducer() {
+        ProducerPool producerPool = newProducerPool(2, ProducerSelectStrategy.LATENCY_AWARE);
+        producerPool.setLatencyAwareSettings(0.3, 3, 100, 60_000);
+        for (int i = 0; i < 3; i++) {
+            producerPool.release(producerPool.select("topic") == 0 ? 0 : 1, FAST, true);
+        }
+        failTimes(producerPool, 0, 3);
+        assertTrue(producerPool.isEjected(0));
+        for (int i = 0; i < 10; i++) {
+            int index = producerPool.select("topic");
+            assertEquals(1, index);
+            producerPool.release(index);
+        }
+        // 最后一个未剔除的生产者不会被剔除
+        failTimes(producerPool, 1, 3);
+        assertFalse(producerPool.isEjected(1));
+    }
+
+    @Test
+    void ejectsLatencyOutlier() {
+        ProducerPool producerPool = newProducerPool(2, ProducerSelectStrategy.LATENCY_AWARE);
+        producerPool.setLatencyAwareSettings(1, 3, 5, 60_000);
+        producerPool.select("topic");
+        producerPool.release(0, FAST, true);
+        producerPool.select("topic");
+        producerPool.release(1, SLOW, true);
+        assertTrue(producerPool.isEjected(1));
+        assertFalse(producerPool.isEjected(0));
+    }
+
+    @Test
+    void ejectedProducerRecoversAfterDuration() throws Exception {
+        ProducerPool producerPool = newProducerPool(2, ProducerSelectStrategy.LATENCY_AWARE);
+        producerPool.setLatencyAwareSettings(0.3, 1, 100, 50);
+        failTimes(producerPool, 0, 1);
+        assertTrue(producerPool.isEjected(0));
+        Thread.sleep(80);
+        assertFalse(producerPool.isEjected(0));
+    }
+
+    private static void failTimes(ProducerPool producerPool, int index, int times) {
+        for (int i = 0; i < times; i++) {
+            producerPool.select("topic");
+            producerPool.release(index, FAST, false);
+        }
+    }
+
+    private static ProducerPool newProducerPool(int size, ProducerSelectStrategy strategy) {
+        List<Producer> producers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            producers.add((Producer) Proxy.newProxyInstance(Producer.class.getClassLoader(),
+                    new Class<?>[]{Producer.class}, (proxy, method, args) -> null));
+        }
+        return new ProducerPool(producers, strategy);
+    }
+
+}
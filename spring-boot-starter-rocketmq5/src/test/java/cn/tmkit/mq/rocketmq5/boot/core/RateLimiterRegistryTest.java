@@ -0,0 +1,43 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain RateLimiterRegistry}的等待时间不超过调用方剩余的时间
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class RateLimiterRegistryTest {
+
+    @Test
+    void blockWaitIsCappedByCallerDeadline() {
+        RateLimiterRegistry registry = new RateLimiterRegistry(RateLimitPolicy.BLOCK, 10_000);
+        registry.register("topic", null, 1, 1);
+        registry.acquire("topic", null);
+        long start = System.nanoTime();
+        assertThrows(RateLimitedException.class,
+                () -> registry.acquire("topic", null, TimeUnit.MILLISECONDS.toNanos(50)));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void tagAndTopicShareTheWait() {
+        RateLimiterRegistry registry = new RateLimiterRegistry(RateLimitPolicy.BLOCK, 10_000);
+        registry.register("topic", null, 10, 1);
+        registry.register("topic", "tag", 10, 1);
+        registry.acquire("topic", "tag");
+        long start = System.nanoTime();
+        registry.acquire("topic", "tag", TimeUnit.MILLISECONDS.toNanos(500));
+        long elapsed = System.nanoTime() - start;
+        // 两个限流器的等待重叠，合计约一个发放间隔
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(190), "elapsed " + elapsed);
+    }
+
+}
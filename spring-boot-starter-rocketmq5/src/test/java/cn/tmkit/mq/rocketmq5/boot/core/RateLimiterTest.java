@@ -0,0 +1,51 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain RateLimiter}按GCRA放行突发容量，之后按发放间隔等待
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class RateLimiterTest {
+
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void allowsBurstThenRejectsWithoutWaiting() {
+        RateLimiter rateLimiter = new RateLimiter(10, 2);
+        assertTrue(rateLimiter.tryAcquire(0));
+        assertTrue(rateLimiter.tryAcquire(0));
+        assertFalse(rateLimiter.tryAcquire(0));
+    }
+
+    @Test
+    void waitsOneIntervalForNextPermit() {
+        RateLimiter rateLimiter = new RateLimiter(10, 1);
+        assertTrue(rateLimiter.tryAcquire(0));
+        long start = System.nanoTime();
+        assertTrue(rateLimiter.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= INTERVAL_NANOS - TimeUnit.MILLISECONDS.toNanos(10), "elapsed " + elapsed);
+        assertTrue(elapsed < INTERVAL_NANOS * 3, "elapsed " + elapsed);
+    }
+
+    @Test
+    void rejectedAcquireDoesNotReservePermit() {
+        RateLimiter rateLimiter = new RateLimiter(10, 1);
+        assertTrue(rateLimiter.tryAcquire(0));
+        // 预计等待约100ms，超过最长等待时间，不占用许可
+        assertFalse(rateLimiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(10)));
+        long start = System.nanoTime();
+        assertTrue(rateLimiter.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+        assertTrue(System.nanoTime() - start < INTERVAL_NANOS * 3 / 2);
+    }
+
+}
@@ -0,0 +1,90 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain RetryPolicy}的重试预算
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class RetryPolicyTest {
+
+    @Test
+    void retriesAreLimitedByRequestBudget() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100, 0.1, 0);
+        assertFalse(retryPolicy.tryRetry(1));
+        // 每10个请求按10%积累1次重试的预算
+        for (int i = 0; i < 10; i++) {
+            retryPolicy.onRequest();
+        }
+        assertTrue(retryPolicy.tryRetry(1));
+        assertFalse(retryPolicy.tryRetry(1));
+        for (int i = 0; i < 10; i++) {
+            retryPolicy.onRequest();
+        }
+        assertTrue(retryPolicy.tryRetry(2));
+        assertEquals(2, retryPolicy.getRetryCount());
+        assertEquals(2, retryPolicy.getExhaustedCount());
+    }
+
+    @Test
+    void idleBudgetIsCapped() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100, 0.1, 0);
+        for (int i = 0; i < 1000; i++) {
+            retryPolicy.onRequest();
+        }
+        // 没有保底额度时预算最多积累1次重试
+        assertTrue(retryPolicy.tryRetry(1));
+        assertFalse(retryPolicy.tryRetry(1));
+    }
+
+    @Test
+    void reserveAllowsMinimumRetriesWithoutBudget() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100, 0.1, 2);
+        int allowed = 0;
+        for (int i = 0; i < 5; i++) {
+            if (retryPolicy.tryRetry(1)) {
+                allowed++;
+            }
+        }
+        // 跨秒时保底额度重新计算，最多多出一轮
+        assertTrue(allowed == 2 || allowed == 4, "allowed " + allowed);
+    }
+
+    @Test
+    void stopsAfterMaxRetries() {
+        RetryPolicy retryPolicy = new RetryPolicy(2, 10, 100, 1, 0);
+        for (int i = 0; i < 10; i++) {
+            retryPolicy.onRequest();
+        }
+        assertTrue(retryPolicy.tryRetry(2));
+        assertFalse(retryPolicy.tryRetry(3));
+    }
+
+    @Test
+    void backoffStaysWithinCeiling() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 10, 50, 0.1, 0);
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long backoffMs = retryPolicy.backoffMs(attempt);
+            assertTrue(backoffMs >= 0 && backoffMs <= Math.min(50, 10L << (attempt - 1)), "backoff " + backoffMs);
+        }
+    }
+
+    @Test
+    void rejectsScheduleAfterClose() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 10, 100, 0.1, 0);
+        retryPolicy.close();
+        assertThrows(RejectedExecutionException.class, () -> retryPolicy.schedule(() -> {
+        }, 10));
+    }
+
+}
@@ -0,0 +1,45 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.serializer.RocketMQMessageSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 异步发送在创建消息时的异常以失败的结果返回
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class SendAsyncTest {
+
+    @Test
+    void serializationFailureCompletesFutureExceptionally() {
+        IllegalStateException failure = new IllegalStateException("not serializable");
+        RocketMQTemplate rocketMQTemplate = new RocketMQTemplate();
+        rocketMQTemplate.setRocketMQMessageSerializer(new RocketMQMessageSerializer<Object>() {
+            @Override
+            public byte[] serialize(Object payload) {
+                throw failure;
+            }
+
+            @Override
+            public Object deserialize(byte[] data) {
+                throw new UnsupportedOperationException();
+            }
+        });
+        CompletableFuture<SendResult> future = rocketMQTemplate.sendAsync("topic", "tag", "body");
+        assertTrue(future.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertSame(failure, e.getCause());
+        assertTrue(rocketMQTemplate.packedSend("topic", "tag", "body").isCompletedExceptionally());
+        assertTrue(rocketMQTemplate.compactingSend("topic", "tag", "body", "key").isCompletedExceptionally());
+    }
+
+}
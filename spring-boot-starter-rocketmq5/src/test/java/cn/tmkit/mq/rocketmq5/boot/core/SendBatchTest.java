@@ -0,0 +1,62 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.serializer.RocketMQMessageSerializer;
+import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@linkplain RocketMQTemplate#sendBatch}部分失败时保留每条消息的结果
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class SendBatchTest {
+
+    @Test
+    void partialFailureKeepsPerMessageOutcomes() {
+        ClientException failure = new ClientException("broker unavailable");
+        RocketMQTemplate rocketMQTemplate = new RocketMQTemplate() {
+            @Override
+            CompletableFuture<SendResult> doAsyncSend(Message message) {
+                CompletableFuture<SendResult> future = new CompletableFuture<>();
+                if (new String(toBytes(message), StandardCharsets.ISO_8859_1).contains("fail")) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(SendResult.spooled());
+                }
+                return future;
+            }
+        };
+        rocketMQTemplate.setRocketMQMessageSerializer(RocketMQMessageSerializer.java());
+        List<String> bodies = Arrays.asList("ok", "fail", "ok");
+        BatchSendException e = assertThrows(BatchSendException.class,
+                () -> rocketMQTemplate.sendBatch("topic", "tag", bodies));
+        assertEquals(3, e.getSendResults().size());
+        assertNotNull(e.getSendResults().get(0));
+        assertNull(e.getSendResults().get(1));
+        assertNotNull(e.getSendResults().get(2));
+        assertNull(e.getCauses().get(0));
+        assertSame(failure, e.getCauses().get(1));
+        assertSame(failure, e.getCause());
+    }
+
+    private static byte[] toBytes(Message message) {
+        byte[] bytes = new byte[message.getBody().remaining()];
+        message.getBody().duplicate().get(bytes);
+        return bytes;
+    }
+
+}
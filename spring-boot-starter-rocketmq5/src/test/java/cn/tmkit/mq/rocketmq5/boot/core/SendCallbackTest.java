@@ -0,0 +1,88 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.serializer.RocketMQMessageSerializer;
+import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+import org.apache.rocketmq.client.apis.producer.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain SendCallback}收到的异常与客户端抛出的异常一致
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-05
+ */
+class SendCallbackTest {
+
+    @Test
+    void onExceptionReceivesClientException() throws Exception {
+        ClientException failure = new ClientException("broker unavailable");
+        RocketMQTemplate rocketMQTemplate = new RocketMQTemplate();
+        rocketMQTemplate.setRocketMQMessageSerializer(RocketMQMessageSerializer.java());
+        rocketMQTemplate.setProducer(new FailingProducer(failure));
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Throwable> received = new AtomicReference<>();
+        rocketMQTemplate.asyncSend("topic", "tag", "body", new SendCallback() {
+            @Override
+            public void onSuccess(SendResult sendResult) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                received.set(e);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertSame(failure, received.get());
+    }
+
+    private static class FailingProducer implements Producer {
+
+        private final ClientException failure;
+
+        FailingProducer(ClientException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public SendReceipt send(Message message) throws ClientException {
+            throw failure;
+        }
+
+        @Override
+        public SendReceipt send(Message message, Transaction transaction) throws ClientException {
+            throw failure;
+        }
+
+        @Override
+        public CompletableFuture<SendReceipt> sendAsync(Message message) {
+            CompletableFuture<SendReceipt> future = new CompletableFuture<>();
+            future.completeExceptionally(failure);
+            return future;
+        }
+
+        @Override
+        public Transaction beginTransaction() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain SendRequest#reset()}清空请求，且不修改调用方传入的对象
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class SendRequestTest {
+
+    @Test
+    void resetClearsAllFields() {
+        SendRequest sendRequest = SendRequest.of("topic", "tag", "body")
+                .property("name", "value")
+                .key("key")
+                .delay(Duration.ofSeconds(10))
+                .messageGroup("group")
+                .timeout(Duration.ofSeconds(1));
+        assertTrue(sendRequest.isScheduled());
+        assertSame(sendRequest, sendRequest.reset());
+        assertNull(sendRequest.getTopic());
+        assertNull(sendRequest.getTag());
+        assertNull(sendRequest.getBody());
+        assertTrue(sendRequest.getProperties().isEmpty());
+        assertEquals(0, sendRequest.getKeys().length);
+        assertFalse(sendRequest.isScheduled());
+        assertNull(sendRequest.getMessageGroup());
+        assertEquals(0, sendRequest.getDeadlineNanos());
+    }
+
+    @Test
+    void resetKeepsExternalProperties() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("name", "value");
+        SendRequest sendRequest = SendRequest.of("tag", "body").properties(properties);
+        assertSame(properties, sendRequest.getProperties());
+        sendRequest.reset();
+        assertNull(sendRequest.getProperties());
+        assertEquals(1, properties.size());
+    }
+
+    @Test
+    void propertyCopiesExternalPropertiesBeforeWriting() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("name", "value");
+        SendRequest sendRequest = SendRequest.of("tag", "body").properties(properties).property("other", "value");
+        assertEquals(2, sendRequest.getProperties().size());
+        assertEquals(1, properties.size());
+        sendRequest.reset();
+        assertEquals(1, properties.size());
+    }
+
+}
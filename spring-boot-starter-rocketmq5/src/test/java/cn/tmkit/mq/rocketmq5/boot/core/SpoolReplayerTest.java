@@ -0,0 +1,101 @@
+package cn.tmkit.mq.rocketmq5.boot.core;
+
+import cn.tmkit.mq.rocketmq5.boot.spool.MessageSpool;
+import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain SpoolReplayer}的重放顺序测试
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-04
+ */
+class SpoolReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayMessagesOfSameGroupOneAfterAnother() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        Map<String, List<String>> sent = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger maxInFlightPerGroup = new AtomicInteger();
+        AtomicInteger maxInFlightUngrouped = new AtomicInteger();
+        AtomicInteger ungroupedInFlight = new AtomicInteger();
+        RocketMQTemplate rocketMQTemplate = new RocketMQTemplate() {
+            @Override
+            CompletableFuture<SendResult> doAsyncSendDirect(Message message) {
+                String group = message.getMessageGroup().orElse(null);
+                AtomicInteger counter = group == null ? ungroupedInFlight
+                        : inFlight.computeIfAbsent(group, key -> new AtomicInteger());
+                int current = counter.incrementAndGet();
+                (group == null ? maxInFlightUngrouped : maxInFlightPerGroup).accumulateAndGet(current, Math::max);
+                CompletableFuture<SendResult> future = new CompletableFuture<>();
+                scheduler.schedule(() -> {
+                    sent.computeIfAbsent(String.valueOf(group), key -> Collections.synchronizedList(new ArrayList<>()))
+                            .add(StandardCharsets.UTF_8.decode(message.getBody()).toString());
+                    counter.decrementAndGet();
+                    future.complete(null);
+                }, ThreadLocalRandom.current().nextInt(5), TimeUnit.MILLISECONDS);
+                return future;
+            }
+        };
+        try (MessageSpool spool = new MessageSpool(directory, 1 << 20, false)) {
+            for (int i = 0; i < 60; i++) {
+                String group = i % 3 == 0 ? null : "group-" + (i % 3);
+                spool.append(message(group, String.valueOf(i)));
+            }
+            SpoolReplayer replayer = new SpoolReplayer(rocketMQTemplate, spool, 64, 60000, 60000, 10000);
+            try {
+                replayer.replay();
+            } finally {
+                replayer.close();
+            }
+            assertTrue(spool.isEmpty());
+        } finally {
+            scheduler.shutdownNow();
+        }
+        assertEquals(1, maxInFlightPerGroup.get());
+        assertTrue(maxInFlightUngrouped.get() > 1);
+        for (int group = 1; group <= 2; group++) {
+            List<String> expected = new ArrayList<>();
+            for (int i = group; i < 60; i += 3) {
+                expected.add(String.valueOf(i));
+            }
+            assertEquals(expected, sent.get("group-" + group));
+        }
+    }
+
+    private static Message message(String messageGroup, String body) {
+        MessageBuilder messageBuilder = RocketMQUtils.getClientServiceProvider().newMessageBuilder()
+                .setTopic("spool-test")
+                .setBody(body.getBytes(StandardCharsets.UTF_8));
+        if (messageGroup != null) {
+            messageBuilder.setMessageGroup(messageGroup);
+        }
+        return messageBuilder.build();
+    }
+
+}
@@ -0,0 +1,174 @@
+package cn.tmkit.mq.rocketmq5.boot.spool;
+
+import cn.tmkit.mq.rocketmq5.boot.util.RocketMQUtils;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain MessageSpool}的恢复测试
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-04
+ */
+class MessageSpoolTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverPendingMessagesAfterReopen() {
+        try (MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            appendAll(spool, 0, 5);
+        }
+        try (MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            assertEquals(5, spool.getPendingCount());
+            assertEquals(bodies(0, 5), readAll(spool));
+        }
+    }
+
+    @Test
+    void discardTornTailRecord() throws IOException {
+        try (MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            appendAll(spool, 0, 3);
+        }
+        Path segment = segments().get(0);
+        int lastRecord = recordOffsets(segment).get(2);
+        // 只写入了记录的前半部分，CRC与内容不一致
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), lastRecord + 12);
+        }
+        try (MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            assertEquals(2, spool.getPendingCount());
+            appendAll(spool, 3, 4);
+        }
+        try (MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            List<String> expected = bodies(0, 2);
+            expected.add(body(3));
+            assertEquals(expected, readAll(spool));
+        }
+    }
+
+    @Test
+    void resumeFromCheckpointInTheMiddleOfSegment() {
+        try (MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            appendAll(spool, 0, 5);
+            MessageSpool.Batch batch = spool.read(2);
+            assertEquals(bodies(0, 2), bodies(batch.getMessages()));
+            spool.commit(batch);
+        }
+        try (MessageSpool spool = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            assertEquals(3, spool.getPendingCount());
+            assertEquals(bodies(2, 5), readAll(spool));
+        }
+    }
+
+    @Test
+    void rolloverAcrossSegments() throws IOException {
+        int segmentSize = 256;
+        int count = 20;
+        try (MessageSpool spool = new MessageSpool(directory, segmentSize, false)) {
+            appendAll(spool, 0, count);
+        }
+        assertTrue(segments().size() > 1);
+        try (MessageSpool spool = new MessageSpool(directory, segmentSize, false)) {
+            assertEquals(count, spool.getPendingCount());
+            // 提交的位置跨过了前面的段
+            MessageSpool.Batch batch = spool.read(count / 2 + 1);
+            assertEquals(bodies(0, count / 2 + 1), bodies(batch.getMessages()));
+            spool.commit(batch);
+        }
+        try (MessageSpool spool = new MessageSpool(directory, segmentSize, false)) {
+            assertEquals(count - count / 2 - 1, spool.getPendingCount());
+            List<String> remaining = new ArrayList<>();
+            while (!spool.isEmpty()) {
+                MessageSpool.Batch batch = spool.read(3);
+                remaining.addAll(bodies(batch.getMessages()));
+                spool.commit(batch);
+            }
+            assertEquals(bodies(count / 2 + 1, count), remaining);
+            assertEquals(1, segments().size());
+        }
+    }
+
+    @Test
+    void rejectDirectoryInUse() {
+        try (MessageSpool ignored = new MessageSpool(directory, SEGMENT_SIZE, false)) {
+            assertThrows(RuntimeException.class, () -> new MessageSpool(directory, SEGMENT_SIZE, false));
+        }
+    }
+
+    private static void appendAll(MessageSpool spool, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Message message = RocketMQUtils.getClientServiceProvider().newMessageBuilder()
+                    .setTopic("spool-test")
+                    .setTag("tag")
+                    .setBody(body(i).getBytes(StandardCharsets.UTF_8))
+                    .build();
+            spool.append(message);
+        }
+    }
+
+    private static List<String> readAll(MessageSpool spool) {
+        return bodies(spool.read(Integer.MAX_VALUE).getMessages());
+    }
+
+    private static String body(int index) {
+        return "message-" + index;
+    }
+
+    private static List<String> bodies(int from, int to) {
+        List<String> bodies = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            bodies.add(body(i));
+        }
+        return bodies;
+    }
+
+    private static List<String> bodies(List<Message> messages) {
+        List<String> bodies = new ArrayList<>();
+        for (Message message : messages) {
+            bodies.add(StandardCharsets.UTF_8.decode(message.getBody()).toString());
+        }
+        return bodies;
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.spool")) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<Integer> offsets = new ArrayList<>();
+        int position = 0;
+        while (position + 8 <= buffer.limit() && buffer.getInt(position) > 0) {
+            offsets.add(position);
+            position += 8 + buffer.getInt(position);
+        }
+        return offsets;
+    }
+
+}
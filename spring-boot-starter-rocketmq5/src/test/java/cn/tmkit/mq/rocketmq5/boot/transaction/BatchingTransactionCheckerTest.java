@@ -0,0 +1,82 @@
+package cn.tmkit.mq.rocketmq5.boot.transaction;
+
+import org.apache.rocketmq.client.apis.message.MessageId;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+import org.apache.rocketmq.client.java.message.MessageIdCodec;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@linkplain BatchingTransactionChecker}在批次及时完成时第一次回查即返回结果
+ *
+ * @author ming.tang
+ * @version 0.0.1
+ * @date 2024-02-06
+ */
+class BatchingTransactionCheckerTest {
+
+    @Test
+    void firstCheckReturnsResolutionWithinLinger() {
+        BatchingTransactionChecker checker = new BatchingTransactionChecker(messages -> {
+            Map<MessageId, TransactionResolution> result = new HashMap<>();
+            messages.forEach(messageView -> result.put(messageView.getMessageId(), TransactionResolution.COMMIT));
+            return result;
+        }, 16, 200, 60000);
+        try {
+            assertEquals(TransactionResolution.COMMIT, checker.check(messageView()));
+        } finally {
+            checker.close();
+        }
+    }
+
+    @Test
+    void slowResolverReturnsUnknownThenCachedResolution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BatchingTransactionChecker checker = new BatchingTransactionChecker(messages -> {
+            release.await(5, TimeUnit.SECONDS);
+            Map<MessageId, TransactionResolution> result = new HashMap<>();
+            messages.forEach(messageView -> result.put(messageView.getMessageId(), TransactionResolution.ROLLBACK));
+            return result;
+        }, 16, 20, 60000);
+        try {
+            MessageView messageView = messageView();
+            assertEquals(TransactionResolution.UNKNOWN, checker.check(messageView));
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (checker.getPendingCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(checker.getPendingCount() == 0);
+            assertEquals(TransactionResolution.ROLLBACK, checker.check(messageView));
+        } finally {
+            checker.close();
+        }
+    }
+
+    private static MessageView messageView() {
+        MessageId messageId = MessageIdCodec.getInstance().nextMessageId();
+        return (MessageView) Proxy.newProxyInstance(MessageView.class.getClassLoader(), new Class<?>[]{MessageView.class},
+                (proxy, method, args) -> {
+                    if ("getMessageId".equals(method.getName())) {
+                        return messageId;
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    return null;
+                });
+    }
+
+}